@@ -0,0 +1,177 @@
+package benchmarks;
+
+import io.BinaryMapFormat;
+import io.Deserializer;
+import io.GameProperties;
+import io.LevelConverter;
+import models.map.cells.Cell;
+import models.map.cells.TerminationCell;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import util.Coordinate;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+
+/**
+ * Compares the time taken to load map files of different sizes, using {@link Deserializer#parseGameFile()} on text
+ * maps and on binary maps, and the previous line-based parser on text maps.
+ *
+ * <p>
+ * The previous parser re-splits the map for every cell, so it is only run up to {@code maxLegacySize}.
+ * </p>
+ *
+ * <p>
+ * Usage: {@code java benchmarks.MapParserBenchmark [maxSize] [maxLegacySize]}. The defaults are 4096 and 256.
+ * </p>
+ */
+public class MapParserBenchmark {
+
+    private static final long WARMUP_CELLS = 20_000_000L;
+    private static final int MEASURED_ITERATIONS = 5;
+
+    public static void main(String[] args) throws IOException {
+        final int maxSize = args.length > 0 ? Integer.parseInt(args[0]) : 4096;
+        final int maxLegacySize = args.length > 1 ? Integer.parseInt(args[1]) : 256;
+
+        final var dir = Files.createTempDirectory("map-parser-benchmark");
+        System.out.println(String.format("%10s %14s %14s %14s", "size", "ms (new)", "ms (binary)", "ms (previous)"));
+
+        for (int size = 16; size <= maxSize; size *= 2) {
+            final var path = dir.resolve(size + ".map");
+            writeMap(path, size, new SplittableRandom(size));
+
+            final var binaryPath = dir.resolve(size + BinaryMapFormat.EXTENSION);
+            LevelConverter.convert(path, binaryPath);
+
+            final var deserializer = new Deserializer(path);
+            final double newMs = measure(size, () -> deserializer.parseGameFile().rows);
+            final var binaryDeserializer = new Deserializer(binaryPath);
+            final double binaryMs = measure(size, () -> binaryDeserializer.parseGameFile().rows);
+            final String legacyMs = size <= maxLegacySize
+                    ? String.format("%14.3f", measure(size, () -> LegacyParser.parse(path).rows))
+                    : String.format("%14s", "-");
+
+            System.out.println(String.format("%10s %14.3f %14.3f %s", size + "x" + size, newMs, binaryMs, legacyMs));
+            Files.delete(path);
+            Files.delete(binaryPath);
+        }
+        Files.delete(dir);
+    }
+
+    /**
+     * @return Average time of a run in milliseconds, after warming up.
+     */
+    private static double measure(int size, @NotNull ParseTask task) throws IOException {
+        final long warmupIterations = Math.max(1, WARMUP_CELLS / ((long) size * size));
+        int checksum = 0;
+        for (long i = 0; i < warmupIterations && i < 100; ++i) {
+            checksum += task.run();
+        }
+
+        final long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; ++i) {
+            checksum += task.run();
+        }
+        final long elapsed = System.nanoTime() - start;
+
+        if (checksum == 0) {
+            throw new IllegalStateException();
+        }
+        return elapsed / 1e6 / MEASURED_ITERATIONS;
+    }
+
+    /**
+     * Writes a map with walls around the border, random walls inside, a source in the middle, and a sink on the left
+     * border.
+     */
+    private static void writeMap(@NotNull Path path, int size, @NotNull SplittableRandom rng) throws IOException {
+        try (var writer = new PrintWriter(Files.newBufferedWriter(path))) {
+            writer.println("# rows");
+            writer.println(size);
+            writer.println("# cols");
+            writer.println(size);
+            writer.println(10);
+
+            final var row = new char[size];
+            for (int r = 0; r < size; ++r) {
+                for (int c = 0; c < size; ++c) {
+                    if (r == 0 || r == size - 1 || c == 0 || c == size - 1) {
+                        row[c] = 'W';
+                    } else {
+                        row[c] = rng.nextInt(8) == 0 ? 'W' : '.';
+                    }
+                }
+                if (r == size / 2) {
+                    row[size / 2] = '^';
+                    row[0] = '<';
+                }
+                writer.println(row);
+            }
+
+            writer.println("TR, TL, BL, BR, CR, VT, HZ");
+        }
+    }
+
+    @FunctionalInterface
+    private interface ParseTask {
+        int run() throws IOException;
+    }
+
+    /**
+     * The parser used before {@link Deserializer} parsed in a single pass.
+     */
+    private static class LegacyParser {
+
+        @NotNull
+        static GameProperties parse(@NotNull Path path) throws IOException {
+            try (var reader = new BufferedReader(new FileReader(path.toFile()))) {
+                final int rows = Integer.parseInt(getFirstNonEmptyLine(reader));
+                final int cols = Integer.parseInt(getFirstNonEmptyLine(reader));
+                final int delay = Integer.parseInt(getFirstNonEmptyLine(reader));
+
+                final var mapRep = new ArrayList<String>();
+                for (int r = 0; r < rows; ++r) {
+                    mapRep.add(getFirstNonEmptyLine(reader));
+                }
+                final var cells = parseString(rows, cols, String.join("\n", mapRep));
+
+                getFirstNonEmptyLine(reader);
+                return new GameProperties(rows, cols, cells, delay);
+            }
+        }
+
+        @NotNull
+        static Cell[][] parseString(final int rows, final int cols, @NotNull final String cellsRep) {
+            var cells = new Cell[rows][cols];
+            for (int r = 0; r < rows; ++r) {
+                for (int c = 0; c < cols; ++c) {
+                    var coord = new Coordinate(r, c);
+                    var ch = cellsRep.lines().skip(r).findFirst().orElseThrow().charAt(c);
+
+                    if (r == 0 || r == rows - 1 || c == 0 || c == cols - 1) {
+                        cells[r][c] = Cell.fromChar(ch, coord, TerminationCell.Type.SINK);
+                    } else {
+                        cells[r][c] = Cell.fromChar(ch, coord, TerminationCell.Type.SOURCE);
+                    }
+                }
+            }
+            return cells;
+        }
+
+        @Nullable
+        static String getFirstNonEmptyLine(@NotNull final BufferedReader br) throws IOException {
+            String s;
+            do {
+                s = br.readLine();
+            } while (s != null && (s.isBlank() || s.startsWith("#")));
+            return s;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package benchmarks;
+
+import models.map.PackedGrid;
+import models.map.PathFinder;
+import models.map.cells.TerminationCell;
+import models.pipes.Pipe;
+import org.jetbrains.annotations.NotNull;
+import util.Direction;
+
+/**
+ * Measures how {@link PathFinder} scales with the size of the map.
+ *
+ * <p>
+ * Each map is filled with a single pipe which snakes through every row, so a search has to visit every cell before
+ * reaching the sink. This is the worst case for a path check.
+ * </p>
+ *
+ * <p>
+ * Usage: {@code java benchmarks.PathFinderBenchmark [maxSize]}. The largest default size is 4096x4096.
+ * </p>
+ */
+public class PathFinderBenchmark {
+
+    /**
+     * Minimum number of cells to visit before measuring, so that small maps are also measured after JIT compilation.
+     */
+    private static final long WARMUP_CELLS = 50_000_000L;
+    private static final int MEASURED_ITERATIONS = 10;
+
+    public static void main(String[] args) {
+        final int maxSize = args.length > 0 ? Integer.parseInt(args[0]) : 4096;
+
+        System.out.println(String.format("%10s %12s %14s %14s", "size", "cells", "ms/search", "ns/cell"));
+        for (int size = 8; size <= maxSize; size *= 2) {
+            final var grid = createSnakeMap(size);
+            final int source = grid.index(1, 1);
+            final var finder = new PathFinder(size, size);
+
+            final long warmupIterations = Math.max(1, WARMUP_CELLS / ((long) size * size));
+            for (long i = 0; i < warmupIterations; ++i) {
+                search(finder, grid, source);
+            }
+
+            final long start = System.nanoTime();
+            for (int i = 0; i < MEASURED_ITERATIONS; ++i) {
+                search(finder, grid, source);
+            }
+            final long elapsed = (System.nanoTime() - start) / MEASURED_ITERATIONS;
+
+            final long numCells = (long) size * size;
+            System.out.println(String.format("%10s %12d %14.3f %14.2f",
+                    size + "x" + size, numCells, elapsed / 1e6, (double) elapsed / numCells));
+        }
+    }
+
+    private static void search(@NotNull PathFinder finder, @NotNull PackedGrid grid, int source) {
+        if (!finder.search(grid, source, PathFinder.Mode.PIPES, true)) {
+            throw new IllegalStateException("Sink is not reachable");
+        }
+    }
+
+    /**
+     * Creates a map where a pipe runs from the source at (1, 1) through every row of the map, alternating between
+     * left-to-right and right-to-left, and ends at a sink on the side wall of the last row.
+     *
+     * @param size Number of rows and columns, including walls.
+     * @return Cells of the map.
+     */
+    @NotNull
+    private static PackedGrid createSnakeMap(int size) {
+        final var grid = new PackedGrid(size, size);
+        final int first = 1;
+        final int last = size - 2;
+
+        for (int r = 0; r < size; ++r) {
+            for (int c = 0; c < size; ++c) {
+                grid.set(r, c, PackedGrid.WALL);
+            }
+        }
+
+        grid.set(first, first, PackedGrid.termination(Direction.RIGHT, TerminationCell.Type.SOURCE));
+
+        for (int r = first; r <= last; ++r) {
+            final boolean rightwards = (r - first) % 2 == 0;
+            for (int c = first; c <= last; ++c) {
+                if (r == first && c == first) {
+                    continue;
+                }
+
+                final Pipe.Shape shape;
+                if (rightwards) {
+                    if (c == last) {
+                        shape = r == last ? Pipe.Shape.HORIZONTAL : Pipe.Shape.BOTTOM_LEFT;
+                    } else if (c == first) {
+                        shape = Pipe.Shape.TOP_RIGHT;
+                    } else {
+                        shape = Pipe.Shape.HORIZONTAL;
+                    }
+                } else {
+                    if (c == first) {
+                        shape = r == last ? Pipe.Shape.HORIZONTAL : Pipe.Shape.BOTTOM_RIGHT;
+                    } else if (c == last) {
+                        shape = Pipe.Shape.TOP_LEFT;
+                    } else {
+                        shape = Pipe.Shape.HORIZONTAL;
+                    }
+                }
+
+                grid.set(r, c, PackedGrid.pipe(shape));
+            }
+        }
+
+        final boolean endsRightwards = (last - first) % 2 == 0;
+        final int sinkCol = endsRightwards ? size - 1 : 0;
+        final var sinkDir = endsRightwards ? Direction.RIGHT : Direction.LEFT;
+        grid.set(last, sinkCol, PackedGrid.termination(sinkDir, TerminationCell.Type.SINK));
+
+        return grid;
+    }
+}
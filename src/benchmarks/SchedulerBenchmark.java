@@ -0,0 +1,102 @@
+package benchmarks;
+
+import models.timing.HashedWheelTimer;
+import models.timing.ScheduledTask;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stress test of {@link HashedWheelTimer} with many concurrent periodic timers, as if each timer belonged to a game.
+ *
+ * <p>
+ * All timers fire once per second, with their phases spread over the first second. The benchmark measures the cost of
+ * scheduling and cancelling, how many runs happen compared to how many are expected, and how late they are.
+ * </p>
+ *
+ * <p>
+ * Usage: {@code java benchmarks.SchedulerBenchmark [numTimers] [seconds]}. The defaults are 100000 timers running for
+ * 5 seconds.
+ * </p>
+ */
+public class SchedulerBenchmark {
+
+    private static final long PERIOD = 1000;
+
+    public static void main(String[] args) throws InterruptedException {
+        final int numTimers = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        final int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        final var timer = new HashedWheelTimer();
+        final var rng = new SplittableRandom(0);
+        final var counters = new Counter[numTimers];
+        final var tasks = new ScheduledTask[numTimers];
+        final int threadsBefore = Thread.activeCount();
+
+        final long scheduleStart = System.nanoTime();
+        for (int i = 0; i < numTimers; ++i) {
+            final long initialDelay = rng.nextLong(PERIOD);
+            counters[i] = new Counter(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(initialDelay));
+            tasks[i] = timer.scheduleAtFixedRate(counters[i], initialDelay, PERIOD);
+        }
+        final long scheduleElapsed = System.nanoTime() - scheduleStart;
+
+        final long runStart = System.nanoTime();
+        Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+        final long runElapsed = System.nanoTime() - runStart;
+
+        final long cancelStart = System.nanoTime();
+        for (var task : tasks) {
+            task.cancel();
+        }
+        final long cancelElapsed = System.nanoTime() - cancelStart;
+
+        long runs = 0;
+        long totalLateness = 0;
+        long maxLateness = 0;
+        for (var counter : counters) {
+            synchronized (counter) {
+                runs += counter.runs;
+                totalLateness += counter.totalLateness;
+                maxLateness = Math.max(maxLateness, counter.maxLateness);
+            }
+        }
+        final long expectedRuns = (long) numTimers * TimeUnit.NANOSECONDS.toMillis(runElapsed) / PERIOD;
+
+        System.out.println(String.format("%-22s %d", "timers", numTimers));
+        System.out.println(String.format("%-22s %d", "extra threads", Thread.activeCount() - threadsBefore));
+        System.out.println(String.format("%-22s %.1f", "ns/schedule", (double) scheduleElapsed / numTimers));
+        System.out.println(String.format("%-22s %.1f", "ns/cancel", (double) cancelElapsed / numTimers));
+        System.out.println(String.format("%-22s %d (expected ~%d)", "runs", runs, expectedRuns));
+        System.out.println(String.format("%-22s %.2f", "mean lateness (ms)", runs == 0 ? 0 : totalLateness / 1e6 / runs));
+        System.out.println(String.format("%-22s %.2f", "max lateness (ms)", maxLateness / 1e6));
+        System.out.println(String.format("%-22s %d", "still scheduled", timer.getNumScheduled()));
+    }
+
+    /**
+     * Task which counts its runs and measures how late each run is.
+     */
+    private static class Counter implements Runnable {
+
+        private final long periodNanos = TimeUnit.MILLISECONDS.toNanos(PERIOD);
+        private long nextDue;
+
+        long runs = 0;
+        long totalLateness = 0;
+        long maxLateness = 0;
+
+        Counter(long firstDue) {
+            this.nextDue = firstDue;
+        }
+
+        @Override
+        public synchronized void run() {
+            final long lateness = Math.max(0, System.nanoTime() - nextDue);
+
+            ++runs;
+            totalLateness += lateness;
+            maxLateness = Math.max(maxLateness, lateness);
+            nextDue += periodNanos;
+        }
+    }
+}
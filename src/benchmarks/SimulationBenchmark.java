@@ -0,0 +1,90 @@
+package benchmarks;
+
+import models.FlowTimer;
+import models.GameEngine;
+import models.timing.VirtualScheduler;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.SplittableRandom;
+
+/**
+ * Plays complete headless games on a {@link VirtualScheduler}, to measure how fast games can be simulated.
+ *
+ * <p>
+ * Each game is played by a bot which tries to place the next pipe on a random cell every tick, until the game is won
+ * or lost. The timer callbacks are the same as the ones used by the GUI.
+ * </p>
+ *
+ * <p>
+ * Usage: {@code java benchmarks.SimulationBenchmark [numGames] [size]}. The defaults are 10000 games on 8x8 maps.
+ * </p>
+ */
+public class SimulationBenchmark {
+
+    /**
+     * Maximum number of ticks a game may last.
+     */
+    private static final int MAX_TICKS = 10_000;
+
+    private static final int WON = 0;
+    private static final int LOST = 1;
+    private static final int TIMED_OUT = 2;
+
+    public static void main(String[] args) {
+        final int numGames = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        final int size = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+
+        final var rng = new SplittableRandom(0);
+        final var results = new int[3];
+        long totalTicks = 0;
+
+        final long start = System.nanoTime();
+        for (int i = 0; i < numGames; ++i) {
+            final var scheduler = new VirtualScheduler();
+            ++results[play(new GameEngine(size, size, rng.nextLong(), scheduler), scheduler, size, rng)];
+            totalTicks += scheduler.getTime() / FlowTimer.TICK_DURATION;
+        }
+        final long elapsed = System.nanoTime() - start;
+
+        System.out.println(String.format("%-18s %d", "games", numGames));
+        System.out.println(String.format("%-18s %d / %d / %d", "won/lost/timeout", results[WON], results[LOST],
+                results[TIMED_OUT]));
+        System.out.println(String.format("%-18s %d", "simulated ticks", totalTicks));
+        System.out.println(String.format("%-18s %.2f", "us/game", elapsed / 1e3 / numGames));
+        System.out.println(String.format("%-18s %.1f", "ns/tick", (double) elapsed / totalTicks));
+    }
+
+    /**
+     * Plays a game until it ends.
+     *
+     * @return One of {@link SimulationBenchmark#WON}, {@link SimulationBenchmark#LOST} or
+     * {@link SimulationBenchmark#TIMED_OUT}.
+     */
+    private static int play(@NotNull GameEngine game, @NotNull VirtualScheduler scheduler, int size,
+                            @NotNull SplittableRandom rng) {
+        final int[] result = {TIMED_OUT};
+
+        game.addOnTickHandler(() -> {
+            if (game.hasWon()) {
+                game.stopCountdown();
+                result[0] = WON;
+            }
+        });
+        game.addOnFlowHandler(() -> {
+            game.updateState();
+            if (game.hasLost()) {
+                game.stopCountdown();
+                result[0] = LOST;
+            }
+        });
+        game.startCountdown();
+
+        for (int tick = 0; tick < MAX_TICKS && result[0] == TIMED_OUT; ++tick) {
+            game.placePipe(1 + rng.nextInt(size), 1 + rng.nextInt(size));
+            scheduler.advance(1);
+        }
+
+        game.stopCountdown();
+        return result[0];
+    }
+}
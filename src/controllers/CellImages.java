@@ -0,0 +1,213 @@
+package controllers;
+
+import javafx.scene.image.Image;
+import models.map.PackedGrid;
+import models.pipes.Pipe;
+import org.jetbrains.annotations.NotNull;
+import util.Direction;
+
+/**
+ * Image representations of map elements.
+ *
+ * <p>
+ * The models do not depend on JavaFX, so the images are bound to the cells here instead. The images are loaded when
+ * this class is first used, i.e. when something is first rendered.
+ * </p>
+ *
+ * <p>
+ * The image representations and sprites are cached per cell code. The caches are shared by the JavaFX Application
+ * Thread and the background threads of {@link ThumbnailCache}, so every lookup which may fill them is synchronized.
+ * </p>
+ */
+public class CellImages {
+
+    private static final Image EMPTY_CELL = new Image(ResourceLoader.getResource("assets/images/empty-cell.png"));
+    private static final Image WALL = new Image(ResourceLoader.getResource("assets/images/wall.png"));
+    private static final Image DEST_UNFILLED = new Image(ResourceLoader.getResource("assets/images/dest-unfilled.png"));
+    private static final Image DEST_FILLED = new Image(ResourceLoader.getResource("assets/images/dest-filled.png"));
+    private static final Image CORNER_UNFILLED = new Image(ResourceLoader.getResource("assets/images/top-left-unfilled.png"));
+    private static final Image CORNER_FILLED = new Image(ResourceLoader.getResource("assets/images/top-left-filled.png"));
+    private static final Image CROSS_UNFILLED = new Image(ResourceLoader.getResource("assets/images/cross-unfilled.png"));
+    private static final Image CROSS_FILLED = new Image(ResourceLoader.getResource("assets/images/cross-filled.png"));
+    private static final Image STRAIGHT_UNFILLED = new Image(ResourceLoader.getResource("assets/images/vert-unfilled.png"));
+    private static final Image STRAIGHT_FILLED = new Image(ResourceLoader.getResource("assets/images/vert-filled.png"));
+
+    private static final int EMPTY_COLOR = 0xFFD0D0D0;
+    private static final int WALL_COLOR = 0xFF404040;
+    private static final int PIPE_COLOR = 0xFF909090;
+    private static final int FILLED_PIPE_COLOR = 0xFF3070D0;
+    private static final int SOURCE_COLOR = 0xFF30A040;
+    private static final int SINK_COLOR = 0xFFD04040;
+
+    /**
+     * Image representations of packed cells, indexed by cell code. Guarded by {@code CellImages.class}.
+     */
+    private static final Renderer.CellImage[] CODE_IMAGES = new Renderer.CellImage[PackedGrid.NUM_CODES];
+
+    /**
+     * Rotated images of packed cells, indexed by cell code. Guarded by {@code CellImages.class}.
+     */
+    private static final Image[] SPRITES = new Image[PackedGrid.NUM_CODES];
+
+    /**
+     * Retrieves the image representation of a packed cell.
+     *
+     * @param code Code of the cell.
+     * @return Image representation of the cell.
+     */
+    @NotNull
+    public static synchronized Renderer.CellImage forCode(byte code) {
+        var imageRep = CODE_IMAGES[code];
+        if (imageRep == null) {
+            imageRep = createImageRep(code);
+            CODE_IMAGES[code] = imageRep;
+        }
+        return imageRep;
+    }
+
+    /**
+     * Retrieves the image of a packed cell, already rotated.
+     *
+     * @param code Code of the cell.
+     * @return Image of the cell, which can be drawn as is.
+     * @see SpriteCache
+     */
+    @NotNull
+    public static synchronized Image spriteForCode(byte code) {
+        var sprite = SPRITES[code];
+        if (sprite == null) {
+            final var imageRep = forCode(code);
+            sprite = SpriteCache.rotated(imageRep.image, imageRep.rotation);
+            SPRITES[code] = sprite;
+        }
+        return sprite;
+    }
+
+    /**
+     * Retrieves the image of a packed cell, already rotated and scaled down.
+     *
+     * @param code Code of the cell.
+     * @param size Width and height of the image, which must be smaller than {@link models.Config#TILE_SIZE}.
+     * @return Image of the cell.
+     */
+    @NotNull
+    public static Image scaledSpriteForCode(byte code, int size) {
+        return SpriteCache.scaled(spriteForCode(code), size);
+    }
+
+    /**
+     * Retrieves the color which represents a packed cell when the map is too small to show images.
+     *
+     * @param code Code of the cell.
+     * @return Color of the cell, in ARGB.
+     */
+    public static int colorForCode(byte code) {
+        switch (PackedGrid.kind(code)) {
+            case PackedGrid.KIND_EMPTY:
+                return EMPTY_COLOR;
+            case PackedGrid.KIND_WALL:
+                return WALL_COLOR;
+            case PackedGrid.KIND_PIPE:
+                return PackedGrid.isFilled(code) ? FILLED_PIPE_COLOR : PIPE_COLOR;
+            case PackedGrid.KIND_TERMINATION:
+                return PackedGrid.isSink(code) ? SINK_COLOR : SOURCE_COLOR;
+            default:
+                throw new IllegalStateException("Unknown cell kind");
+        }
+    }
+
+    /**
+     * Retrieves the image of a pipe, already rotated.
+     *
+     * @param pipe Pipe to look up.
+     * @return Image of the pipe, which can be drawn as is.
+     */
+    @NotNull
+    public static Image spriteForPipe(@NotNull Pipe pipe) {
+        final byte code = PackedGrid.pipe(pipe.getShape());
+        return spriteForCode(pipe.getFilled() ? PackedGrid.filled(code) : code);
+    }
+
+    /**
+     * Retrieves the image representation of a pipe.
+     *
+     * @param pipe Pipe to look up.
+     * @return Image representation of the pipe. Note that the representation is different for filled and unfilled
+     * pipes.
+     */
+    @NotNull
+    public static Renderer.CellImage forPipe(@NotNull Pipe pipe) {
+        final byte code = PackedGrid.pipe(pipe.getShape());
+        return forCode(pipe.getFilled() ? PackedGrid.filled(code) : code);
+    }
+
+    @NotNull
+    private static Renderer.CellImage createImageRep(byte code) {
+        switch (PackedGrid.kind(code)) {
+            case PackedGrid.KIND_EMPTY:
+                return new Renderer.CellImage(EMPTY_CELL, 0);
+            case PackedGrid.KIND_WALL:
+                return new Renderer.CellImage(WALL, 0);
+            case PackedGrid.KIND_PIPE:
+                return createPipeImageRep(PackedGrid.shape(code), PackedGrid.isFilled(code));
+            case PackedGrid.KIND_TERMINATION:
+                return createTerminationImageRep(PackedGrid.direction(code), PackedGrid.isFilled(code));
+            default:
+                throw new IllegalStateException("Unknown cell kind");
+        }
+    }
+
+    /**
+     * @param shape    Shape of the pipe.
+     * @param isFilled Whether the pipe is filled.
+     * @return Image representation of the pipe.
+     * @throws IllegalStateException When {@code shape} is not a known pipe shape.
+     */
+    @NotNull
+    private static Renderer.CellImage createPipeImageRep(@NotNull Pipe.Shape shape, boolean isFilled) {
+        final var corner = isFilled ? CORNER_FILLED : CORNER_UNFILLED;
+        final var straight = isFilled ? STRAIGHT_FILLED : STRAIGHT_UNFILLED;
+
+        switch (shape) {
+            case HORIZONTAL:
+                return new Renderer.CellImage(straight, 90);
+            case VERTICAL:
+                return new Renderer.CellImage(straight, 0);
+            case TOP_LEFT:
+                return new Renderer.CellImage(corner, 0);
+            case TOP_RIGHT:
+                return new Renderer.CellImage(corner, 90);
+            case BOTTOM_RIGHT:
+                return new Renderer.CellImage(corner, 180);
+            case BOTTOM_LEFT:
+                return new Renderer.CellImage(corner, 270);
+            case CROSS:
+                return new Renderer.CellImage(isFilled ? CROSS_FILLED : CROSS_UNFILLED, 0);
+            default:
+                throw new IllegalStateException("Unknown shape");
+        }
+    }
+
+    /**
+     * @param pointingTo Direction which the termination cell is pointing to.
+     * @param isFilled   Whether the termination cell is filled.
+     * @return Image representation of the termination cell.
+     */
+    @NotNull
+    private static Renderer.CellImage createTerminationImageRep(@NotNull Direction pointingTo, boolean isFilled) {
+        final var image = isFilled ? DEST_FILLED : DEST_UNFILLED;
+
+        switch (pointingTo) {
+            case UP:
+                return new Renderer.CellImage(image, 0);
+            case RIGHT:
+                return new Renderer.CellImage(image, 90);
+            case DOWN:
+                return new Renderer.CellImage(image, 180);
+            case LEFT:
+                return new Renderer.CellImage(image, 270);
+            default:
+                throw new IllegalStateException("Invalid pointingTo value!");
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package controllers;
+
+import io.LevelIndex;
+import javafx.application.Platform;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Watches a map directory for level files which are created, modified or deleted.
+ *
+ * <p>
+ * Events are collected on a background thread until the directory has been quiet for
+ * {@link LevelDirectoryWatcher#BATCH_DELAY_MS} milliseconds, so that a burst of files produces a single batch. The
+ * {@link LevelIndex} is updated for the files in the batch on the background thread, and then the file names of the
+ * batch are passed to a listener on the JavaFX Application Thread.
+ * </p>
+ *
+ * <p>
+ * If the platform reports that events have been lost, the whole index is refreshed instead, and the batch contains
+ * every level which was or is in the index.
+ * </p>
+ */
+public class LevelDirectoryWatcher implements Closeable {
+
+    /*** Time to wait for further events before a batch is reported, in milliseconds.*/
+    public static final long BATCH_DELAY_MS = 200;
+
+    @NotNull
+    private final LevelIndex index;
+    @NotNull
+    private final Consumer<Set<String>> onChanged;
+    @NotNull
+    private final WatchService watchService;
+    @NotNull
+    private final Thread thread;
+
+    /**
+     * Starts watching the directory of an index.
+     *
+     * @param index     Index of the directory to watch.
+     * @param onChanged Action to run on the JavaFX Application Thread with the file names of each batch, after the
+     *                  index has been updated.
+     * @throws IOException if the directory cannot be watched.
+     */
+    public LevelDirectoryWatcher(@NotNull LevelIndex index, @NotNull Consumer<Set<String>> onChanged)
+            throws IOException {
+        this.index = index;
+        this.onChanged = onChanged;
+
+        final var directory = index.getDirectory().toAbsolutePath();
+        this.watchService = directory.getFileSystem().newWatchService();
+        try {
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            watchService.close();
+            throw e;
+        }
+
+        this.thread = new Thread(this::run, "level-directory-watcher");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Stops watching the directory. Batches which have not been reported yet are discarded.
+     */
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                final var batch = new TreeSet<String>();
+                boolean overflow = collect(watchService.take(), batch);
+
+                WatchKey key;
+                while ((key = watchService.poll(BATCH_DELAY_MS, TimeUnit.MILLISECONDS)) != null) {
+                    overflow |= collect(key, batch);
+                }
+
+                try {
+                    if (overflow) {
+                        index.getLevels().forEach(level -> batch.add(level.name));
+                        index.refresh();
+                        index.getLevels().forEach(level -> batch.add(level.name));
+                    } else {
+                        index.update(batch);
+                    }
+                } catch (IOException e) {
+                    System.out.println("Error in updating the level index");
+                    e.printStackTrace();
+                }
+
+                if (!batch.isEmpty()) {
+                    Platform.runLater(() -> onChanged.accept(batch));
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // the watcher is closed
+        }
+    }
+
+    /**
+     * Adds the file names of the pending events of a key to a batch, and re-arms the key. Files which are not levels,
+     * such as the index itself, are skipped.
+     *
+     * @param key   Key with pending events.
+     * @param batch Batch to add to.
+     * @return Whether some events have been lost.
+     */
+    private static boolean collect(@NotNull WatchKey key, @NotNull Set<String> batch) {
+        boolean overflow = false;
+        for (var event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                overflow = true;
+            } else if (event.context() instanceof Path && LevelIndex.isLevelFile((Path) event.context())) {
+                batch.add(((Path) event.context()).getFileName().toString());
+            }
+        }
+        key.reset();
+        return overflow;
+    }
+}
@@ -1,5 +1,8 @@
 package controllers;
 
+import io.LevelIndex;
+import io.LevelMetadata;
+import javafx.application.Platform;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
 import javafx.collections.FXCollections;
@@ -11,10 +14,13 @@ import org.jetbrains.annotations.Nullable;
 import java.io.IOException;
 import java.nio.file.FileVisitOption;
 import java.nio.file.Files;
-import java.io.File;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -43,6 +49,26 @@ public class LevelManager {
     @NotNull
     private Path mapDirectory = Paths.get("");
 
+    /*** Metadata index of {@link LevelManager#mapDirectory}, or {@code null} if the directory does not exist.*/
+    @Nullable
+    private LevelIndex levelIndex;
+
+    /*** Watcher of {@link LevelManager#mapDirectory}, which keeps the level names up to date as files change.*/
+    @Nullable
+    private LevelDirectoryWatcher watcher;
+
+    /*** Index whose levels are shown in {@link LevelManager#levelNames}, or {@code null} while it is being refreshed.*/
+    @Nullable
+    private LevelIndex listedIndex;
+
+    /*** Thread which refreshes the index of each newly set map directory.*/
+    @NotNull
+    private final ExecutorService indexer = Executors.newSingleThreadExecutor(r -> {
+        final var thread = new Thread(r, "level-indexer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
 
     private LevelManager() {
         setMapDirectory(mapDirectory);
@@ -59,6 +85,7 @@ public class LevelManager {
 
     /**
      * Sets the current map directory, and loads all maps from the newly set directory.
+     * <p>The level names are filled in once the directory has been indexed in the background.</p>
      * @param mapDirectory New map directory to load maps from.
      */
     public void setMapDirectory(@NotNull Path mapDirectory) {
@@ -87,34 +114,89 @@ public class LevelManager {
         try {
             //Stream<Path> walk = Files.walk(this.mapDirectory, 0, FileVisitOption.FOLLOW_LINKS );
 
-            /**Alternate ways to load file
-             * Credit: https://stackoverflow.com/questions/1844688/how-to-read-all-files-in-a-folder-from-java**/
-            if ( mapDirectory.toFile().exists() ) {
-                levelNames.clear();
-
-                for (final File fileEntry : mapDirectory.toFile().listFiles()) {
-                    if (!fileEntry.isDirectory()) {
-                        /** Parser for finding .map**/
-                        int end = fileEntry.toString().lastIndexOf('.');
-                        if ( end > 0 ){
-                            if ( fileEntry.toString().substring(end+1).equals("map") ){
-
-                                /**Action here**/
-                                int end2 = fileEntry.toString().lastIndexOf('\\');
-                                levelNames.add(fileEntry.toString().substring(end2+1) );
-                            }
-                        }
+            /** Level files are listed through the index, which only parses files that changed since the last time **/
+            levelNames.clear();
+            listedIndex = null;
+            if ( watcher != null ) {
+                watcher.close();
+                watcher = null;
+            }
+            if ( mapDirectory.toFile().isDirectory() ) {
+                levelIndex = new LevelIndex(mapDirectory);
+
+                /** Watch before listing, so files created in between are not missed **/
+                final LevelIndex index = levelIndex;
+                watcher = new LevelDirectoryWatcher(index, names -> {
+                    /** Ignore batches of a directory which is no longer shown **/
+                    if ( levelIndex == index && listedIndex == index )
+                        applyLevelChanges(index, names);
+                });
+
+                /** Index in the background, since the first index of a large directory parses every level **/
+                indexer.execute(() -> {
+                    try {
+                        index.refresh();
+                    } catch (IOException e) {
+                        System.out.println("Error in refreshing the level index");
+                        e.printStackTrace();
                     }
-                }
-                System.out.println(levelNames);
-                java.util.Collections.sort(levelNames);
+                    Platform.runLater(() -> showLevels(index));
+                });
             }
+            else levelIndex = null;
         }
         catch ( Exception e ){ System.out.println("Error in loadLevelNamesFromDisk\n"); e.printStackTrace();  }
 
     }
 
 
+    /**
+     * Fills {@link LevelManager#levelNames} from an index which has been refreshed, unless another directory has been
+     * set in the meantime. Must be called on the JavaFX Application Thread.
+     * <p>
+     * Batches of the watcher are only applied after this, since the list is read from the index after every batch
+     * reported so far has been applied to the index.
+     * </p>
+     *
+     * @param index Index which has been refreshed.
+     */
+    private void showLevels(@NotNull LevelIndex index) {
+        if ( levelIndex != index )
+            return;
+
+        for (final LevelMetadata level : index.getLevels()) {
+            levelNames.add(level.name);
+        }
+        listedIndex = index;
+    }
+
+
+    /**
+     * Applies a batch of changed levels reported by {@link LevelDirectoryWatcher} to {@link LevelManager#levelNames}.
+     * <p>
+     * Only the changed names are touched. New levels are inserted at their sorted position by binary search, deleted
+     * levels are removed, and modified levels are replaced in place so that sorted and filtered views of the list
+     * look at their new metadata.
+     * </p>
+     *
+     * @param index Index which has been updated for the batch.
+     * @param names File names of the levels which may have changed.
+     */
+    private void applyLevelChanges(@NotNull LevelIndex index, @NotNull Set<String> names) {
+        for (final String name : names) {
+            int pos = Collections.binarySearch(levelNames, name);
+            boolean isIndexed = index.get(name) != null;
+
+            if ( pos >= 0 && isIndexed )
+                levelNames.set(pos, name);
+            else if ( pos >= 0 )
+                levelNames.remove(pos);
+            else if ( isIndexed )
+                levelNames.add(-pos - 1, name);
+        }
+    }
+
+
     @NotNull
     public ObservableList<String> getLevelNames() {
         return levelNames;
@@ -122,6 +204,17 @@ public class LevelManager {
 
 
 
+    /**
+     * @param levelName Name of a level in the current map directory.
+     * @return Indexed metadata of the level, or {@code null} if the level is not indexed.
+     */
+    @Nullable
+    public LevelMetadata getLevelMetadata(@NotNull String levelName) {
+        return levelIndex != null ? levelIndex.get(levelName) : null;
+    }
+
+
+
     /** @return Full path to the currently selected level */
     @NotNull
     public Path getCurrentLevelPath() {
@@ -183,6 +276,26 @@ public class LevelManager {
     }
 
 
+    /**
+     * Finds the level after the current one, without selecting it.
+     *
+     * @return Name of the next map if present, {@code null} otherwise.
+     * @see LevelManager#getAndSetNextLevel()
+     */
+    @Nullable
+    public String getNextLevel() {
+        String levelName = getCurrentLevelProperty().getValue();
+        if ( levelName == null || levelName.isEmpty() )
+            return null;
+
+        int index = levelNames.indexOf(levelName);
+        if ( index == -1 || index == levelNames.size() - 1 )
+            return null;
+
+        return levelNames.get(index + 1);
+    }
+
+
     @NotNull
     public StringProperty getCurrentLevelProperty() {
         return curLevelNameProperty;
@@ -0,0 +1,142 @@
+package controllers;
+
+import io.Deserializer;
+import models.GameEngine;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Singleton class which loads the next level in the background while the current level is being played.
+ *
+ * <p>
+ * At most one level is prefetched at a time. Requesting another level or cancelling drops the previous one, and
+ * levels with more than {@link LevelPrefetcher#MAX_CELLS} cells are skipped after reading the header of the file, so
+ * that the memory held by this class is bounded by a single level of that size. Levels are loaded one after another on
+ * a single background thread, so a cancelled load which is still running never overlaps the next one.
+ * </p>
+ */
+public class LevelPrefetcher {
+
+    /*** Singleton instance.*/
+    @NotNull
+    private static final LevelPrefetcher INSTANCE = new LevelPrefetcher();
+
+    /*** Largest number of cells of a level which is prefetched.*/
+    public static final int MAX_CELLS = 1 << 22;
+
+    @NotNull
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        final var thread = new Thread(r, "level-prefetcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /*** Level which is being or has been prefetched. Guarded by {@code this}.*/
+    @Nullable
+    private Prefetch current;
+
+    private LevelPrefetcher() {
+    }
+
+    /**@return Singleton instance of this class.*/
+    @NotNull
+    public static LevelPrefetcher getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Starts loading a level in the background, replacing any level which has been prefetched before.
+     *
+     * @param path Path of the map file.
+     */
+    public synchronized void prefetch(@NotNull Path path) {
+        cancel();
+
+        final long lastModified;
+        try {
+            lastModified = Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return;
+        }
+
+        final var prefetch = new Prefetch(path, lastModified);
+        prefetch.future = executor.submit(() -> {
+            final var deserializer = new Deserializer(path);
+            return deserializer.parseNumCells() <= MAX_CELLS ? deserializer.parseGameEngine() : null;
+        });
+        current = prefetch;
+    }
+
+    /**
+     * Drops the prefetched level. A load which has not started yet is skipped.
+     */
+    public synchronized void cancel() {
+        if (current != null) {
+            current.future.cancel(false);
+            current = null;
+        }
+    }
+
+    /**
+     * Takes the prefetched game of a level.
+     *
+     * <p>
+     * If the level is still loading, this waits for it to finish, which is never slower than loading it again. The
+     * prefetched level is dropped either way, since a game can only be played once.
+     * </p>
+     *
+     * @param path Path of the map file.
+     * @return The game of the level, or {@code null} if another level was prefetched, the file has changed since, or
+     * the level could not be loaded or was too large to prefetch.
+     */
+    @Nullable
+    public GameEngine take(@NotNull Path path) {
+        final Prefetch prefetch;
+        synchronized (this) {
+            prefetch = current;
+            current = null;
+        }
+
+        if (prefetch == null) {
+            return null;
+        }
+        try {
+            if (!prefetch.path.equals(path.toAbsolutePath().normalize())
+                    || prefetch.lastModified != Files.getLastModifiedTime(path).toMillis()) {
+                prefetch.future.cancel(false);
+                return null;
+            }
+            return prefetch.future.get();
+        } catch (IOException | ExecutionException | CancellationException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * A level which is being or has been loaded.
+     */
+    private static final class Prefetch {
+
+        @NotNull
+        private final Path path;
+        private final long lastModified;
+        private Future<GameEngine> future;
+
+        Prefetch(@NotNull Path path, long lastModified) {
+            this.path = path.toAbsolutePath().normalize();
+            this.lastModified = lastModified;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package controllers;
+
+import javafx.animation.AnimationTimer;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces render requests of the gameplay canvases, so that each canvas is drawn at most once per frame.
+ *
+ * <p>
+ * Requests only mark a canvas as needing a redraw, and may be made from any thread. An {@link AnimationTimer} performs
+ * the pending redraws on the JavaFX Application Thread at the start of every frame.
+ * </p>
+ */
+public class RenderScheduler {
+
+    @NotNull
+    private final Target map;
+    @NotNull
+    private final Target queue;
+
+    @NotNull
+    private final AnimationTimer timer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            map.renderIfPending();
+            queue.renderIfPending();
+        }
+    };
+
+    private volatile boolean running = false;
+
+    private final AtomicLong numRequests = new AtomicLong();
+    private final AtomicLong numRenders = new AtomicLong();
+    private final AtomicLong numCoalesced = new AtomicLong();
+    private final AtomicLong numDropped = new AtomicLong();
+
+    /**
+     * @param mapRenderer   Action which draws the map.
+     * @param queueRenderer Action which draws the pipe queue.
+     */
+    public RenderScheduler(@NotNull Runnable mapRenderer, @NotNull Runnable queueRenderer) {
+        map = new Target(mapRenderer);
+        queue = new Target(queueRenderer);
+    }
+
+    /**
+     * Starts performing redraws once per frame. Must be called on the JavaFX Application Thread.
+     */
+    public void start() {
+        running = true;
+        timer.start();
+    }
+
+    /**
+     * Stops performing redraws. Pending redraws are dropped. Must be called on the JavaFX Application Thread.
+     */
+    public void stop() {
+        running = false;
+        timer.stop();
+        map.drop();
+        queue.drop();
+    }
+
+    /**
+     * Requests the map to be drawn in the next frame.
+     */
+    public void requestMapRender() {
+        map.request();
+    }
+
+    /**
+     * Requests the pipe queue to be drawn in the next frame.
+     */
+    public void requestQueueRender() {
+        queue.request();
+    }
+
+    /**
+     * @return Number of render requests made.
+     */
+    public long getNumRequests() {
+        return numRequests.get();
+    }
+
+    /**
+     * @return Number of redraws performed.
+     */
+    public long getNumRenders() {
+        return numRenders.get();
+    }
+
+    /**
+     * @return Number of requests which were merged into a redraw that was already pending.
+     */
+    public long getNumCoalesced() {
+        return numCoalesced.get();
+    }
+
+    /**
+     * @return Number of requests which were discarded because the scheduler was stopped.
+     */
+    public long getNumDropped() {
+        return numDropped.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RenderScheduler{requests=%d, renders=%d, coalesced=%d, dropped=%d}",
+                getNumRequests(), getNumRenders(), getNumCoalesced(), getNumDropped());
+    }
+
+    /**
+     * A canvas which is drawn by the scheduler.
+     */
+    private final class Target {
+
+        @NotNull
+        private final Runnable renderer;
+        private final AtomicBoolean pending = new AtomicBoolean(false);
+
+        Target(@NotNull Runnable renderer) {
+            this.renderer = renderer;
+        }
+
+        void request() {
+            numRequests.incrementAndGet();
+            if (!running) {
+                numDropped.incrementAndGet();
+            } else if (pending.getAndSet(true)) {
+                numCoalesced.incrementAndGet();
+            }
+        }
+
+        void renderIfPending() {
+            if (pending.getAndSet(false)) {
+                renderer.run();
+                numRenders.incrementAndGet();
+            }
+        }
+
+        void drop() {
+            if (pending.getAndSet(false)) {
+                numDropped.incrementAndGet();
+            }
+        }
+    }
+}
@@ -3,14 +3,15 @@ package controllers;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.image.Image;
-import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
 import javafx.scene.transform.Rotate;
+import models.map.GridView;
+import models.map.PackedGrid;
 import models.map.cells.Cell;
-import models.map.cells.FillableCell;
-import models.map.cells.TerminationCell;
 import models.pipes.Pipe;
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Nullable;
 
 import java.util.List;
 
@@ -24,6 +25,16 @@ public class Renderer {
     /*** Padding between two tiles in a queue.*/
     private static final int QUEUE_TILE_PADDING = 8;
 
+    /*** Smallest size of a tile on screen, in pixels, for which the full sprites are drawn.*/
+    private static final double FULL_DETAIL_TILE_SIZE = TILE_SIZE / 2.0;
+
+    /*** Smallest size of a tile on screen, in pixels, for which sprites are drawn instead of colors.*/
+    private static final double SPRITE_TILE_SIZE = 4;
+
+    /*** Image which the overview of a map is written to, reused between frames. Only used on the FX thread.*/
+    private static WritableImage overviewImage;
+    private static int[] overviewPixels;
+
     /*** An image of a cell, with support for rotated images.*/
     public static class CellImage {
 
@@ -64,50 +75,27 @@ public class Renderer {
 
 
     /**
-     * Draws a rotated image onto a {@link GraphicsContext}.
-     *
-     * @param gc    Target Graphics Context.
-     * @param image Image to draw.
-     * @param angle Angle to rotate the image by.
-     * @param x     X-coordinate relative to the graphics context to draw the top-left of the image.
-     * @param y     Y-coordinate relative to the graphics context to draw the top-left of the image.
+     * Renders a map into a {@link Canvas}.
+     * @param canvas Canvas to render to.
+     * @param map    Map to render.
      */
-    private static void drawRotatedImage(@NotNull GraphicsContext gc, @NotNull Image image, double angle, double x, double y) {
-        // TODO wip -- Rotate gc?
-        /**Credit: https://stackoverflow.com/questions/40059836/rotating-image-in-javafx */
-        ImageView iv = new ImageView(image);
-        iv.setRotate(angle);
-        javafx.scene.SnapshotParameters params = new javafx.scene.SnapshotParameters();
-        params.setFill(javafx.scene.paint.Color.TRANSPARENT);
-        gc.drawImage( iv.snapshot(params, null), x, y );
-
-        /** Code that suppose to work but can't**/
-        //gc.save();
-        //rotate(gc, angle, 0 , 0 );
-        //gc.drawImage(image, x, y);
-        //gc.restore();
+    public static void renderMap(@NotNull Canvas canvas, @NotNull Cell[][] map) {
+        renderMap(canvas, PackedGrid.fromCells(map.length, map[0].length, map));
     }
 
 
 
     /**
-     * Renders a map into a {@link Canvas}.
+     * Renders a packed map or a snapshot of one into a {@link Canvas}.
+     * <p>
+     * Tiles are drawn from {@link CellImages#spriteForCode(byte)}, so no images are rotated or created here.
      * @param canvas Canvas to render to.
-     * @param map    Map to render.
+     * @param grid   Map to render.
      */
-    public static void renderMap(@NotNull Canvas canvas, @NotNull Cell[][] map) {
+    public static void renderMap(@NotNull Canvas canvas, @NotNull GridView grid) {
         // TODO wip -- positioning and rotation
-        final int Row = map.length;
-        final int Col = map[0].length;
-
-        /*
-        System.out.println("The loading is: ");
-        for ( int i = 0; i < Row; i++ ) {
-            for (int j = 0; j < Col; j++) {
-                System.out.print(map[i][j].toSerializedRep());
-            }
-            System.out.println();
-        }*/
+        final int Row = grid.getRows();
+        final int Col = grid.getCols();
 
         canvas.setHeight(Row * TILE_SIZE);
         canvas.setWidth(Col * TILE_SIZE);
@@ -116,26 +104,162 @@ public class Renderer {
 
         for ( int i = 0; i < Row; i++ ){
             for ( int j = 0; j < Col; j++ ){
-                Image image = map[i][j].getImageRep().image;
-
-                if (map[i][j] instanceof TerminationCell){
-                    TerminationCell tCell = (TerminationCell) map[i][j];
-                    drawRotatedImage(gc, image, tCell.getImageRep().rotation, TILE_SIZE * j, TILE_SIZE * i  );
-                }
-                else if ( map[i][j] instanceof FillableCell ){
-                    if ( ((FillableCell) map[i][j]).getPipe().isPresent() ){
-                        drawRotatedImage(gc, image, map[i][j].getImageRep().rotation, TILE_SIZE * j, TILE_SIZE * i );
-                    }
-                    else gc.drawImage( image, TILE_SIZE * j, TILE_SIZE * i);
-                }
-                else {
-                    gc.drawImage( image, TILE_SIZE * j, TILE_SIZE * i);
-                }
+                gc.drawImage( CellImages.spriteForCode(grid.get(i, j)), TILE_SIZE * j, TILE_SIZE * i);
+            }
+        }
+
+
+    }
 
+
+
+    /**
+     * Redraws a single cell of a packed map which has already been rendered by
+     * {@link Renderer#renderMap(Canvas, GridView)}.
+     * @param canvas Canvas to render to.
+     * @param grid   Map to render.
+     * @param index  Index of the cell to redraw.
+     */
+    public static void renderCell(@NotNull Canvas canvas, @NotNull GridView grid, int index) {
+        final int row = index / grid.getCols();
+        final int col = index % grid.getCols();
+        canvas.getGraphicsContext2D().drawImage( CellImages.spriteForCode(grid.get(index)), TILE_SIZE * col, TILE_SIZE * row);
+    }
+
+
+
+    /**
+     * Renders the visible part of a packed map into a {@link Canvas}.
+     * <p>
+     * The canvas is resized to the viewport, and only the tiles inside the viewport are drawn. The detail of the tiles
+     * depends on how large they are on screen:
+     * <ul>
+     * <li>At least {@link Renderer#FULL_DETAIL_TILE_SIZE} pixels: The full sprites.</li>
+     * <li>At least {@link Renderer#SPRITE_TILE_SIZE} pixels: Sprites scaled down in advance.</li>
+     * <li>Smaller: One color per cell, see {@link Renderer#renderOverview(GraphicsContext, GridView, Viewport)}.</li>
+     * </ul>
+     * @param canvas   Canvas to render to.
+     * @param grid     Map to render.
+     * @param viewport Visible window of the map.
+     */
+    public static void renderMap(@NotNull Canvas canvas, @NotNull GridView grid, @NotNull Viewport viewport) {
+        canvas.setWidth(viewport.getWidth());
+        canvas.setHeight(viewport.getHeight());
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        gc.clearRect(0, 0, viewport.getWidth(), viewport.getHeight());
+
+        if (viewport.getTileSize() < SPRITE_TILE_SIZE) {
+            renderOverview(gc, grid, viewport);
+            return;
+        }
+
+        for ( int i = viewport.getFirstVisibleRow(); i < viewport.getEndVisibleRow(); i++ ){
+            for ( int j = viewport.getFirstVisibleCol(); j < viewport.getEndVisibleCol(); j++ ){
+                drawTile(gc, grid.get(i, j), i, j, viewport);
             }
         }
+    }
 
 
+
+    /**
+     * Renders the visible part of a map with one color per cell.
+     * <p>
+     * The colors are written into a {@link WritableImage} with at most one pixel per canvas pixel, which is then drawn
+     * over the visible tiles without smoothing. When a tile is smaller than a pixel, each pixel takes the color of the
+     * cell at its center. The cost is therefore bounded by the size of the canvas rather than the size of the map.
+     * @param gc       Target Graphics Context.
+     * @param grid     Map to render.
+     * @param viewport Visible window of the map.
+     */
+    private static void renderOverview(@NotNull GraphicsContext gc, @NotNull GridView grid, @NotNull Viewport viewport) {
+        final int firstRow = viewport.getFirstVisibleRow();
+        final int firstCol = viewport.getFirstVisibleCol();
+        final int numRows = viewport.getEndVisibleRow() - firstRow;
+        final int numCols = viewport.getEndVisibleCol() - firstCol;
+        if (numRows <= 0 || numCols <= 0) {
+            return;
+        }
+
+        final double x = viewport.tileX(firstCol);
+        final double y = viewport.tileY(firstRow);
+        final double width = viewport.tileX(firstCol + numCols) - x;
+        final double height = viewport.tileY(firstRow + numRows) - y;
+        final int imageWidth = (int) Math.max(1, Math.min(numCols, Math.ceil(width)));
+        final int imageHeight = (int) Math.max(1, Math.min(numRows, Math.ceil(height)));
+
+        if (overviewImage == null || overviewImage.getWidth() != imageWidth || overviewImage.getHeight() != imageHeight) {
+            overviewImage = new WritableImage(imageWidth, imageHeight);
+            overviewPixels = new int[imageWidth * imageHeight];
+        }
+
+        for (int py = 0; py < imageHeight; ++py) {
+            final int row = firstRow + (int) ((py + 0.5) * numRows / imageHeight);
+            for (int px = 0; px < imageWidth; ++px) {
+                final int col = firstCol + (int) ((px + 0.5) * numCols / imageWidth);
+                overviewPixels[py * imageWidth + px] = CellImages.colorForCode(grid.get(row, col));
+            }
+        }
+        overviewImage.getPixelWriter().setPixels(0, 0, imageWidth, imageHeight, PixelFormat.getIntArgbInstance(),
+                overviewPixels, 0, imageWidth);
+
+        gc.setImageSmoothing(false);
+        gc.drawImage(overviewImage, x, y, width, height);
+        gc.setImageSmoothing(true);
+    }
+
+
+
+    /**
+     * Redraws a single cell of a packed map which has already been rendered by
+     * {@link Renderer#renderMap(Canvas, GridView, Viewport)}. Cells outside the viewport are skipped.
+     * @param canvas   Canvas to render to.
+     * @param grid     Map to render.
+     * @param index    Index of the cell to redraw.
+     * @param viewport Visible window of the map.
+     */
+    public static void renderCell(@NotNull Canvas canvas, @NotNull GridView grid, int index, @NotNull Viewport viewport) {
+        final int row = index / grid.getCols();
+        final int col = index % grid.getCols();
+        if (!viewport.isVisible(row, col)) {
+            return;
+        }
+
+        final var gc = canvas.getGraphicsContext2D();
+        if (viewport.getTileSize() < SPRITE_TILE_SIZE) {
+            final double x = viewport.tileX(col);
+            final double y = viewport.tileY(row);
+            gc.setFill(toColor(CellImages.colorForCode(grid.get(index))));
+            gc.fillRect(x, y, Math.max(1, viewport.tileX(col + 1) - x), Math.max(1, viewport.tileY(row + 1) - y));
+        } else {
+            drawTile(gc, grid.get(index), row, col, viewport);
+        }
+    }
+
+
+
+    /**
+     * @param argb Color in ARGB.
+     * @return The same color as a {@link Color}.
+     */
+    @NotNull
+    private static Color toColor(int argb) {
+        return Color.rgb(argb >> 16 & 0xFF, argb >> 8 & 0xFF, argb & 0xFF, (argb >>> 24) / 255.0);
+    }
+
+
+
+    /**
+     * Draws a tile scaled to the viewport. Tile edges are snapped to whole pixels, so that no gaps appear between tiles.
+     */
+    private static void drawTile(@NotNull GraphicsContext gc, byte code, int row, int col, @NotNull Viewport viewport) {
+        final double x = viewport.tileX(col);
+        final double y = viewport.tileY(row);
+        final double tileSize = viewport.getTileSize();
+        final var sprite = tileSize >= FULL_DETAIL_TILE_SIZE
+                ? CellImages.spriteForCode(code)
+                : CellImages.scaledSpriteForCode(code, (int) Math.ceil(tileSize));
+        gc.drawImage( sprite, x, y, viewport.tileX(col + 1) - x, viewport.tileY(row + 1) - y);
     }
 
 
@@ -156,8 +280,7 @@ public class Renderer {
         GraphicsContext gc = canvas.getGraphicsContext2D();
 
         for ( int i = 0; i < width; i++ ){
-            var ImageRep = pipeQueue.get(i).getImageRep();
-            drawRotatedImage(gc, ImageRep.image, ImageRep.rotation,TILE_SIZE * i, 0 );
+            gc.drawImage( CellImages.spriteForPipe(pipeQueue.get(i)), TILE_SIZE * i, 0 );
 
             //BAD evil CODE
             if (originalLength == -1){
@@ -0,0 +1,190 @@
+package controllers;
+
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Cache of images rotated by multiples of 90 degrees, and of downscaled copies of images.
+ *
+ * <p>
+ * All four rotations of an image are created by remapping its pixels the first time any of them is requested, so
+ * drawing a rotated tile is a plain {@link javafx.scene.canvas.GraphicsContext#drawImage(Image, double, double)}
+ * instead of a scene graph snapshot.
+ * </p>
+ *
+ * <p>
+ * Downscaled copies are used when the map is zoomed out, so that small tiles are drawn from small textures which have
+ * been filtered once, instead of being resampled from the full image on every draw.
+ * </p>
+ *
+ * <p>
+ * The caches are shared by the JavaFX Application Thread and the background threads of {@link ThumbnailCache}, which
+ * draw thumbnails from the same sprites, so every method is synchronized.
+ * </p>
+ */
+public class SpriteCache {
+
+    private static final int NUM_ROTATIONS = 4;
+
+    /**
+     * Rotations of each image, indexed by the number of clockwise quarter turns.
+     */
+    private static final Map<Image, Image[]> ROTATIONS = new IdentityHashMap<>();
+
+    /**
+     * Downscaled copies of each image, indexed by their size.
+     */
+    private static final Map<Image, Image[]> SCALED = new IdentityHashMap<>();
+
+    private SpriteCache() {
+    }
+
+    /**
+     * @param image Image to rotate.
+     * @param angle Clockwise rotation in degrees, which must be a multiple of 90.
+     * @return The rotated image.
+     * @throws IllegalArgumentException if {@code angle} is not a multiple of 90.
+     */
+    @NotNull
+    public static synchronized Image rotated(@NotNull Image image, double angle) {
+        if (angle % 90 != 0) {
+            throw new IllegalArgumentException("Only rotations by multiples of 90 degrees are supported");
+        }
+
+        final int quarterTurns = Math.floorMod((int) (angle / 90), NUM_ROTATIONS);
+        return ROTATIONS.computeIfAbsent(image, SpriteCache::createRotations)[quarterTurns];
+    }
+
+    /**
+     * @param image Image to scale.
+     * @param size  Width and height of the scaled image, which must be positive and smaller than the image.
+     * @return The image scaled down to a square of {@code size} pixels.
+     */
+    @NotNull
+    public static synchronized Image scaled(@NotNull Image image, int size) {
+        final var copies = SCALED.computeIfAbsent(image, k -> new Image[(int) image.getWidth()]);
+        if (copies[size] == null) {
+            copies[size] = downscale(image, size);
+        }
+        return copies[size];
+    }
+
+    @NotNull
+    private static int[] readPixels(@NotNull Image image) {
+        final int width = (int) image.getWidth();
+        final int height = (int) image.getHeight();
+        final var pixels = new int[width * height];
+        image.getPixelReader().getPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), pixels, 0, width);
+        return pixels;
+    }
+
+    @NotNull
+    private static Image[] createRotations(@NotNull Image image) {
+        final int width = (int) image.getWidth();
+        final int height = (int) image.getHeight();
+        final var pixels = readPixels(image);
+
+        final var rotations = new Image[NUM_ROTATIONS];
+        rotations[0] = image;
+        for (int quarterTurns = 1; quarterTurns < NUM_ROTATIONS; ++quarterTurns) {
+            rotations[quarterTurns] = rotate(pixels, width, height, quarterTurns);
+        }
+        return rotations;
+    }
+
+    /**
+     * @param pixels       Pixels of the image in ARGB, row by row.
+     * @param width        Width of the image.
+     * @param height       Height of the image.
+     * @param quarterTurns Number of clockwise quarter turns, between 1 and 3.
+     * @return A new image of the rotated pixels.
+     */
+    @NotNull
+    private static Image rotate(@NotNull int[] pixels, int width, int height, int quarterTurns) {
+        final boolean isSideways = quarterTurns % 2 == 1;
+        final int newWidth = isSideways ? height : width;
+        final int newHeight = isSideways ? width : height;
+        final var rotated = new int[pixels.length];
+
+        for (int y = 0; y < height; ++y) {
+            for (int x = 0; x < width; ++x) {
+                final int newX;
+                final int newY;
+                switch (quarterTurns) {
+                    case 1:
+                        newX = height - 1 - y;
+                        newY = x;
+                        break;
+                    case 2:
+                        newX = width - 1 - x;
+                        newY = height - 1 - y;
+                        break;
+                    case 3:
+                        newX = y;
+                        newY = width - 1 - x;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Invalid number of quarter turns");
+                }
+                rotated[newY * newWidth + newX] = pixels[y * width + x];
+            }
+        }
+
+        final var image = new WritableImage(newWidth, newHeight);
+        image.getPixelWriter().setPixels(0, 0, newWidth, newHeight, PixelFormat.getIntArgbInstance(), rotated, 0,
+                newWidth);
+        return image;
+    }
+
+    /**
+     * Scales an image down by averaging the pixels which fall into each new pixel. Colors are weighted by their alpha,
+     * so transparent pixels do not darken the edges.
+     */
+    @NotNull
+    private static Image downscale(@NotNull Image image, int size) {
+        final int width = (int) image.getWidth();
+        final int height = (int) image.getHeight();
+        final var pixels = readPixels(image);
+        final var scaled = new int[size * size];
+
+        for (int y = 0; y < size; ++y) {
+            final int fromY = y * height / size;
+            final int toY = Math.max(fromY + 1, (y + 1) * height / size);
+
+            for (int x = 0; x < size; ++x) {
+                final int fromX = x * width / size;
+                final int toX = Math.max(fromX + 1, (x + 1) * width / size);
+
+                long a = 0;
+                long r = 0;
+                long g = 0;
+                long b = 0;
+                for (int srcY = fromY; srcY < toY; ++srcY) {
+                    for (int srcX = fromX; srcX < toX; ++srcX) {
+                        final int argb = pixels[srcY * width + srcX];
+                        final int alpha = argb >>> 24;
+                        a += alpha;
+                        r += (argb >> 16 & 0xFF) * alpha;
+                        g += (argb >> 8 & 0xFF) * alpha;
+                        b += (argb & 0xFF) * alpha;
+                    }
+                }
+
+                final int count = (toX - fromX) * (toY - fromY);
+                if (a != 0) {
+                    scaled[y * size + x] = (int) (a / count) << 24 | (int) (r / a) << 16 | (int) (g / a) << 8
+                            | (int) (b / a);
+                }
+            }
+        }
+
+        final var result = new WritableImage(size, size);
+        result.getPixelWriter().setPixels(0, 0, size, size, PixelFormat.getIntArgbInstance(), scaled, 0, size);
+        return result;
+    }
+}
@@ -0,0 +1,266 @@
+package controllers;
+
+import io.Deserializer;
+import javafx.application.Platform;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import models.map.PackedGrid;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import static models.Config.TILE_SIZE;
+
+/**
+ * Singleton class which creates preview images of map files in the background.
+ *
+ * <p>
+ * Maps are loaded and drawn into small images on a pool of background threads, without creating a game. The most
+ * recently used thumbnails are kept, keyed by the path and modification time of the file, so that a thumbnail is
+ * created again if the file changes.
+ * </p>
+ */
+public class ThumbnailCache {
+
+    /*** Singleton instance.*/
+    @NotNull
+    private static final ThumbnailCache INSTANCE = new ThumbnailCache();
+
+    /*** Largest width and height of a thumbnail, in pixels.*/
+    public static final int MAX_SIZE = 320;
+
+    /*** Number of thumbnails to keep.*/
+    private static final int CAPACITY = 64;
+
+    /*** Smallest size of a tile in a thumbnail, in pixels, for which sprites are drawn instead of colors.*/
+    private static final int MIN_SPRITE_TILE_SIZE = 4;
+
+    private static final int NUM_THREADS = 2;
+
+    @NotNull
+    private final ExecutorService executor = Executors.newFixedThreadPool(NUM_THREADS, r -> {
+        final var thread = new Thread(r, "thumbnail-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /*** Thumbnails in least-recently-used order. Guarded by {@code this}.*/
+    @NotNull
+    private final LinkedHashMap<Key, Image> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Image> eldest) {
+            return size() > CAPACITY;
+        }
+    };
+
+    private ThumbnailCache() {
+    }
+
+    /**@return Singleton instance of this class.*/
+    @NotNull
+    public static ThumbnailCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Requests the thumbnail of a map file.
+     *
+     * <p>
+     * If the thumbnail is cached, {@code onReady} is run immediately. Otherwise, the map is loaded in the background,
+     * and {@code onReady} or {@code onError} is later run on the JavaFX Application Thread, unless the request has been
+     * cancelled by then.
+     * </p>
+     *
+     * @param path    Path of the map file.
+     * @param onReady Action to run with the thumbnail.
+     * @param onError Action to run with the error if the map cannot be loaded.
+     * @return The request, which may be cancelled when the thumbnail is no longer needed.
+     */
+    @NotNull
+    public Request request(@NotNull Path path, @NotNull Consumer<Image> onReady, @NotNull Consumer<Exception> onError) {
+        final var request = new Request();
+
+        final Key key;
+        try {
+            key = new Key(path, Files.getLastModifiedTime(path).toMillis());
+        } catch (IOException e) {
+            onError.accept(e);
+            return request;
+        }
+
+        final var cached = get(key);
+        if (cached != null) {
+            onReady.accept(cached);
+            return request;
+        }
+
+        request.future = executor.submit(() -> {
+            if (request.cancelled) {
+                return;
+            }
+
+            try {
+                final var grid = new Deserializer(path).parseGameFile().getGrid();
+                if (request.cancelled) {
+                    return;
+                }
+
+                final var thumbnail = render(grid);
+                put(key, thumbnail);
+                Platform.runLater(() -> {
+                    if (!request.cancelled) {
+                        onReady.accept(thumbnail);
+                    }
+                });
+            } catch (IOException | RuntimeException e) {
+                Platform.runLater(() -> {
+                    if (!request.cancelled) {
+                        onError.accept(e);
+                    }
+                });
+            }
+        });
+        return request;
+    }
+
+    @Nullable
+    private synchronized Image get(@NotNull Key key) {
+        return cache.get(key);
+    }
+
+    private synchronized void put(@NotNull Key key, @NotNull Image thumbnail) {
+        cache.put(key, thumbnail);
+    }
+
+    /**
+     * Draws a map into an image of at most {@link ThumbnailCache#MAX_SIZE} pixels along each side.
+     *
+     * <p>
+     * Each tile is drawn from a scaled-down sprite if it is at least {@link ThumbnailCache#MIN_SPRITE_TILE_SIZE} pixels
+     * wide. Otherwise each pixel takes the color of the cell at its center, as in the overview of {@link Renderer}.
+     * </p>
+     *
+     * @param grid Map to draw.
+     * @return A new image of the map.
+     */
+    @NotNull
+    private static Image render(@NotNull PackedGrid grid) {
+        final int rows = grid.getRows();
+        final int cols = grid.getCols();
+        final int tileSize = Math.min(TILE_SIZE, MAX_SIZE / Math.max(rows, cols));
+
+        final int width;
+        final int height;
+        final int[] pixels;
+        if (tileSize >= MIN_SPRITE_TILE_SIZE) {
+            width = cols * tileSize;
+            height = rows * tileSize;
+            pixels = new int[width * height];
+
+            final var spritePixels = new HashMap<Byte, int[]>();
+            for (int r = 0; r < rows; ++r) {
+                for (int c = 0; c < cols; ++c) {
+                    final byte code = grid.get(r, c);
+                    final var tile = spritePixels.computeIfAbsent(code, k -> readSprite(k, tileSize));
+                    for (int y = 0; y < tileSize; ++y) {
+                        System.arraycopy(tile, y * tileSize, pixels, (r * tileSize + y) * width + c * tileSize,
+                                tileSize);
+                    }
+                }
+            }
+        } else {
+            final double scale = Math.min(1.0, (double) MAX_SIZE / Math.max(rows, cols));
+            width = Math.max(1, (int) (cols * scale));
+            height = Math.max(1, (int) (rows * scale));
+            pixels = new int[width * height];
+
+            for (int y = 0; y < height; ++y) {
+                final int row = (int) ((y + 0.5) * rows / height);
+                for (int x = 0; x < width; ++x) {
+                    final int col = (int) ((x + 0.5) * cols / width);
+                    pixels[y * width + x] = CellImages.colorForCode(grid.get(row, col));
+                }
+            }
+        }
+
+        final var image = new WritableImage(width, height);
+        image.getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), pixels, 0, width);
+        return image;
+    }
+
+    @NotNull
+    private static int[] readSprite(byte code, int size) {
+        final var sprite = size >= TILE_SIZE
+                ? CellImages.spriteForCode(code)
+                : CellImages.scaledSpriteForCode(code, size);
+        final var pixels = new int[size * size];
+        sprite.getPixelReader().getPixels(0, 0, size, size, PixelFormat.getIntArgbInstance(), pixels, 0, size);
+        return pixels;
+    }
+
+    /**
+     * A pending thumbnail request.
+     */
+    public static final class Request {
+
+        private volatile boolean cancelled = false;
+        @Nullable
+        private volatile Future<?> future;
+
+        /**
+         * Cancels the request. The thumbnail will not be delivered, and it is not loaded if loading has not started.
+         */
+        public void cancel() {
+            cancelled = true;
+
+            final var future = this.future;
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Identity of a version of a map file.
+     */
+    private static final class Key {
+
+        @NotNull
+        private final Path path;
+        private final long lastModified;
+
+        Key(@NotNull Path path, long lastModified) {
+            this.path = path.toAbsolutePath().normalize();
+            this.lastModified = lastModified;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final var other = (Key) o;
+            return lastModified == other.lastModified && path.equals(other.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, lastModified);
+        }
+    }
+}
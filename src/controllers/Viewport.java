@@ -0,0 +1,227 @@
+package controllers;
+
+import static models.Config.TILE_SIZE;
+
+/**
+ * Visible window of a map which is drawn onto a fixed-size canvas.
+ *
+ * <p>
+ * Positions on the map are measured in map pixels, where a tile is {@link models.Config#TILE_SIZE} pixels wide. The
+ * viewport shows the map from an origin in map pixels, scaled by a zoom factor. A map which is smaller than the canvas
+ * at the current zoom is centered instead of scrolled.
+ * </p>
+ *
+ * <p>
+ * Every change to the viewport increments {@link Viewport#getVersion()}, so that renderers know when the whole canvas
+ * must be redrawn.
+ * </p>
+ */
+public class Viewport {
+
+    /**
+     * Smallest zoom factor, unless a smaller one is needed to show the whole map.
+     */
+    public static final double MIN_SCALE = 0.25;
+    /**
+     * Largest zoom factor.
+     */
+    public static final double MAX_SCALE = 4;
+
+    private final int rows;
+    private final int cols;
+    private final double width;
+    private final double height;
+    private final double minScale;
+
+    private double scale = 1;
+    private double originX = 0;
+    private double originY = 0;
+    private int version = 0;
+
+    /**
+     * Creates a viewport showing the top-left corner of a map at its original size.
+     *
+     * @param rows   Number of rows of the map.
+     * @param cols   Number of columns of the map.
+     * @param width  Width of the canvas in pixels.
+     * @param height Height of the canvas in pixels.
+     */
+    public Viewport(int rows, int cols, double width, double height) {
+        this.rows = rows;
+        this.cols = cols;
+        this.width = width;
+        this.height = height;
+
+        final double fitScale = Math.min(width / ((double) cols * TILE_SIZE), height / ((double) rows * TILE_SIZE));
+        this.minScale = Math.min(MIN_SCALE, fitScale);
+        clampOrigin();
+    }
+
+    /**
+     * Creates a viewport whose canvas is as large as the map, but not larger than the given size.
+     *
+     * @param rows      Number of rows of the map.
+     * @param cols      Number of columns of the map.
+     * @param maxWidth  Largest width of the canvas in pixels.
+     * @param maxHeight Largest height of the canvas in pixels.
+     * @return A new viewport.
+     */
+    public static Viewport fitting(int rows, int cols, double maxWidth, double maxHeight) {
+        return new Viewport(rows, cols, Math.min((double) cols * TILE_SIZE, maxWidth),
+                Math.min((double) rows * TILE_SIZE, maxHeight));
+    }
+
+    /**
+     * Moves the viewport.
+     *
+     * @param dx Distance to move the map to the right, in canvas pixels.
+     * @param dy Distance to move the map downwards, in canvas pixels.
+     */
+    public void pan(double dx, double dy) {
+        originX -= dx / scale;
+        originY -= dy / scale;
+        clampOrigin();
+        ++version;
+    }
+
+    /**
+     * Zooms the viewport, keeping the point under ({@code x}, {@code y}) in place.
+     *
+     * @param factor Factor to multiply the zoom by.
+     * @param x      X-coordinate on the canvas to zoom at.
+     * @param y      Y-coordinate on the canvas to zoom at.
+     */
+    public void zoom(double factor, double x, double y) {
+        final double mapX = originX + x / scale;
+        final double mapY = originY + y / scale;
+
+        scale = Math.max(minScale, Math.min(MAX_SCALE, scale * factor));
+        originX = mapX - x / scale;
+        originY = mapY - y / scale;
+        clampOrigin();
+        ++version;
+    }
+
+    private void clampOrigin() {
+        originX = clamp(originX, (double) cols * TILE_SIZE, width / scale);
+        originY = clamp(originY, (double) rows * TILE_SIZE, height / scale);
+    }
+
+    /**
+     * @param origin      Origin along an axis, in map pixels.
+     * @param mapLength   Length of the map along the axis, in map pixels.
+     * @param visibleSize Length of the visible window along the axis, in map pixels.
+     * @return The closest origin which keeps the map in view.
+     */
+    private static double clamp(double origin, double mapLength, double visibleSize) {
+        if (mapLength <= visibleSize) {
+            return -(visibleSize - mapLength) / 2;
+        }
+        return Math.max(0, Math.min(mapLength - visibleSize, origin));
+    }
+
+    /**
+     * @return Width of the canvas in pixels.
+     */
+    public double getWidth() {
+        return width;
+    }
+
+    /**
+     * @return Height of the canvas in pixels.
+     */
+    public double getHeight() {
+        return height;
+    }
+
+    /**
+     * @return Current zoom factor.
+     */
+    public double getScale() {
+        return scale;
+    }
+
+    /**
+     * @return Width and height of a tile on the canvas, in pixels.
+     */
+    public double getTileSize() {
+        return TILE_SIZE * scale;
+    }
+
+    /**
+     * @return Number which changes whenever the viewport is moved or zoomed.
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * @return First row which is at least partially visible.
+     */
+    public int getFirstVisibleRow() {
+        return Math.max(0, (int) Math.floor(originY / TILE_SIZE));
+    }
+
+    /**
+     * @return Row after the last row which is at least partially visible.
+     */
+    public int getEndVisibleRow() {
+        return Math.min(rows, (int) Math.ceil((originY + height / scale) / TILE_SIZE));
+    }
+
+    /**
+     * @return First column which is at least partially visible.
+     */
+    public int getFirstVisibleCol() {
+        return Math.max(0, (int) Math.floor(originX / TILE_SIZE));
+    }
+
+    /**
+     * @return Column after the last column which is at least partially visible.
+     */
+    public int getEndVisibleCol() {
+        return Math.min(cols, (int) Math.ceil((originX + width / scale) / TILE_SIZE));
+    }
+
+    /**
+     * @param row Row of a tile.
+     * @param col Column of a tile.
+     * @return Whether the tile is at least partially visible.
+     */
+    public boolean isVisible(int row, int col) {
+        return row >= getFirstVisibleRow() && row < getEndVisibleRow()
+                && col >= getFirstVisibleCol() && col < getEndVisibleCol();
+    }
+
+    /**
+     * @param col Column of a tile, or the number of columns for the right edge of the map.
+     * @return X-coordinate of the left edge of the tile on the canvas, rounded down to a whole pixel.
+     */
+    public double tileX(int col) {
+        return Math.floor(((double) col * TILE_SIZE - originX) * scale);
+    }
+
+    /**
+     * @param row Row of a tile, or the number of rows for the bottom edge of the map.
+     * @return Y-coordinate of the top edge of the tile on the canvas, rounded down to a whole pixel.
+     */
+    public double tileY(int row) {
+        return Math.floor(((double) row * TILE_SIZE - originY) * scale);
+    }
+
+    /**
+     * @param y Y-coordinate on the canvas.
+     * @return Row of the tile at {@code y}, which may be outside the map.
+     */
+    public int rowAt(double y) {
+        return (int) Math.floor((originY + y / scale) / TILE_SIZE);
+    }
+
+    /**
+     * @param x X-coordinate on the canvas.
+     * @return Column of the tile at {@code x}, which may be outside the map.
+     */
+    public int colAt(double x) {
+        return (int) Math.floor((originX + x / scale) / TILE_SIZE);
+    }
+}
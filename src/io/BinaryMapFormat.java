@@ -0,0 +1,72 @@
+package io;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.file.Path;
+
+/**
+ * Layout of binary map files, which use the {@link BinaryMapFormat#EXTENSION} extension.
+ *
+ * <p>
+ * All multi-byte values are big-endian. A file consists of:
+ * </p>
+ * <ol>
+ * <li>A header of {@link BinaryMapFormat#HEADER_SIZE} bytes:
+ * <ul>
+ * <li>Offset 0: {@link BinaryMapFormat#MAGIC}.</li>
+ * <li>Offset 4: {@link BinaryMapFormat#VERSION}.</li>
+ * <li>Offset 5: Flags. {@link BinaryMapFormat#FLAG_RLE} is set if the grid is run-length encoded.</li>
+ * <li>Offset 6: Number of bits per cell, which is 1, 2, 4 or 8.</li>
+ * <li>Offset 7: Number of entries in the palette.</li>
+ * <li>Offset 8: Number of rows.</li>
+ * <li>Offset 12: Number of columns.</li>
+ * <li>Offset 16: Amount of delay.</li>
+ * <li>Offset 20: Number of pipes in the initial pipe queue, or {@code -1} if the queue is randomly generated.</li>
+ * <li>Offset 24: Length of the grid section in bytes.</li>
+ * <li>Offset 28: CRC-32 of everything after the header.</li>
+ * </ul>
+ * </li>
+ * <li>The palette, where each byte is a {@link models.map.PackedGrid} cell code.</li>
+ * <li>The initial pipe queue, where each byte is the ordinal of a {@link models.pipes.Pipe.Shape}.</li>
+ * <li>The grid section, which holds the palette index of each cell in row-major order. Without
+ * {@link BinaryMapFormat#FLAG_RLE}, indices are packed from the most significant bit of each byte, and a cell never
+ * spans two bytes. With {@link BinaryMapFormat#FLAG_RLE}, the grid is a sequence of runs, each being a palette index
+ * byte followed by the length of the run as an unsigned LEB128 varint.</li>
+ * </ol>
+ */
+public final class BinaryMapFormat {
+
+    /**
+     * File extension of binary maps.
+     */
+    public static final String EXTENSION = ".bmap";
+
+    static final int MAGIC = 'P' << 24 | 'M' << 16 | 'A' << 8 | 'P';
+    static final int VERSION = 1;
+    static final int FLAG_RLE = 1;
+    static final int HEADER_SIZE = 32;
+    static final int CHECKSUM_OFFSET = 28;
+
+    private BinaryMapFormat() {
+    }
+
+    /**
+     * @param path Path to a map file.
+     * @return Whether the file is a binary map, judging by its extension.
+     */
+    public static boolean isBinaryMap(@NotNull Path path) {
+        return path.getFileName().toString().endsWith(EXTENSION);
+    }
+
+    /**
+     * @param paletteSize Number of distinct cell codes.
+     * @return Smallest number of bits per cell which divides a byte and can hold every palette index.
+     */
+    static int bitsPerCell(int paletteSize) {
+        int bits = 1;
+        while (1 << bits < paletteSize) {
+            bits <<= 1;
+        }
+        return bits;
+    }
+}
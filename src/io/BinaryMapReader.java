@@ -0,0 +1,276 @@
+package io;
+
+import models.exceptions.InvalidMapException;
+import models.map.PackedGrid;
+import models.pipes.Pipe;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Reader of binary map files.
+ *
+ * <p>
+ * The file is memory-mapped, so the checksum and the grid are computed straight from the page cache without copying the
+ * file into the heap. Cells are decoded into a {@link PackedGrid} by table lookup; No {@link models.map.cells.Cell}
+ * objects are created.
+ * </p>
+ *
+ * @see BinaryMapFormat
+ */
+class BinaryMapReader {
+
+    private static final Pipe.Shape[] SHAPES = Pipe.Shape.values();
+
+    /**
+     * Number of bytes of a packed grid which are decoded at a time.
+     */
+    private static final int BLOCK_SIZE = 1 << 12;
+
+    private BinaryMapReader() {
+    }
+
+    /**
+     * Reads a binary map file.
+     *
+     * @param path Path of the file.
+     * @return The properties of the map.
+     * @throws IOException         if the file cannot be read.
+     * @throws InvalidMapException if the file is not a valid binary map.
+     */
+    @NotNull
+    static GameProperties read(@NotNull Path path) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new InvalidMapException("Binary map of " + size + " bytes is too large");
+            }
+
+            return decode(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    /**
+     * Reads the size of a binary map from its header, without reading the rest of the file.
+     *
+     * @param path Path of the file.
+     * @return Number of cells of the map.
+     * @throws IOException         if the file cannot be read.
+     * @throws InvalidMapException if the file is not a binary map.
+     */
+    static long readNumCells(@NotNull Path path) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final var header = ByteBuffer.allocate(BinaryMapFormat.HEADER_SIZE);
+            while (header.hasRemaining()) {
+                if (channel.read(header) == -1) {
+                    throw new InvalidMapException("Not a binary map");
+                }
+            }
+            if (header.getInt(0) != BinaryMapFormat.MAGIC) {
+                throw new InvalidMapException("Not a binary map");
+            }
+
+            final int rows = header.getInt(8);
+            final int cols = header.getInt(12);
+            if (rows <= 0 || cols <= 0) {
+                throw new InvalidMapException("Map size must be positive, but is " + rows + "x" + cols);
+            }
+            return (long) rows * cols;
+        }
+    }
+
+    /**
+     * @param buffer Contents of a binary map file, from its current position to its limit.
+     * @return The properties of the map.
+     * @throws InvalidMapException if the contents are not a valid binary map.
+     */
+    @NotNull
+    static GameProperties decode(@NotNull ByteBuffer buffer) {
+        if (buffer.remaining() < BinaryMapFormat.HEADER_SIZE || buffer.getInt() != BinaryMapFormat.MAGIC) {
+            throw new InvalidMapException("Not a binary map");
+        }
+
+        final int version = buffer.get();
+        if (version != BinaryMapFormat.VERSION) {
+            throw new InvalidMapException("Unsupported binary map version " + version);
+        }
+
+        final int flags = buffer.get();
+        final int bits = buffer.get();
+        final int paletteSize = buffer.get() & 0xFF;
+        final int rows = buffer.getInt();
+        final int cols = buffer.getInt();
+        final int delay = buffer.getInt();
+        final int numPipes = buffer.getInt();
+        final int gridLength = buffer.getInt();
+        final int checksum = buffer.getInt();
+
+        if (rows <= 0 || cols <= 0) {
+            throw new InvalidMapException("Map size must be positive, but is " + rows + "x" + cols);
+        }
+        if ((long) rows * cols > Integer.MAX_VALUE) {
+            throw new InvalidMapException("Map size " + rows + "x" + cols + " is too large");
+        }
+        if (bits != BinaryMapFormat.bitsPerCell(paletteSize)) {
+            throw new InvalidMapException("Invalid palette of " + paletteSize + " codes with " + bits + " bits");
+        }
+        if (numPipes < -1 || gridLength < 0
+                || (long) paletteSize + Math.max(numPipes, 0) + gridLength != buffer.remaining()) {
+            throw new InvalidMapException("Binary map is truncated or has trailing data");
+        }
+
+        final var crc = new CRC32();
+        crc.update(buffer.duplicate());
+        if ((int) crc.getValue() != checksum) {
+            throw new InvalidMapException("Checksum mismatch");
+        }
+
+        final var palette = new byte[paletteSize];
+        buffer.get(palette);
+        for (byte code : palette) {
+            if (code < 0 || code >= PackedGrid.NUM_CODES) {
+                throw new InvalidMapException("Invalid cell code " + code + " in palette");
+            }
+        }
+
+        final var pipes = readPipes(buffer, numPipes);
+
+        final var grid = new PackedGrid(rows, cols);
+        final var gridSection = buffer.slice().limit(gridLength);
+        if ((flags & BinaryMapFormat.FLAG_RLE) != 0) {
+            readRuns(gridSection, grid, palette);
+        } else {
+            readPacked(gridSection, grid, palette, bits);
+        }
+
+        return new GameProperties(grid, delay, pipes);
+    }
+
+    @Nullable
+    private static List<Pipe> readPipes(@NotNull ByteBuffer buffer, int numPipes) {
+        if (numPipes == -1) {
+            return null;
+        }
+
+        final var pipes = new ArrayList<Pipe>(numPipes);
+        for (int i = 0; i < numPipes; ++i) {
+            final int ordinal = buffer.get();
+            if (ordinal < 0 || ordinal >= SHAPES.length) {
+                throw new InvalidMapException("Invalid pipe shape " + ordinal);
+            }
+            pipes.add(new Pipe(SHAPES[ordinal]));
+        }
+        return pipes;
+    }
+
+    /**
+     * Reads cells packed as {@code bits}-wide palette indices.
+     *
+     * <p>
+     * Each byte is expanded into its cells through a table indexed by the byte, and the cells are copied into the grid a
+     * block at a time.
+     * </p>
+     */
+    private static void readPacked(@NotNull ByteBuffer gridSection, @NotNull PackedGrid grid, @NotNull byte[] palette,
+                                   int bits) {
+        final int numCells = grid.getRows() * grid.getCols();
+        final int cellsPerByte = 8 / bits;
+        if (gridSection.remaining() != (int) (((long) numCells + cellsPerByte - 1) / cellsPerByte)) {
+            throw new InvalidMapException("Grid section has " + gridSection.remaining() + " bytes, which does not match "
+                    + numCells + " cells");
+        }
+
+        final int mask = (1 << bits) - 1;
+        final var expansions = new byte[256 * cellsPerByte];
+        final var isValid = new boolean[256];
+        for (int b = 0; b < 256; ++b) {
+            isValid[b] = true;
+            for (int k = 0; k < cellsPerByte; ++k) {
+                final int paletteIndex = b >>> (8 - bits * (k + 1)) & mask;
+                if (paletteIndex < palette.length) {
+                    expansions[b * cellsPerByte + k] = palette[paletteIndex];
+                } else {
+                    isValid[b] = false;
+                }
+            }
+        }
+
+        final var in = new byte[BLOCK_SIZE];
+        final var out = new byte[BLOCK_SIZE * cellsPerByte];
+        int index = 0;
+        while (gridSection.hasRemaining()) {
+            final int length = Math.min(BLOCK_SIZE, gridSection.remaining());
+            gridSection.get(in, 0, length);
+
+            for (int i = 0; i < length; ++i) {
+                final int b = in[i] & 0xFF;
+                if (!isValid[b]) {
+                    throw new InvalidMapException("Palette index out of range near cell " + (index + i * cellsPerByte));
+                }
+                System.arraycopy(expansions, b * cellsPerByte, out, i * cellsPerByte, cellsPerByte);
+            }
+
+            final int count = Math.min(length * cellsPerByte, numCells - index);
+            grid.copyFrom(index, out, count);
+            index += count;
+        }
+    }
+
+    /**
+     * Reads cells encoded as runs of palette indices.
+     */
+    private static void readRuns(@NotNull ByteBuffer gridSection, @NotNull PackedGrid grid, @NotNull byte[] palette) {
+        final int numCells = grid.getRows() * grid.getCols();
+        final byte[] lookup = paletteLookup(palette, 256);
+
+        int index = 0;
+        while (gridSection.hasRemaining()) {
+            final byte code = lookup[gridSection.get() & 0xFF];
+            if (code < 0) {
+                throw new InvalidMapException("Palette index out of range at cell " + index);
+            }
+
+            long length = 0;
+            int b;
+            int shift = 0;
+            do {
+                if (!gridSection.hasRemaining() || shift > 28) {
+                    throw new InvalidMapException("Malformed run length at cell " + index);
+                }
+                b = gridSection.get();
+                length |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+
+            if (length == 0 || index + length > numCells) {
+                throw new InvalidMapException("Run of " + length + " cells at cell " + index + " is out of range");
+            }
+            grid.fill(index, index + (int) length, code);
+            index += length;
+        }
+
+        if (index != numCells) {
+            throw new InvalidMapException("Grid section has " + index + " cells, but expected " + numCells);
+        }
+    }
+
+    /**
+     * @return Table from palette index to cell code, where unused indices map to {@code -1}.
+     */
+    @NotNull
+    private static byte[] paletteLookup(@NotNull byte[] palette, int size) {
+        final var lookup = new byte[size];
+        Arrays.fill(lookup, (byte) -1);
+        System.arraycopy(palette, 0, lookup, 0, palette.length);
+        return lookup;
+    }
+}
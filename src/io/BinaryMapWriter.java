@@ -0,0 +1,149 @@
+package io;
+
+import models.map.PackedGrid;
+import models.pipes.Pipe;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Writer of binary map files.
+ *
+ * <p>
+ * The grid is run-length encoded if that makes it smaller than packing every cell.
+ * </p>
+ *
+ * @see BinaryMapFormat
+ */
+class BinaryMapWriter {
+
+    private BinaryMapWriter() {
+    }
+
+    /**
+     * Writes a map to a binary map file, replacing the file if it exists.
+     *
+     * @param prop Properties of the map.
+     * @param path Path to write to.
+     * @throws IOException if an I/O exception has occurred.
+     */
+    static void write(@NotNull GameProperties prop, @NotNull Path path) throws IOException {
+        final var buffer = encode(prop);
+        try (var channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * @param prop Properties of the map.
+     * @return Contents of the binary map file, ready to be read.
+     */
+    @NotNull
+    static ByteBuffer encode(@NotNull GameProperties prop) {
+        final var grid = prop.getGrid();
+        final int numCells = grid.getRows() * grid.getCols();
+
+        final var paletteIndices = new int[PackedGrid.NUM_CODES];
+        final var palette = new byte[PackedGrid.NUM_CODES];
+        int paletteSize = 0;
+        for (int i = 0; i < numCells; ++i) {
+            final byte code = grid.get(i);
+            if (paletteIndices[code] == 0) {
+                palette[paletteSize++] = code;
+                paletteIndices[code] = paletteSize;
+            }
+        }
+
+        final int bits = BinaryMapFormat.bitsPerCell(paletteSize);
+        final var packed = pack(grid, paletteIndices, bits);
+        final var runs = runLengthEncode(grid, paletteIndices);
+        final boolean useRle = runs.length < packed.length;
+        final var gridSection = useRle ? runs : packed;
+
+        final var pipes = prop.pipes;
+        final int numPipes = pipes != null ? pipes.size() : 0;
+
+        final var buffer = ByteBuffer.allocate(
+                BinaryMapFormat.HEADER_SIZE + paletteSize + numPipes + gridSection.length);
+        buffer.putInt(BinaryMapFormat.MAGIC);
+        buffer.put((byte) BinaryMapFormat.VERSION);
+        buffer.put((byte) (useRle ? BinaryMapFormat.FLAG_RLE : 0));
+        buffer.put((byte) bits);
+        buffer.put((byte) paletteSize);
+        buffer.putInt(grid.getRows());
+        buffer.putInt(grid.getCols());
+        buffer.putInt(prop.delay);
+        buffer.putInt(pipes != null ? numPipes : -1);
+        buffer.putInt(gridSection.length);
+        buffer.putInt(0);
+
+        buffer.put(palette, 0, paletteSize);
+        if (pipes != null) {
+            for (Pipe pipe : pipes) {
+                buffer.put((byte) pipe.getShape().ordinal());
+            }
+        }
+        buffer.put(gridSection);
+
+        final var crc = new CRC32();
+        crc.update(buffer.array(), BinaryMapFormat.HEADER_SIZE, buffer.position() - BinaryMapFormat.HEADER_SIZE);
+        buffer.putInt(BinaryMapFormat.CHECKSUM_OFFSET, (int) crc.getValue());
+
+        return buffer.flip();
+    }
+
+    /**
+     * Packs the palette index of every cell, from the most significant bit of each byte.
+     */
+    @NotNull
+    private static byte[] pack(@NotNull PackedGrid grid, @NotNull int[] paletteIndices, int bits) {
+        final int numCells = grid.getRows() * grid.getCols();
+        final int cellsPerByte = 8 / bits;
+        final var packed = new byte[(int) (((long) numCells + cellsPerByte - 1) / cellsPerByte)];
+
+        for (int i = 0; i < numCells; ++i) {
+            final int index = paletteIndices[grid.get(i)] - 1;
+            final int shift = 8 - bits * (i % cellsPerByte + 1);
+            packed[i / cellsPerByte] |= index << shift;
+        }
+        return packed;
+    }
+
+    /**
+     * Encodes the cells as runs of the same palette index.
+     */
+    @NotNull
+    private static byte[] runLengthEncode(@NotNull PackedGrid grid, @NotNull int[] paletteIndices) {
+        final int numCells = grid.getRows() * grid.getCols();
+        final var out = new ByteArrayOutputStream();
+
+        int start = 0;
+        while (start < numCells) {
+            final byte code = grid.get(start);
+            int end = start + 1;
+            while (end < numCells && grid.get(end) == code) {
+                ++end;
+            }
+
+            out.write(paletteIndices[code] - 1);
+            for (int length = end - start; ; length >>>= 7) {
+                if (length < 0x80) {
+                    out.write(length);
+                    break;
+                }
+                out.write(length & 0x7F | 0x80);
+            }
+            start = end;
+        }
+        return out.toByteArray();
+    }
+}
@@ -1,23 +1,20 @@
 package io;
 
-import models.FXGame;
+import models.GameEngine;
 import models.exceptions.InvalidMapException;
 import models.map.Map;
 import models.map.cells.Cell;
 import models.map.cells.TerminationCell;
-import models.pipes.Pipe;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import textgame.game.Game;
 import util.Coordinate;
 
-import java.io.*;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * A deserializer for converting a map file into a {@link Game}.
@@ -51,73 +48,66 @@ public class Deserializer {
     @Nullable
     public Game parseGame() {
         final var properties = parseGameFile();
-        return new Game(properties.rows, properties.cols, properties.delay, properties.cells, properties.pipes);
+        return new Game(properties.delay, properties.takeGrid(), properties.pipes);
     }
 
     /**
-     * Parses the text file and returns an instance of {@link FXGame}.
+     * Parses the text file and returns an instance of {@link GameEngine}.
      *
-     * @return An instance of {@link FXGame}.
+     * @return An instance of {@link GameEngine}.
      * @throws InvalidMapException if the map cannot be parsed.
      */
-    @Nullable
-    public FXGame parseFXGame() {
+    @NotNull
+    public GameEngine parseGameEngine() {
         final var properties = parseGameFile();
-        return new FXGame(properties.rows, properties.cols, properties.delay, properties.cells, properties.pipes);
+        return new GameEngine(properties.delay, properties.takeGrid(), properties.pipes);
     }
 
     /**
      * Parses a game file into a {@link GameProperties} object.
      *
+     * <p>
+     * Binary maps (see {@link BinaryMapFormat}) are loaded by {@link BinaryMapReader}. Other files are parsed in a single
+     * pass by {@link MapParser}.
+     * </p>
+     *
      * @return An instance of {@link GameProperties}.
      * @throws InvalidMapException if the map cannot be parsed.
      */
     @NotNull
     public GameProperties parseGameFile() {
-        try (var reader = new BufferedReader(new FileReader(path.toFile()))) {
-            String line;
-
-            var rows = 0;
-            if ((line = getFirstNonEmptyLine(reader)) != null) {
-                rows = Integer.parseInt(line);
-            } else {
-                throw new InvalidMapException("Unexpected EOF when parsing number of rows");
-            }
-
-            var cols = 0;
-            if ((line = getFirstNonEmptyLine(reader)) != null) {
-                cols = Integer.parseInt(line);
-            } else {
-                throw new InvalidMapException("Unexpected EOF when parsing number of columns");
-            }
-
-            var delay = 0;
-            if ((line = getFirstNonEmptyLine(reader)) != null) {
-                delay = Integer.parseInt(line);
-            } else {
-                throw new InvalidMapException("Unexpected EOF when parsing amount of delay");
+        if (BinaryMapFormat.isBinaryMap(path)) {
+            try {
+                return BinaryMapReader.read(path);
+            } catch (IOException ioe) {
+                throw new InvalidMapException(ioe);
             }
+        }
 
-            final var mapRep = new ArrayList<String>();
-            for (int r = 0; r < rows; ++r) {
-                line = getFirstNonEmptyLine(reader);
-                if (line == null) {
-                    throw new InvalidMapException("Unexpected EOF when parsing row " + r + " of map");
-                }
+        try (var reader = new FileReader(path.toFile())) {
+            return new MapParser(reader).parse();
+        } catch (IOException ioe) {
+            throw new InvalidMapException(ioe);
+        }
+    }
 
-                mapRep.add(line);
-            }
-            final var cells = parseString(rows, cols, String.join("\n", mapRep));
-
-            List<Pipe> defaultPipes = null;
-            String s = getFirstNonEmptyLine(reader);
-            if (s != null) {
-                defaultPipes = Arrays.stream(s.split(","))
-                        .map(Pipe::fromString)
-                        .collect(Collectors.toList());
+    /**
+     * Reads the size of the map from the header of the file, without parsing the cells.
+     *
+     * @return Number of cells of the map.
+     * @throws InvalidMapException if the header cannot be parsed.
+     */
+    public long parseNumCells() {
+        if (BinaryMapFormat.isBinaryMap(path)) {
+            try {
+                return BinaryMapReader.readNumCells(path);
+            } catch (IOException ioe) {
+                throw new InvalidMapException(ioe);
             }
+        }
 
-            return new GameProperties(rows, cols, cells, delay, defaultPipes);
+        try (var reader = new FileReader(path.toFile())) {
+            return new MapParser(reader).parseNumCells();
         } catch (IOException ioe) {
             throw new InvalidMapException(ioe);
         }
@@ -135,10 +125,12 @@ public class Deserializer {
     @NotNull
     public static Cell[][] parseString(final int rows, final int cols, @NotNull final String cellsRep) {
         var cells = new Cell[rows][cols];
+        var lines = cellsRep.lines().iterator();
         for (int r = 0; r < rows; ++r) {
+            var line = lines.next();
             for (int c = 0; c < cols; ++c) {
                 var coord = new Coordinate(r, c);
-                var ch = cellsRep.lines().skip(r).findFirst().orElseThrow().charAt(c);
+                var ch = line.charAt(c);
 
                 Cell cell;
                 if (r == 0 || r == rows - 1 || c == 0 || c == cols - 1) {
@@ -153,28 +145,4 @@ public class Deserializer {
 
         return cells;
     }
-
-    /**
-     * Returns the first non-empty and non-comment line from the reader.
-     *
-     * @param br {@link BufferedReader} to read from.
-     * @return First line that is a parseable line, or {@code null} there are no lines to read.
-     * @throws IOException if the reader fails to read a line.
-     */
-    @Nullable
-    private String getFirstNonEmptyLine(@NotNull final BufferedReader br) throws IOException {
-        do {
-
-            String s = br.readLine();
-
-            if (s == null) {
-                return null;
-            }
-            if (s.isBlank() || s.startsWith("#")) {
-                continue;
-            }
-
-            return s;
-        } while (true);
-    }
 }
@@ -0,0 +1,283 @@
+package io;
+
+import models.GameEngine;
+import models.GameEventListener;
+import models.pipes.Pipe;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Append-only binary journal of every command of a game, which {@link JournalReplayer} replays to rebuild the game.
+ *
+ * <p>
+ * All multi-byte values of the header are big-endian. A journal consists of:
+ * </p>
+ * <ol>
+ * <li>{@link GameJournal#MAGIC}, {@link GameJournal#VERSION} as a byte, the seed of the game as a long, and the flow
+ * duration of the flow timer as an int.</li>
+ * <li>The length of the initial map as an int, followed by the map, its delay and its initial pipes as a binary
+ * map file (see {@link BinaryMapFormat}).</li>
+ * <li>The commands, in the order they were applied to the game. Each command is an opcode byte, and only the ticks and
+ * placed pipes have operands:
+ * <ul>
+ * <li>{@link GameJournal#OP_TICK}, followed by the number of consecutive ticks as an unsigned LEB128 varint.</li>
+ * <li>{@link GameJournal#OP_PLACE} or'ed with the ordinal of the shape shifted by {@link GameJournal#OP_BITS}, followed
+ * by the row and the column as zigzag varints of their difference from the previously placed pipe.</li>
+ * <li>{@link GameJournal#OP_SKIP}, {@link GameJournal#OP_UNDO}, {@link GameJournal#OP_UPDATE_STATE} and
+ * {@link GameJournal#OP_FILL_ALL}, which have no operands.</li>
+ * </ul>
+ * </li>
+ * </ol>
+ *
+ * <p>
+ * Commands are encoded into a buffer on the thread which runs the game. Full buffers, and on every tick the buffer
+ * which is being filled, are handed to a shared writer thread which writes them to the file, so the game never waits
+ * for the disk. Written buffers are reused.
+ * </p>
+ */
+public class GameJournal implements GameEventListener, Closeable {
+
+    /**
+     * File extension of game journals.
+     */
+    public static final String EXTENSION = ".pjnl";
+
+    static final int MAGIC = 'P' << 24 | 'J' << 16 | 'N' << 8 | 'L';
+    static final int VERSION = 1;
+
+    /*** Number of low bits of a command byte which hold its opcode.*/
+    static final int OP_BITS = 3;
+    static final int OP_MASK = (1 << OP_BITS) - 1;
+    static final int OP_TICK = 0;
+    static final int OP_SKIP = 1;
+    static final int OP_UNDO = 2;
+    static final int OP_UPDATE_STATE = 3;
+    static final int OP_FILL_ALL = 4;
+    static final int OP_PLACE = 5;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    /*** Largest number of bytes of a command, which is a place with two 5-byte varints.*/
+    private static final int MAX_COMMAND_SIZE = 11;
+
+    @NotNull
+    private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(r -> {
+        final var thread = new Thread(r, "journal-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @NotNull
+    private final FileChannel channel;
+    /*** Buffers which have been written, and may be filled again.*/
+    @NotNull
+    private final Queue<ByteBuffer> freeBuffers = new ConcurrentLinkedQueue<>();
+    /*** Buffer which commands are being encoded into.*/
+    @NotNull
+    private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+    /*** Number of ticks which have elapsed since the last command, which are written together.*/
+    private long pendingTicks = 0;
+    private int lastRow = 0;
+    private int lastCol = 0;
+    private boolean closed = false;
+
+    /*** First exception thrown by the writer thread, which is rethrown by {@link GameJournal#close()}.*/
+    @Nullable
+    private volatile IOException failure;
+
+    private GameJournal(@NotNull FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Creates a journal of a game which has not started yet, and sets it as the event listener of the game. The
+     * header is written before this method returns.
+     *
+     * <p>
+     * This method must be called on the thread which runs the game.
+     * </p>
+     *
+     * @param engine Game to record.
+     * @param path   Path of the journal, which must not exist yet.
+     * @return The journal, which must be closed once the game is over.
+     * @throws IOException           if the journal cannot be created.
+     * @throws IllegalStateException if the player has already taken a step.
+     */
+    @NotNull
+    public static GameJournal start(@NotNull GameEngine engine, @NotNull Path path) throws IOException {
+        if (engine.getNumOfSteps() != 0) {
+            throw new IllegalStateException("Game has already started");
+        }
+
+        final var map = BinaryMapWriter.encode(new GameProperties(engine.getGrid(), engine.getDelay(),
+                engine.getInitialPipes()));
+        final var header = ByteBuffer.allocate(21);
+        header.putInt(MAGIC)
+                .put((byte) VERSION)
+                .putLong(engine.getSeed())
+                .putInt(engine.getFlowDuration())
+                .putInt(map.remaining())
+                .flip();
+
+        final var channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW);
+        try {
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            while (map.hasRemaining()) {
+                channel.write(map);
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+
+        final var journal = new GameJournal(channel);
+        engine.setEventListener(journal);
+        return journal;
+    }
+
+    @Override
+    public void onPlace(int row, int col, @NotNull Pipe.Shape shape) {
+        reserve();
+        buffer.put((byte) (OP_PLACE | shape.ordinal() << OP_BITS));
+        writeVarint(zigzag(row - lastRow));
+        writeVarint(zigzag(col - lastCol));
+        lastRow = row;
+        lastCol = col;
+    }
+
+    @Override
+    public void onSkip() {
+        reserve();
+        buffer.put((byte) OP_SKIP);
+    }
+
+    @Override
+    public void onUndo() {
+        reserve();
+        buffer.put((byte) OP_UNDO);
+    }
+
+    @Override
+    public void onTick() {
+        ++pendingTicks;
+        // commands are written at most a tick after they are applied, while runs of ticks stay in one command
+        if (buffer.position() != 0) {
+            handOff();
+        }
+    }
+
+    @Override
+    public void onUpdateState() {
+        reserve();
+        buffer.put((byte) OP_UPDATE_STATE);
+    }
+
+    @Override
+    public void onFillAll() {
+        reserve();
+        buffer.put((byte) OP_FILL_ALL);
+    }
+
+    /**
+     * Writes the remaining commands, and closes the file once every buffer has been written. The journal must be
+     * removed from the game before it is closed.
+     *
+     * @throws IOException if any command could not be written.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        if (pendingTicks != 0) {
+            reserve();
+        }
+        if (buffer.position() != 0) {
+            handOff();
+        }
+
+        try {
+            WRITER.submit(() -> {
+                channel.close();
+                return null;
+            }).get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while closing the journal", e);
+        }
+
+        final var failure = this.failure;
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Makes room for a command in the buffer, after writing the ticks which elapsed before it.
+     */
+    private void reserve() {
+        if (buffer.remaining() < 2 * MAX_COMMAND_SIZE) {
+            handOff();
+        }
+        if (pendingTicks != 0) {
+            buffer.put((byte) OP_TICK);
+            writeVarint(pendingTicks);
+            pendingTicks = 0;
+        }
+    }
+
+    /**
+     * Passes the current buffer to the writer thread, and continues with a free buffer.
+     */
+    private void handOff() {
+        final var full = buffer;
+        final var free = freeBuffers.poll();
+        buffer = free != null ? free : ByteBuffer.allocate(BUFFER_SIZE);
+
+        full.flip();
+        WRITER.execute(() -> {
+            try {
+                if (failure == null) {
+                    while (full.hasRemaining()) {
+                        channel.write(full);
+                    }
+                }
+            } catch (IOException e) {
+                failure = e;
+            } finally {
+                full.clear();
+                freeBuffers.add(full);
+            }
+        });
+    }
+
+    private void writeVarint(long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static long zigzag(int value) {
+        return (value << 1 ^ value >> 31) & 0xFFFFFFFFL;
+    }
+}
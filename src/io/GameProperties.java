@@ -1,21 +1,30 @@
 package io;
 
+import models.map.PackedGrid;
 import models.map.cells.Cell;
 import models.pipes.Pipe;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import util.Coordinate;
 
 import java.util.List;
 
 /**
  * Data class for the core properties of a game.
+ *
+ * <p>
+ * The map is held either as {@link Cell} objects or as a {@link PackedGrid}. When the properties are parsed from a
+ * file, only the grid is created, and the cells are created the first time {@link GameProperties#getCells()} is called.
+ * </p>
  */
 public class GameProperties {
     public int rows;
     public int cols;
     public int delay;
-    @NotNull
-    public Cell[][] cells;
+    @Nullable
+    private Cell[][] cells;
+    @Nullable
+    private PackedGrid grid;
     @Nullable
     public List<Pipe> pipes;
 
@@ -42,4 +51,82 @@ public class GameProperties {
 
         this.pipes = pipes;
     }
+
+    public GameProperties(@NotNull PackedGrid grid, int delay, @Nullable List<Pipe> pipes) {
+        this.rows = grid.getRows();
+        this.cols = grid.getCols();
+        this.grid = grid;
+        this.delay = delay;
+        this.pipes = pipes;
+    }
+
+    /**
+     * Retrieves the cells of the map, creating them from the grid on first call.
+     *
+     * <p>
+     * The returned array is the map itself, so modifications to it are kept.
+     * </p>
+     *
+     * @return Cells of the map.
+     */
+    @NotNull
+    public Cell[][] getCells() {
+        if (cells == null) {
+            final var grid = this.grid;
+            assert grid != null;
+
+            final var newCells = new Cell[rows][cols];
+            for (int r = 0; r < rows; ++r) {
+                for (int c = 0; c < cols; ++c) {
+                    newCells[r][c] = PackedGrid.decode(grid.get(r, c), new Coordinate(r, c));
+                }
+            }
+
+            cells = newCells;
+            this.grid = null;
+        }
+        return cells;
+    }
+
+    /**
+     * @param cells New cells of the map.
+     */
+    public void setCells(@NotNull Cell[][] cells) {
+        this.cells = cells;
+        this.grid = null;
+    }
+
+    /**
+     * Retrieves the map packed into a {@link PackedGrid}, without copying it.
+     *
+     * <p>
+     * If the properties hold a grid, it is shared with these properties and must not be modified. Use
+     * {@link GameProperties#takeGrid()} to hand the grid over to a game instead.
+     * </p>
+     *
+     * @return The map packed into a {@link PackedGrid}.
+     */
+    @NotNull
+    public PackedGrid getGrid() {
+        if (grid != null) {
+            return grid;
+        }
+
+        assert cells != null;
+        return PackedGrid.fromCells(rows, cols, cells);
+    }
+
+    /**
+     * Hands the map over to the caller, e.g. a game which takes ownership of it. The grid is not copied, so these
+     * properties no longer hold a map afterwards.
+     *
+     * @return The map packed into a {@link PackedGrid}.
+     */
+    @NotNull
+    public PackedGrid takeGrid() {
+        final var grid = getGrid();
+        this.grid = null;
+        this.cells = null;
+        return grid;
+    }
 }
@@ -0,0 +1,225 @@
+package io;
+
+import models.FlowTimer;
+import models.GameEngine;
+import models.exceptions.InvalidMapException;
+import models.pipes.Pipe;
+import models.timing.VirtualScheduler;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Rebuilds a game from a {@link GameJournal}.
+ *
+ * <p>
+ * The game is created headless from the seed and the map in the journal, and its flow timer runs on a
+ * {@link VirtualScheduler}, so recorded ticks are replayed instantly rather than in real time. Commands are applied in
+ * the order they were recorded, which makes the replayed game end in the same state as the recorded one.
+ * </p>
+ *
+ * <p>
+ * Usage: {@code java io.JournalReplayer <journal>}, which prints a summary of the replayed game.
+ * </p>
+ */
+public class JournalReplayer {
+
+    private static final Pipe.Shape[] SHAPES = Pipe.Shape.values();
+
+    /**
+     * Counts of the commands of a replayed journal.
+     */
+    public static final class Stats {
+
+        private long numCommands = 0;
+        private long numTicks = 0;
+
+        /**
+         * @return Number of commands in the journal, counting each run of ticks as one.
+         */
+        public long getNumCommands() {
+            return numCommands;
+        }
+
+        /**
+         * @return Number of ticks which elapsed during the game.
+         */
+        public long getNumTicks() {
+            return numTicks;
+        }
+    }
+
+    private JournalReplayer() {
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 1) {
+            System.err.println("Usage: java io.JournalReplayer <journal>");
+            System.exit(1);
+        }
+
+        try {
+            final var stats = new Stats();
+            final long start = System.nanoTime();
+            final var engine = replay(Paths.get(args[0]), stats);
+            final long elapsed = System.nanoTime() - start;
+
+            System.out.println(String.format("%-18s %d", "seed", engine.getSeed()));
+            System.out.println(String.format("%-18s %d", "commands", stats.getNumCommands()));
+            System.out.println(String.format("%-18s %d", "ticks", stats.getNumTicks()));
+            System.out.println(String.format("%-18s %d", "steps", engine.getNumOfSteps()));
+            System.out.println(String.format("%-18s %d", "undos", engine.getNumOfUndo()));
+            System.out.println(String.format("%-18s %s", "result",
+                    engine.hasWon() ? "won" : engine.hasLost() ? "lost" : "unfinished"));
+            System.out.println(String.format("%-18s %.1f", "replay ms", elapsed / 1e6));
+        } catch (IOException | IllegalStateException e) {
+            System.err.println("Cannot replay " + args[0] + ": " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Replays a journal.
+     *
+     * @param path Path of the journal.
+     * @return The game, in the state it was in when the journal was closed.
+     * @throws IOException           if the journal cannot be read or is malformed.
+     * @throws IllegalStateException if the journal does not match the game rebuilt from it.
+     */
+    @NotNull
+    public static GameEngine replay(@NotNull Path path) throws IOException {
+        return replay(path, new Stats());
+    }
+
+    /**
+     * Replays a journal.
+     *
+     * @param path  Path of the journal.
+     * @param stats Statistics to add the commands of the journal to.
+     * @return The game, in the state it was in when the journal was closed.
+     * @throws IOException           if the journal cannot be read or is malformed.
+     * @throws IllegalStateException if the journal does not match the game rebuilt from it.
+     */
+    @NotNull
+    public static GameEngine replay(@NotNull Path path, @NotNull Stats stats) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Journal of " + size + " bytes is too large");
+            }
+
+            return replay(channel.map(FileChannel.MapMode.READ_ONLY, 0, size), stats);
+        } catch (BufferUnderflowException | InvalidMapException e) {
+            throw new IOException("Malformed journal", e);
+        }
+    }
+
+    /**
+     * Rebuilds the game from the header of a journal, then applies each command.
+     */
+    @NotNull
+    private static GameEngine replay(@NotNull ByteBuffer buffer, @NotNull Stats stats) throws IOException {
+        if (buffer.remaining() < 4 || buffer.getInt() != GameJournal.MAGIC) {
+            throw new IOException("Not a game journal");
+        }
+        final int version = buffer.get();
+        if (version != GameJournal.VERSION) {
+            throw new IOException("Unsupported journal version " + version);
+        }
+
+        final long seed = buffer.getLong();
+        final int flowDuration = buffer.getInt();
+        final int mapLength = buffer.getInt();
+        if (mapLength < 0 || mapLength > buffer.remaining()) {
+            throw new IOException("Map of " + mapLength + " bytes is out of range");
+        }
+        final var prop = BinaryMapReader.decode(buffer.slice().limit(mapLength));
+        buffer.position(buffer.position() + mapLength);
+
+        // the flow duration of a timer is taken from the default when it is created
+        final var scheduler = new VirtualScheduler();
+        final int defaultFlowDuration = FlowTimer.getDefaultFlowDuration();
+        final GameEngine engine;
+        FlowTimer.setDefaultFlowDuration(flowDuration);
+        try {
+            engine = new GameEngine(prop.delay, prop.takeGrid(), prop.pipes, seed, scheduler);
+        } finally {
+            FlowTimer.setDefaultFlowDuration(defaultFlowDuration);
+        }
+        engine.startCountdown();
+
+        int lastRow = 0;
+        int lastCol = 0;
+        while (buffer.hasRemaining()) {
+            final int command = buffer.get() & 0xFF;
+            ++stats.numCommands;
+            switch (command & GameJournal.OP_MASK) {
+                case GameJournal.OP_TICK:
+                    final long ticks = readVarint(buffer);
+                    scheduler.advance(ticks);
+                    stats.numTicks += ticks;
+                    break;
+                case GameJournal.OP_SKIP:
+                    engine.skipPipe();
+                    break;
+                case GameJournal.OP_UNDO:
+                    engine.undoStep();
+                    break;
+                case GameJournal.OP_UPDATE_STATE:
+                    engine.updateState();
+                    break;
+                case GameJournal.OP_FILL_ALL:
+                    engine.fillAllPipes();
+                    break;
+                case GameJournal.OP_PLACE:
+                    final int ordinal = command >>> GameJournal.OP_BITS;
+                    if (ordinal >= SHAPES.length) {
+                        throw new IOException("Invalid pipe shape " + ordinal);
+                    }
+                    lastRow += unzigzag(readVarint(buffer));
+                    lastCol += unzigzag(readVarint(buffer));
+
+                    final var shape = engine.getQueuedPipes().get(0).getShape();
+                    if (shape != SHAPES[ordinal]) {
+                        throw new IllegalStateException("Journal diverges at (" + lastRow + ", " + lastCol
+                                + "): placed " + SHAPES[ordinal] + ", but the next pipe is " + shape);
+                    }
+                    if (!engine.placePipe(lastRow, lastCol)) {
+                        throw new IllegalStateException("Journal diverges at (" + lastRow + ", " + lastCol
+                                + "): pipe cannot be placed");
+                    }
+                    break;
+                default:
+                    throw new IOException("Invalid command " + command);
+            }
+        }
+
+        engine.stopCountdown();
+        return engine;
+    }
+
+    private static long readVarint(@NotNull ByteBuffer buffer) throws IOException {
+        long value = 0;
+        int b;
+        int shift = 0;
+        do {
+            if (shift > 63) {
+                throw new IOException("Malformed varint");
+            }
+            b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static int unzigzag(long value) {
+        return (int) (value >>> 1) ^ -(int) (value & 1);
+    }
+}
@@ -0,0 +1,52 @@
+package io;
+
+import models.exceptions.InvalidMapException;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Converts maps between the text format and the binary format.
+ *
+ * <p>
+ * The format of each file is given by its extension: Files ending with {@link BinaryMapFormat#EXTENSION} are binary
+ * maps, and all other files are text maps.
+ * </p>
+ *
+ * <p>
+ * Usage: {@code java io.LevelConverter <input> <output>}.
+ * </p>
+ */
+public class LevelConverter {
+
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Usage: java io.LevelConverter <input> <output>");
+            System.exit(1);
+        }
+
+        try {
+            convert(Paths.get(args[0]), Paths.get(args[1]));
+        } catch (IOException | InvalidMapException e) {
+            System.err.println("Cannot convert " + args[0] + ": " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Converts a map file.
+     *
+     * @param input  Path of the map to convert.
+     * @param output Path to write the converted map to.
+     * @throws FileNotFoundException if {@code input} does not exist.
+     * @throws IOException           if an I/O exception has occurred.
+     * @throws InvalidMapException   if the input map cannot be parsed.
+     */
+    public static void convert(@NotNull Path input, @NotNull Path output) throws IOException {
+        final var prop = new Deserializer(input).parseGameFile();
+        new Serializer(output).serializeGameProp(prop);
+    }
+}
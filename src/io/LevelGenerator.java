@@ -0,0 +1,109 @@
+package io;
+
+import models.map.MapGenerator;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Generates level files with {@link MapGenerator}.
+ *
+ * <p>
+ * The format of each file is given by its extension, as in {@link LevelConverter}. Large maps should be written as
+ * binary maps, which are written directly from the generated grid.
+ * </p>
+ *
+ * <p>
+ * Usage: {@code java io.LevelGenerator <rows> <cols> <output> [options]}, where {@code rows} and {@code cols} include
+ * the walls around the map. The options are {@code --seed <seed>}, {@code --walls <density>},
+ * {@code --min-length <cells>}, {@code --min-turns <turns>} and {@code --delay <delay>}.
+ * </p>
+ */
+public class LevelGenerator {
+
+    /**
+     * Delay before the water flows in generated levels, in seconds.
+     */
+    public static final int DEFAULT_DELAY = 10;
+
+    private static final String USAGE = "Usage: java io.LevelGenerator <rows> <cols> <output> [--seed <seed>] "
+            + "[--walls <density>] [--min-length <cells>] [--min-turns <turns>] [--delay <delay>]";
+
+    public static void main(String[] args) {
+        if (args.length < 3 || args.length % 2 == 0) {
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+
+        try {
+            final int rows = Integer.parseInt(args[0]);
+            final int cols = Integer.parseInt(args[1]);
+            final var output = Paths.get(args[2]);
+
+            long seed = System.nanoTime();
+            double wallDensity = MapGenerator.DEFAULT_WALL_DENSITY;
+            int minPathLength = 0;
+            int minTurns = 0;
+            int delay = DEFAULT_DELAY;
+            for (int i = 3; i < args.length; i += 2) {
+                switch (args[i]) {
+                    case "--seed":
+                        seed = Long.parseLong(args[i + 1]);
+                        break;
+                    case "--walls":
+                        wallDensity = Double.parseDouble(args[i + 1]);
+                        break;
+                    case "--min-length":
+                        minPathLength = Integer.parseInt(args[i + 1]);
+                        break;
+                    case "--min-turns":
+                        minTurns = Integer.parseInt(args[i + 1]);
+                        break;
+                    case "--delay":
+                        delay = Integer.parseInt(args[i + 1]);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+
+            final var generator = new MapGenerator(seed);
+            generator.setWallDensity(wallDensity);
+            generator.setMinPathLength(minPathLength);
+            generator.setMinTurns(minTurns);
+
+            final long start = System.nanoTime();
+            generate(generator, rows, cols, delay, output);
+            System.out.println(String.format("Generated %dx%d map with seed %d in %.1f ms", rows, cols, seed,
+                    (System.nanoTime() - start) / 1e6));
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(1);
+        } catch (IOException e) {
+            System.err.println("Cannot write " + args[2] + ": " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Generates a level and writes it to a file.
+     *
+     * @param generator Generator with the settings to use.
+     * @param rows      Number of rows, including the walls around the map.
+     * @param cols      Number of columns, including the walls around the map.
+     * @param delay     Delay before the water flows, in seconds.
+     * @param output    Path to write the level to.
+     * @return Properties of the generated level.
+     * @throws IOException if an I/O exception has occurred.
+     */
+    @NotNull
+    public static GameProperties generate(@NotNull MapGenerator generator, int rows, int cols, int delay,
+                                          @NotNull Path output) throws IOException {
+        final var prop = new GameProperties(generator.generate(rows, cols), delay, null);
+        new Serializer(output).serializeGameProp(prop);
+        return prop;
+    }
+}
@@ -0,0 +1,290 @@
+package io;
+
+import models.exceptions.InvalidMapException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Index of the levels in a map directory, which is kept in a sidecar file inside the directory.
+ *
+ * <p>
+ * The index stores a {@link LevelMetadata} for each level file, along with the size and modification time of the file
+ * when it was indexed. {@link LevelIndex#refresh()} only lists the directory and compares these, and only parses the
+ * files which are new or have changed, in parallel. {@link LevelIndex#update(Collection)} does the same for a few
+ * known files, for when the directory is being watched.
+ * </p>
+ *
+ * <p>
+ * The sidecar file is a binary file starting with {@link LevelIndex#MAGIC} and {@link LevelIndex#VERSION}, followed by
+ * the number of entries and the fields of each entry in the order declared in {@link LevelMetadata}. If it is missing
+ * or cannot be read, every level is indexed again.
+ * </p>
+ */
+public class LevelIndex {
+
+    /**
+     * Name of the sidecar file.
+     */
+    public static final String FILE_NAME = ".levels.idx";
+
+    private static final int MAGIC = 'L' << 24 | 'I' << 16 | 'D' << 8 | 'X';
+    private static final int VERSION = 1;
+
+    @NotNull
+    private final Path directory;
+
+    /**
+     * Metadata of each level, keyed by file name. The map is replaced by {@link LevelIndex#refresh()} and changed in
+     * place by {@link LevelIndex#update(Collection)}, so that it can be read from any thread while the index is
+     * brought up to date in the background.
+     */
+    @NotNull
+    private volatile java.util.Map<String, LevelMetadata> entries = new ConcurrentHashMap<>();
+
+    /**
+     * @param directory Map directory to index.
+     */
+    public LevelIndex(@NotNull Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @param path Path of a file.
+     * @return Whether the file is a level, judging by its extension.
+     */
+    public static boolean isLevelFile(@NotNull Path path) {
+        final var name = path.getFileName().toString();
+        return name.endsWith(".map") || BinaryMapFormat.isBinaryMap(path);
+    }
+
+    /**
+     * Brings the index up to date with the map directory, and saves it if anything has changed.
+     *
+     * @return Number of levels which were parsed.
+     * @throws IOException if the directory cannot be listed.
+     */
+    public synchronized int refresh() throws IOException {
+        if (entries.isEmpty()) {
+            entries = load();
+        }
+
+        final var current = new ConcurrentHashMap<String, LevelMetadata>();
+        final var stale = new ArrayList<Path>();
+        try (var files = Files.list(directory)) {
+            for (var path : (Iterable<Path>) files::iterator) {
+                if (!isLevelFile(path)) {
+                    continue;
+                }
+
+                final var attrs = Files.readAttributes(path, BasicFileAttributes.class);
+                if (!attrs.isRegularFile()) {
+                    continue;
+                }
+
+                final var name = path.getFileName().toString();
+                final var entry = entries.get(name);
+                if (entry != null && entry.fileSize == attrs.size()
+                        && entry.lastModified == attrs.lastModifiedTime().toMillis()) {
+                    current.put(name, entry);
+                } else {
+                    stale.add(path);
+                }
+            }
+        }
+
+        final var indexed = stale.parallelStream()
+                .map(LevelIndex::index)
+                .collect(Collectors.toList());
+        for (var entry : indexed) {
+            current.put(entry.name, entry);
+        }
+
+        final boolean changed = !indexed.isEmpty() || current.size() != entries.size();
+        entries = current;
+        if (changed) {
+            save();
+        }
+        return indexed.size();
+    }
+
+    /**
+     * Brings some entries of the index up to date, without listing the map directory, and saves the index if any of
+     * them has changed.
+     *
+     * <p>
+     * Each name is looked up in the directory. Levels which no longer exist are removed, and levels which are new or
+     * have changed are parsed again, in parallel. Names which are not level files are ignored.
+     * </p>
+     *
+     * @param names File names of levels which may have been created, modified or deleted.
+     * @return Number of entries which were added, changed or removed.
+     * @throws IOException if the index cannot be saved.
+     */
+    public synchronized int update(@NotNull Collection<String> names) throws IOException {
+        final var stale = new ArrayList<Path>();
+        int removed = 0;
+        for (var name : names) {
+            final var path = directory.resolve(name);
+            if (!isLevelFile(path)) {
+                continue;
+            }
+
+            final BasicFileAttributes attrs;
+            try {
+                attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            } catch (NoSuchFileException e) {
+                if (entries.remove(name) != null) {
+                    ++removed;
+                }
+                continue;
+            }
+
+            final var entry = entries.get(name);
+            if (!attrs.isRegularFile()) {
+                if (entries.remove(name) != null) {
+                    ++removed;
+                }
+            } else if (entry == null || entry.fileSize != attrs.size()
+                    || entry.lastModified != attrs.lastModifiedTime().toMillis()) {
+                stale.add(path);
+            }
+        }
+
+        final var indexed = stale.parallelStream()
+                .map(LevelIndex::index)
+                .collect(Collectors.toList());
+        for (var entry : indexed) {
+            entries.put(entry.name, entry);
+        }
+
+        if (removed != 0 || !indexed.isEmpty()) {
+            save();
+        }
+        return removed + indexed.size();
+    }
+
+    /**
+     * @param name File name of a level.
+     * @return Metadata of the level, or {@code null} if it is not in the index.
+     */
+    @Nullable
+    public LevelMetadata get(@NotNull String name) {
+        return entries.get(name);
+    }
+
+    /**
+     * @return Map directory of this index.
+     */
+    @NotNull
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return Metadata of every indexed level, sorted by file name.
+     */
+    @NotNull
+    public List<LevelMetadata> getLevels() {
+        final var levels = new ArrayList<>(entries.values());
+        levels.sort((a, b) -> a.name.compareTo(b.name));
+        return Collections.unmodifiableList(levels);
+    }
+
+    /**
+     * Parses a level file into its metadata.
+     */
+    @NotNull
+    private static LevelMetadata index(@NotNull Path path) {
+        final var name = path.getFileName().toString();
+
+        final BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return LevelMetadata.invalid(name, -1, -1);
+        }
+
+        final long size = attrs.size();
+        final long lastModified = attrs.lastModifiedTime().toMillis();
+        try {
+            return LevelMetadata.of(name, size, lastModified, new Deserializer(path).parseGameFile());
+        } catch (IOException | InvalidMapException | IllegalArgumentException e) {
+            return LevelMetadata.invalid(name, size, lastModified);
+        }
+    }
+
+    /**
+     * @return Entries of the sidecar file, or no entries if it cannot be read.
+     */
+    @NotNull
+    private java.util.Map<String, LevelMetadata> load() {
+        final var result = new ConcurrentHashMap<String, LevelMetadata>();
+        final var file = directory.resolve(FILE_NAME);
+        if (!Files.isRegularFile(file)) {
+            return result;
+        }
+
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return result;
+            }
+
+            final int count = in.readInt();
+            for (int i = 0; i < count; ++i) {
+                final var entry = new LevelMetadata(in.readUTF(), in.readLong(), in.readLong(), in.readBoolean(),
+                        in.readInt(), in.readInt(), in.readInt(), in.readInt(), in.readInt());
+                result.put(entry.name, entry);
+            }
+        } catch (IOException e) {
+            result.clear();
+        }
+        return result;
+    }
+
+    /**
+     * Writes the sidecar file. The file is replaced atomically, so a concurrent reader never sees a partial index.
+     */
+    private void save() throws IOException {
+        final var file = directory.resolve(FILE_NAME);
+        final var temp = Files.createTempFile(directory, FILE_NAME, ".tmp");
+
+        try {
+            try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(entries.size());
+                for (var entry : getLevels()) {
+                    out.writeUTF(entry.name);
+                    out.writeLong(entry.fileSize);
+                    out.writeLong(entry.lastModified);
+                    out.writeBoolean(entry.isValid);
+                    out.writeInt(entry.rows);
+                    out.writeInt(entry.cols);
+                    out.writeInt(entry.delay);
+                    out.writeInt(entry.numPipes);
+                    out.writeInt(entry.minPathLength);
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package io;
+
+import models.map.PackedGrid;
+import models.map.PathFinder;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Data class for the properties of a level file which are shown before the level is played.
+ *
+ * <p>
+ * Whether a level is solvable and its shortest path are found by treating every empty cell as if it could hold a cross
+ * pipe, so a level may still be impossible with its actual pipe queue.
+ * </p>
+ */
+public class LevelMetadata {
+
+    /**
+     * File name of the level, relative to the map directory.
+     */
+    @NotNull
+    public final String name;
+    /**
+     * Size of the file in bytes.
+     */
+    public final long fileSize;
+    /**
+     * Modification time of the file in milliseconds since the epoch.
+     */
+    public final long lastModified;
+    /**
+     * Whether the file could be parsed. All properties below are zero or {@code -1} if not.
+     */
+    public final boolean isValid;
+    public final int rows;
+    public final int cols;
+    public final int delay;
+    /**
+     * Number of pipes in the initial pipe queue, or {@code -1} if the queue is randomly generated.
+     */
+    public final int numPipes;
+    /**
+     * Number of pipes on the shortest path from the source to the sink, or {@code -1} if the level is not solvable.
+     */
+    public final int minPathLength;
+
+    LevelMetadata(@NotNull String name, long fileSize, long lastModified, boolean isValid, int rows, int cols,
+                  int delay, int numPipes, int minPathLength) {
+        this.name = name;
+        this.fileSize = fileSize;
+        this.lastModified = lastModified;
+        this.isValid = isValid;
+        this.rows = rows;
+        this.cols = cols;
+        this.delay = delay;
+        this.numPipes = numPipes;
+        this.minPathLength = minPathLength;
+    }
+
+    /**
+     * Creates the metadata of a level from its parsed properties.
+     *
+     * @param name         File name of the level.
+     * @param fileSize     Size of the file in bytes.
+     * @param lastModified Modification time of the file.
+     * @param prop         Properties of the level.
+     * @return Metadata of the level.
+     */
+    @NotNull
+    static LevelMetadata of(@NotNull String name, long fileSize, long lastModified, @NotNull GameProperties prop) {
+        final var grid = prop.getGrid();
+
+        int sourceIndex = -1;
+        for (int i = 0; i < prop.rows * prop.cols; ++i) {
+            if (PackedGrid.isSource(grid.get(i))) {
+                sourceIndex = i;
+                break;
+            }
+        }
+
+        final int minPathLength = sourceIndex == -1 ? -1
+                : new PathFinder(prop.rows, prop.cols).shortestPathLength(grid, sourceIndex, PathFinder.Mode.OPEN);
+        final int numPipes = prop.pipes != null ? prop.pipes.size() : -1;
+
+        return new LevelMetadata(name, fileSize, lastModified, true, prop.rows, prop.cols, prop.delay, numPipes,
+                minPathLength);
+    }
+
+    /**
+     * Creates the metadata of a level which cannot be parsed.
+     *
+     * @param name         File name of the level.
+     * @param fileSize     Size of the file in bytes.
+     * @param lastModified Modification time of the file.
+     * @return Metadata of the level.
+     */
+    @NotNull
+    static LevelMetadata invalid(@NotNull String name, long fileSize, long lastModified) {
+        return new LevelMetadata(name, fileSize, lastModified, false, 0, 0, 0, -1, -1);
+    }
+
+    /**
+     * @return Whether the sink can be reached from the source.
+     */
+    public boolean isSolvable() {
+        return minPathLength != -1;
+    }
+}
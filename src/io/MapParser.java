@@ -0,0 +1,339 @@
+package io;
+
+import models.exceptions.InvalidMapException;
+import models.map.PackedGrid;
+import models.map.cells.TerminationCell;
+import models.pipes.Pipe;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import util.Direction;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Single-pass parser of map files.
+ *
+ * <p>
+ * Characters are read from the underlying {@link Reader} in blocks, and the cells of the map are written straight into
+ * a {@link PackedGrid} without creating a {@link String} for each row. Blank lines and lines starting with {@code '#'}
+ * are skipped, as before.
+ * </p>
+ *
+ * <p>
+ * Malformed input is reported as soon as it is read, with the line and column in the file.
+ * </p>
+ */
+class MapParser {
+
+    private static final int BUFFER_SIZE = 1 << 13;
+
+    @NotNull
+    private final Reader reader;
+    @NotNull
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int pos = 0;
+    private int limit = 0;
+
+    /**
+     * Line of the next character, 1-based.
+     */
+    private int line = 1;
+    /**
+     * Column of the next character, 1-based.
+     */
+    private int column = 1;
+
+    /**
+     * @param reader Reader to parse from. The reader is not closed by the parser.
+     */
+    MapParser(@NotNull Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Parses a whole map file.
+     *
+     * @return The properties of the map.
+     * @throws IOException         if the reader fails.
+     * @throws InvalidMapException if the map cannot be parsed.
+     */
+    @NotNull
+    GameProperties parse() throws IOException {
+        final int rows = parseHeaderInt("number of rows");
+        final int cols = parseHeaderInt("number of columns");
+        final int delay = parseHeaderInt("amount of delay");
+
+        if (rows <= 0 || cols <= 0) {
+            throw new InvalidMapException("Map size must be positive, but is " + rows + "x" + cols);
+        }
+        if ((long) rows * cols > Integer.MAX_VALUE) {
+            throw new InvalidMapException("Map size " + rows + "x" + cols + " is too large");
+        }
+
+        final var grid = new PackedGrid(rows, cols);
+        for (int r = 0; r < rows; ++r) {
+            if (!skipToContentLine()) {
+                throw new InvalidMapException("Unexpected EOF when parsing row " + r + " of map");
+            }
+            parseRow(grid, r);
+        }
+
+        final var pipes = parsePipes();
+
+        return new GameProperties(grid, delay, pipes);
+    }
+
+    /**
+     * Parses only the size of the map from the header of a map file, without reading the cells.
+     *
+     * @return Number of cells of the map.
+     * @throws IOException         if the reader fails.
+     * @throws InvalidMapException if the header cannot be parsed.
+     */
+    long parseNumCells() throws IOException {
+        final int rows = parseHeaderInt("number of rows");
+        final int cols = parseHeaderInt("number of columns");
+
+        if (rows <= 0 || cols <= 0) {
+            throw new InvalidMapException("Map size must be positive, but is " + rows + "x" + cols);
+        }
+        return (long) rows * cols;
+    }
+
+    /**
+     * Parses a line containing a single non-negative integer.
+     *
+     * @param name Name of the value, for error messages.
+     * @return The parsed value.
+     */
+    private int parseHeaderInt(@NotNull String name) throws IOException {
+        if (!skipToContentLine()) {
+            throw new InvalidMapException("Unexpected EOF when parsing " + name);
+        }
+
+        long value = 0;
+        int numDigits = 0;
+        int c;
+        while ((c = peek()) >= '0' && c <= '9') {
+            value = value * 10 + (c - '0');
+            if (value > Integer.MAX_VALUE) {
+                throw error("Value of " + name + " is too large");
+            }
+
+            next();
+            ++numDigits;
+        }
+
+        if (numDigits == 0) {
+            throw error("Expected " + name + ", but found " + describe(c));
+        }
+        skipTrailingWhitespace(name);
+
+        return (int) value;
+    }
+
+    /**
+     * Parses a row of the map into the grid.
+     *
+     * @param grid Grid to write to.
+     * @param row  Index of the row.
+     */
+    private void parseRow(@NotNull PackedGrid grid, int row) throws IOException {
+        final int cols = grid.getCols();
+        final boolean isBorderRow = row == 0 || row == grid.getRows() - 1;
+
+        for (int col = 0; col < cols; ++col) {
+            final int c = peek();
+            if (c == -1 || c == '\n' || c == '\r') {
+                throw error("Row " + row + " of map has " + col + " columns, but expected " + cols);
+            }
+
+            final boolean isBorder = isBorderRow || col == 0 || col == cols - 1;
+            final int code = toCode((char) c, isBorder);
+            if (code == -1) {
+                throw error("Unexpected " + describe(c) + " in row " + row + ", column " + col + " of map");
+            }
+
+            grid.set(row, col, (byte) code);
+            next();
+        }
+
+        skipTrailingWhitespace("row " + row + " of map");
+    }
+
+    /**
+     * Parses the optional line of initial pipes.
+     *
+     * @return The list of pipes, or {@code null} if there is no such line.
+     */
+    @Nullable
+    private List<Pipe> parsePipes() throws IOException {
+        if (!skipToContentLine()) {
+            return null;
+        }
+
+        final var pipes = new ArrayList<Pipe>();
+        final var token = new StringBuilder(2);
+        int tokenColumn = column;
+
+        int c;
+        do {
+            c = peek();
+            if (c == ',' || c == '\n' || c == -1) {
+                try {
+                    pipes.add(Pipe.fromString(token.toString()));
+                } catch (IllegalArgumentException e) {
+                    throw new InvalidMapException(
+                            "Line " + line + ", column " + tokenColumn + ": Unknown pipe \"" + token.toString().trim() + "\"");
+                }
+
+                token.setLength(0);
+                tokenColumn = column + 1;
+            } else {
+                token.append((char) c);
+            }
+            next();
+        } while (c != '\n' && c != -1);
+
+        return pipes;
+    }
+
+    /**
+     * Converts a map character to a cell code.
+     *
+     * @param c        Character to convert.
+     * @param isBorder Whether the cell is on the border of the map, in which case termination cells are sinks.
+     * @return Code of the cell, or {@code -1} if the character does not represent a cell.
+     * @see models.map.cells.Cell#fromChar(char, util.Coordinate, TerminationCell.Type)
+     */
+    private static int toCode(char c, boolean isBorder) {
+        final var type = isBorder ? TerminationCell.Type.SINK : TerminationCell.Type.SOURCE;
+
+        switch (c) {
+            case 'W':
+                return PackedGrid.WALL;
+            case '.':
+                return PackedGrid.EMPTY;
+            case '^':
+                return PackedGrid.termination(Direction.UP, type);
+            case '>':
+                return PackedGrid.termination(Direction.RIGHT, type);
+            case '<':
+                return PackedGrid.termination(Direction.LEFT, type);
+            case 'v':
+                return PackedGrid.termination(Direction.DOWN, type);
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Skips blank lines and comment lines.
+     *
+     * @return {@code true} if the parser is now at the first character of a line with content, or {@code false} if the
+     * end of the input is reached.
+     */
+    private boolean skipToContentLine() throws IOException {
+        while (true) {
+            int indent = 0;
+            int c;
+            while ((c = peek()) != -1 && c != '\n' && Character.isWhitespace(c)) {
+                next();
+                ++indent;
+            }
+
+            if (c == -1) {
+                return false;
+            } else if (c == '\n') {
+                next();
+            } else if (indent != 0) {
+                throw error("Unexpected whitespace at start of line");
+            } else if (c == '#') {
+                skipLine();
+            } else {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Skips the remainder of the current line, which must only contain whitespace.
+     *
+     * @param name Name of what has been parsed on this line, for error messages.
+     */
+    private void skipTrailingWhitespace(@NotNull String name) throws IOException {
+        int c;
+        while ((c = peek()) != -1 && c != '\n') {
+            if (!Character.isWhitespace(c)) {
+                throw error("Unexpected " + describe(c) + " after " + name);
+            }
+            next();
+        }
+        next();
+    }
+
+    private void skipLine() throws IOException {
+        int c;
+        do {
+            c = next();
+        } while (c != '\n' && c != -1);
+    }
+
+    /**
+     * @return The next character without consuming it, or {@code -1} at the end of the input.
+     */
+    private int peek() throws IOException {
+        if (pos == limit) {
+            limit = reader.read(buffer, 0, buffer.length);
+            pos = 0;
+
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[pos];
+    }
+
+    /**
+     * @return The next character, or {@code -1} at the end of the input.
+     */
+    private int next() throws IOException {
+        final int c = peek();
+        if (c == -1) {
+            return c;
+        }
+
+        ++pos;
+        if (c == '\n') {
+            ++line;
+            column = 1;
+        } else {
+            ++column;
+        }
+        return c;
+    }
+
+    /**
+     * @param message Description of the error.
+     * @return An exception pointing at the next character.
+     */
+    @NotNull
+    private InvalidMapException error(@NotNull String message) {
+        return new InvalidMapException("Line " + line + ", column " + column + ": " + message);
+    }
+
+    @NotNull
+    private static String describe(int c) {
+        if (c == -1) {
+            return "end of file";
+        } else if (c == '\n' || c == '\r') {
+            return "end of line";
+        } else {
+            return "character '" + (char) c + "'";
+        }
+    }
+}
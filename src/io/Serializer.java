@@ -1,5 +1,6 @@
 package io;
 
+import models.pipes.Pipe;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.BufferedWriter;
@@ -7,6 +8,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.nio.file.Path;
+import java.util.stream.Collectors;
 
 /**
  * A serializer for converting {@link GameProperties} into a map file.
@@ -28,10 +30,19 @@ public class Serializer {
     /**
      * Serializes a {@link GameProperties} object and saves it into a file.
      *
+     * <p>
+     * If the path has the {@link BinaryMapFormat#EXTENSION} extension, the map is saved as a binary map.
+     * </p>
+     *
      * @param prop {@link GameProperties} object to serialize and save.
      * @throws IOException if an I/O exception has occurred.
      */
     public void serializeGameProp(@NotNull final GameProperties prop) throws IOException {
+        if (BinaryMapFormat.isBinaryMap(path)) {
+            BinaryMapWriter.write(prop, path);
+            return;
+        }
+
         // TODO wip
         try {
             System.out.println("Writing to " + path.toAbsolutePath().toString());
@@ -42,12 +53,17 @@ public class Serializer {
             writer.println(prop.delay);
 
             /**Print Map**/
+            final var cells = prop.getCells();
             for ( int i = 0; i < prop.rows; i++ ){
                 for ( int j = 0; j < prop.cols; j++ ){
-                    writer.print(prop.cells[i][j].toSerializedRep());
+                    writer.print(cells[i][j].toSerializedRep());
                 }
                 writer.println();
             }
+
+            if (prop.pipes != null) {
+                writer.println(prop.pipes.stream().map(Pipe::toSerializedRep).collect(Collectors.joining(", ")));
+            }
             writer.close();
         }
         catch (Exception e ){ throw new IOException(); }
@@ -3,14 +3,21 @@ package main;
 import controllers.SceneManager;
 import javafx.application.Application;
 import javafx.stage.Stage;
+import models.FXGame;
 import textgame.Main;
 import views.panes.MainMenuPane;
 
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 
 public class PipesMain extends Application {
 
+    /**
+     * Option followed by the directory which every game is recorded into.
+     */
+    public static final String JOURNAL_OPTION = "--journal";
+
     @Override
     public void start(final Stage primaryStage) {
         SceneManager.getInstance().setStage(primaryStage);
@@ -27,6 +34,17 @@ public class PipesMain extends Application {
 
             System.exit(0);
         } else {
+            while (args.length >= 2) {
+                if (args[0].equals(Main.SEED_OPTION)) {
+                    FXGame.setDefaultSeed(Long.parseLong(args[1]));
+                } else if (args[0].equals(JOURNAL_OPTION)) {
+                    FXGame.setJournalDirectory(Paths.get(args[1]));
+                } else {
+                    break;
+                }
+                args = Arrays.copyOfRange(args, 2, args.length);
+            }
+
             PipesMain.launch(args);
         }
     }
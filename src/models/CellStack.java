@@ -1,7 +1,5 @@
 package models;
 
-import javafx.beans.property.IntegerProperty;
-import javafx.beans.property.SimpleIntegerProperty;
 import models.map.cells.FillableCell;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -15,7 +13,7 @@ public class CellStack {
 
     @NotNull
     private final Stack<@NotNull FillableCell> cellStack = new Stack<>();
-    private IntegerProperty undoCountProperty = new SimpleIntegerProperty(0);
+    private int undoCount = 0;
 
     /**
      * Pushes a cell into the stack.
@@ -37,19 +35,21 @@ public class CellStack {
             return null;
         }
 
-        undoCountProperty.set(undoCountProperty.get() + 1);
+        ++undoCount;
         return cellStack.pop();
     }
 
-    @NotNull
-    public IntegerProperty getUndoCountProperty() {
-        return undoCountProperty;
+    /**
+     * @return Number of cells popped from the stack.
+     */
+    public int getUndoCount() {
+        return undoCount;
     }
 
     /**
      * Displays the current undo count to {@link System#out}.
      */
     public void display() {
-        System.out.println("Undo Count: " + undoCountProperty.get());
+        System.out.println("Undo Count: " + undoCount);
     }
 }
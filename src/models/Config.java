@@ -30,6 +30,15 @@ public class Config {
      */
     public static final int TILE_SIZE = 32;
 
+    /**
+     * Largest width of the gameplay canvas. Larger maps are scrolled.
+     */
+    public static final int VIEWPORT_WIDTH = 768;
+    /**
+     * Largest height of the gameplay canvas. Larger maps are scrolled.
+     */
+    public static final int VIEWPORT_HEIGHT = 512;
+
     /**
      * Path to the CSS styling.
      */
@@ -44,6 +53,8 @@ public class Config {
                 "LMB: Place Pipe\n" +
                 "u: Undo Move\n" +
                 "s: Skip Pipe\n" +
+                "Drag / Arrow keys: Scroll Map\n" +
+                "Mouse wheel / +/-: Zoom Map\n" +
                 "\n" +
                 "Instructions:\n" +
                 "The objective of Pipes is to allow the water to flow from the source to the sink. This is done by placing and connecting pipes in the map.";
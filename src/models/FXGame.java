@@ -1,21 +1,43 @@
 package models;
 
+import controllers.Renderer;
+import controllers.Viewport;
+import io.GameJournal;
+import javafx.application.Platform;
 import javafx.beans.property.IntegerProperty;
 import javafx.beans.property.SimpleIntegerProperty;
 import javafx.scene.canvas.Canvas;
-import models.map.Map;
+import models.map.GridSnapshot;
 import models.map.cells.Cell;
-import models.map.cells.FillableCell;
 import models.pipes.Pipe;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
-import textgame.game.Game;
-import util.Coordinate;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static models.Config.TILE_SIZE;
 
 /**
  * JavaFX version of {@link textgame.game.Game}.
+ *
+ * <p>
+ * The game itself is run by a {@link GameEngine}. This class only exposes its state as JavaFX properties and renders
+ * it onto canvases.
+ * </p>
+ *
+ * <p>
+ * Every change to the game, whether it comes from the player or from the flow timer, is run as a command on the
+ * {@link GameLoop} of the game, so only one thread ever writes to the {@link GameEngine}. Tick and flow handlers run on
+ * that thread as well. After each command, the counters, the pipe queue and whether the game is won or lost are
+ * published together as an immutable snapshot, which other threads read without locks. The cells are published
+ * separately by the map as a {@link models.map.GridSnapshot}. Call {@link FXGame#dispose()} when the game is no longer
+ * used.
+ * </p>
  */
 public class FXGame {
 
@@ -27,17 +49,57 @@ public class FXGame {
      * Default number of columns.
      */
     private static int defaultCols = 8;
+    /**
+     * Seed of generated maps, or {@code null} to generate every map from a new random seed.
+     */
+    @Nullable
+    private static Long defaultSeed = null;
+    /**
+     * Directory which every game is recorded into as a {@link GameJournal}, or {@code null} to not record games.
+     */
+    @Nullable
+    private static Path journalDirectory = null;
 
     @NotNull
-    private final Map map;
+    private final GameEngine engine;
+    @NotNull
+    private final GameLoop loop = new GameLoop();
+    /**
+     * Journal which the game is recorded into, if any. Only accessed on the loop thread.
+     */
+    @Nullable
+    private GameJournal journal;
+
+    /**
+     * State of the game after the last command. Written by the loop thread, and read by any thread.
+     */
     @NotNull
-    private final PipeQueue pipeQueue;
+    private volatile Snapshot published;
+    /**
+     * Whether an update of the counter properties has been posted to the JavaFX Application Thread and not run yet.
+     */
     @NotNull
-    private final FlowTimer flowTimer;
+    private final AtomicBoolean countersPending = new AtomicBoolean(false);
+    /**
+     * Handlers to run on the loop thread after the state of the game is published.
+     */
     @NotNull
-    private final CellStack cellStack = new CellStack();
+    private final List<Runnable> changeHandlers = new CopyOnWriteArrayList<>();
 
-    private IntegerProperty numOfSteps = new SimpleIntegerProperty(0);
+    private final IntegerProperty numOfSteps = new SimpleIntegerProperty(0);
+    private final IntegerProperty numOfUndo = new SimpleIntegerProperty(0);
+
+    /**
+     * Canvas which the whole map was last rendered onto. Only accessed on the JavaFX Application Thread.
+     */
+    @Nullable
+    private Canvas renderedCanvas;
+    /**
+     * Viewport which the map was last rendered through, or {@code null} if the whole map was rendered.
+     */
+    @Nullable
+    private Viewport renderedViewport;
+    private int renderedVersion;
 
     /**
      * Sets the default number of rows for generated maps.
@@ -57,6 +119,40 @@ public class FXGame {
         defaultCols = cols;
     }
 
+    /**
+     * Sets the seed of generated maps, so that they can be reproduced.
+     *
+     * @param seed New seed, or {@code null} to generate every map from a new random seed.
+     */
+    public static void setDefaultSeed(@Nullable Long seed) {
+        defaultSeed = seed;
+    }
+
+    /**
+     * @return Seed of generated maps, or {@code null} if every map is generated from a new random seed.
+     */
+    @Nullable
+    public static Long getDefaultSeed() {
+        return defaultSeed;
+    }
+
+    /**
+     * Sets the directory which games are recorded into, so that they can be replayed with {@link io.JournalReplayer}.
+     *
+     * @param directory New directory, or {@code null} to not record games.
+     */
+    public static void setJournalDirectory(@Nullable Path directory) {
+        journalDirectory = directory;
+    }
+
+    /**
+     * @return Directory which games are recorded into, or {@code null} if games are not recorded.
+     */
+    @Nullable
+    public static Path getJournalDirectory() {
+        return journalDirectory;
+    }
+
     /**
      * @return Current default number of rows for generated maps.
      */
@@ -75,22 +171,31 @@ public class FXGame {
      * Constructs an instance with default number of rows and columns.
      */
     public FXGame() {
-        this(defaultRows, defaultCols);
+        this(defaultSeed != null ? defaultSeed : GameEngine.randomSeed());
+    }
+
+
+
+    /**
+     * Constructs an instance with default number of rows and columns, which is generated from a seed.
+     *
+     * @param seed Seed of the map layout and the pipe stream.
+     */
+    public FXGame(long seed) {
+        this(defaultRows, defaultCols, seed);
     }
 
 
 
     /**
-     * Constructs an instance with given number of rows and columns.
+     * Constructs an instance with given number of rows and columns, which is generated from a seed.
      *
      * @param rows Number of rows (excluding side walls)
      * @param cols Number of columns (excluding side walls)
+     * @param seed Seed of the map layout and the pipe stream.
      */
-    private FXGame(int rows, int cols) {
-        // TODO --wip
-        map = new Map(rows +2, cols + 2);
-        pipeQueue = new PipeQueue();
-        flowTimer = new FlowTimer();
+    private FXGame(int rows, int cols, long seed) {
+        this(new GameEngine(rows, cols, seed));
     }
 
 
@@ -105,21 +210,75 @@ public class FXGame {
      * @param pipes Initial pipes, if provided.
      */
     public FXGame(int rows, int cols, int delay, @NotNull Cell[][] cells, @Nullable List<Pipe> pipes) {
-        // TODO wip
-        map = new Map(rows, cols, cells );
-        pipeQueue = new PipeQueue(pipes);
-        flowTimer = new FlowTimer(delay);
+        this(new GameEngine(rows, cols, delay, cells, pipes));
     }
 
 
 
+    /**
+     * Constructs an instance which presents an existing game to the GUI.
+     *
+     * @param engine Game to present.
+     */
+    public FXGame(@NotNull GameEngine engine) {
+        this.engine = engine;
+        this.published = new Snapshot(engine);
+        engine.setTickExecutor(loop);
+    }
+
+
+
+    /**
+     * @return Number of rows of the map.
+     */
+    public int getRows() {
+        return engine.getGrid().getRows();
+    }
+
+    /**
+     * @return Number of columns of the map.
+     */
+    public int getCols() {
+        return engine.getGrid().getCols();
+    }
+
     /**
      * Adds a handler to be run when the water flows into an additional tile.
      *
      * @param handler {@link Runnable} to execute.
      */
     public void addOnFlowHandler(@NotNull Runnable handler) {
-        flowTimer.registerFlowCallback(handler);
+        engine.addOnFlowHandler(handler);
+    }
+
+
+
+    /**
+     * Adds a handler to be run after every change to the game is published. Handlers are run on the loop thread of
+     * the game.
+     *
+     * @param handler Handler to add.
+     */
+    public void addOnChangeHandler(@NotNull Runnable handler) {
+        changeHandlers.add(handler);
+    }
+
+
+
+    /**
+     * Stops the flow of water and the loop thread of the game. The game must not be changed afterwards.
+     *
+     * <p>
+     * This runs as a command on the loop thread, after any start of the countdown which has already been submitted, so
+     * the flow timer cannot be started once the game has been disposed.
+     * </p>
+     */
+    public void dispose() {
+        loop.execute(() -> {
+            engine.stopCountdown();
+            closeJournal();
+            loop.shutdown();
+        });
     }
 
 
@@ -129,70 +288,67 @@ public class FXGame {
      * @param handler {@link Runnable} to execute.
      */
     public void addOnTickHandler(@NotNull Runnable handler) {
-        flowTimer.registerTickCallback(handler);
+        engine.addOnTickHandler(handler);
     }
 
     /**
-     * Starts the flow of water.
+     * Starts the flow of water. If a journal directory is set, the game is recorded from this point on.
      */
     public void startCountdown() {
-        flowTimer.start();
+        loop.execute(() -> {
+            if (journalDirectory != null && journal == null) {
+                final var name = "game-" + engine.getSeed() + "-" + System.currentTimeMillis()
+                        + GameJournal.EXTENSION;
+                try {
+                    Files.createDirectories(journalDirectory);
+                    journal = GameJournal.start(engine, journalDirectory.resolve(name));
+                } catch (IOException | IllegalStateException e) {
+                    e.printStackTrace();
+                }
+            }
+            engine.startCountdown();
+        });
     }
 
     /**
-     * Stops the flow of water.
+     * Stops the flow of water. Runs on the loop thread, so a countdown which is being started is stopped as well.
      */
     public void stopCountdown() {
-        flowTimer.stop();
+        loop.execute(engine::stopCountdown);
     }
 
 
     /**
      * @param row Row index to place pipe
      * @param col Column index to place pipe
-     * @see Game#placePipe(int, char)
+     * @see textgame.game.Game#placePipe(int, char)
      */
     public void placePipe(int row, int col) {
-        // TODO -- instead of delay, what to perform?
-        Pipe p = pipeQueue.peek();
-
-        var coord = new Coordinate(row, col );
-        var result = map.tryPlacePipe(coord, p);
-        if ( result ){
-            pipeQueue.consume();
-            /** Some delay? **/
-            cellStack.push( new FillableCell(coord, p));
-            numOfSteps.setValue(numOfSteps.intValue()+1);
-        }
+        loop.execute(() -> {
+            engine.placePipe(row, col);
+            publish();
+        });
     }
 
 
     /**
-     * @see Game#skipPipe()
+     * @see textgame.game.Game#skipPipe()
      */
     public void skipPipe() {
-        // TODO wip
-        pipeQueue.consume();
-        numOfSteps.setValue(numOfSteps.intValue()+1);
+        loop.execute(() -> {
+            engine.skipPipe();
+            publish();
+        });
     }
 
 
 
-    /**@see Game#undoStep()*/
+    /**@see textgame.game.Game#undoStep()*/
     public void undoStep() {
-        // TODO -- is it correct?
-        var undoCell = cellStack.pop();
-        if ( undoCell != null ){
-            if ( undoCell.getPipe().map(Pipe::getFilled).orElse(false)){
-                cellStack.push(undoCell);
-                return;
-            }
-            pipeQueue.undo(undoCell.getPipe().orElseThrow());
-            map.undo(undoCell.coord);
-
-            numOfSteps.setValue(numOfSteps.intValue()+1);
-        }
-        else return;
+        loop.execute(() -> {
+            engine.undoStep();
+            publish();
+        });
     }
 
 
@@ -200,10 +356,62 @@ public class FXGame {
     /**
      * Renders the map onto a {@link Canvas}.
      *
+     * <p>
+     * The whole map is only drawn the first time it is rendered onto {@code canvas}, or when the canvas has been resized.
+     * Otherwise only the cells which have changed since the last render are drawn.
+     * </p>
+     *
+     * <p>
+     * This method must be called on the JavaFX Application Thread. Use a {@link controllers.RenderScheduler} to request
+     * renders from other threads.
+     * </p>
+     *
      * @param canvas {@link Canvas} to render to.
      */
     public void renderMap(@NotNull Canvas canvas) {
-        map.render(canvas);
+        final var changes = engine.getChanges();
+
+        // the snapshot is read after the changes are taken, so that it contains every change which is drawn
+        if (canvas != renderedCanvas
+                || canvas.getWidth() != getCols() * TILE_SIZE
+                || canvas.getHeight() != getRows() * TILE_SIZE) {
+            changes.clear();
+            Renderer.renderMap(canvas, engine.getSnapshot());
+            renderedCanvas = canvas;
+            renderedViewport = null;
+        } else {
+            changes.drain(index -> Renderer.renderCell(canvas, engine.getSnapshot(), index));
+        }
+    }
+
+    /**
+     * Renders the visible part of the map onto a {@link Canvas}.
+     *
+     * <p>
+     * The whole viewport is only drawn the first time the map is rendered onto {@code canvas}, or when the viewport has
+     * been moved or zoomed. Otherwise only the visible cells which have changed since the last render are drawn.
+     * </p>
+     *
+     * <p>
+     * This method must be called on the JavaFX Application Thread.
+     * </p>
+     *
+     * @param canvas   {@link Canvas} to render to.
+     * @param viewport Visible window of the map.
+     */
+    public void renderMap(@NotNull Canvas canvas, @NotNull Viewport viewport) {
+        final var changes = engine.getChanges();
+
+        // the snapshot is read after the changes are taken, so that it contains every change which is drawn
+        if (canvas != renderedCanvas || viewport != renderedViewport || viewport.getVersion() != renderedVersion) {
+            changes.clear();
+            Renderer.renderMap(canvas, engine.getSnapshot(), viewport);
+            renderedCanvas = canvas;
+            renderedViewport = viewport;
+            renderedVersion = viewport.getVersion();
+        } else {
+            changes.drain(index -> Renderer.renderCell(canvas, engine.getSnapshot(), index, viewport));
+        }
     }
 
     /**
@@ -211,47 +419,37 @@ public class FXGame {
      * @param canvas {@link Canvas} to render to.
      */
     public void renderQueue(@NotNull Canvas canvas) {
-        pipeQueue.render(canvas);
+        Renderer.renderQueue(canvas, published.queuedPipes);
     }
 
 
 
     /**
-     * @see Game#updateState()
+     * @see textgame.game.Game#updateState()
      */
     public void updateState() {
-        // TODO wip
-        if ( flowTimer.distance() == 0 ){
-
-            map.fillBeginTile();
-            map.fillTiles(flowTimer.distance());
-        } else if ( flowTimer.distance() > 0 ){
-            map.fillTiles(flowTimer.distance());
-        }
-
-        System.out.println(flowTimer.distance());
+        loop.execute(() -> {
+            engine.updateState();
+            publish();
+        });
     }
 
 
 
     /**
-     * @see Game#updateState()
+     * @see textgame.game.Game#updateState()
      */
     public boolean hasWon() {
-        // TODO
-        return map.checkPath();
+        return loop.isLoopThread() ? engine.hasWon() : published.hasWon;
     }
 
 
 
     /**
-     * @see Game#hasLost()
+     * @see textgame.game.Game#hasLost()
      */
     public boolean hasLost() {
-        // TODO
-        if ( flowTimer.distance() <= 0 )
-            return false;
-        else return map.hasLost();
+        return loop.isLoopThread() ? engine.hasLost() : published.hasLost;
     }
 
 
@@ -260,7 +458,25 @@ public class FXGame {
      * Fills all reachable pipes in the map.
      */
     public void fillAllPipes() {
-        map.fillAll();
+        loop.execute(() -> {
+            engine.fillAllPipes();
+            publish();
+        });
+    }
+
+    /**
+     * @return The latest snapshot of the map, which may be read from any thread without locks.
+     */
+    @NotNull
+    public GridSnapshot getMapSnapshot() {
+        return engine.getSnapshot();
+    }
+
+    /**
+     * @return Seed which this game was created from.
+     */
+    public long getSeed() {
+        return engine.getSeed();
     }
 
     public IntegerProperty getNumOfSteps() {
@@ -268,6 +484,67 @@ public class FXGame {
     }
 
     public IntegerProperty getNumOfUndo() {
-        return cellStack.getUndoCountProperty();
+        return numOfUndo;
+    }
+
+    /**
+     * Publishes the state of the game after a command, and posts an update of the counter properties to the JavaFX
+     * Application Thread unless one is already pending, then runs the change handlers. Must be called on the loop
+     * thread.
+     */
+    private void publish() {
+        published = new Snapshot(engine);
+        if (countersPending.compareAndSet(false, true)) {
+            Platform.runLater(this::updateCounters);
+        }
+        changeHandlers.forEach(Runnable::run);
+    }
+
+    /**
+     * Stops recording the game, and waits for the journal to be written. Must be called on the loop thread.
+     */
+    private void closeJournal() {
+        if (journal == null) {
+            return;
+        }
+
+        engine.setEventListener(null);
+        try {
+            journal.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        journal = null;
+    }
+
+    /**
+     * Copies the published counters of the game into the properties bound by the GUI.
+     */
+    private void updateCounters() {
+        countersPending.set(false);
+        final var snapshot = published;
+        numOfSteps.set(snapshot.numOfSteps);
+        numOfUndo.set(snapshot.numOfUndo);
+    }
+
+    /**
+     * State of a game which is shown by the GUI, as of the end of a command.
+     */
+    private static final class Snapshot {
+
+        private final int numOfSteps;
+        private final int numOfUndo;
+        private final boolean hasWon;
+        private final boolean hasLost;
+        @NotNull
+        private final List<Pipe> queuedPipes;
+
+        Snapshot(@NotNull GameEngine engine) {
+            this.numOfSteps = engine.getNumOfSteps();
+            this.numOfUndo = engine.getNumOfUndo();
+            this.hasWon = engine.hasWon();
+            this.hasLost = engine.hasLost();
+            this.queuedPipes = List.copyOf(engine.getQueuedPipes());
+        }
     }
 }
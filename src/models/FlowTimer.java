@@ -1,22 +1,24 @@
 package models;
 
-import javafx.beans.binding.Bindings;
-import javafx.beans.property.IntegerProperty;
-import javafx.beans.property.SimpleIntegerProperty;
-import javafx.beans.property.SimpleObjectProperty;
-import javafx.beans.value.ObservableValue;
+import models.timing.HashedWheelTimer;
+import models.timing.ScheduledTask;
+import models.timing.TickScheduler;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.Executor;
 
 /**
  * Timer for handling flow events.
  */
 public class FlowTimer {
 
+    /*** Duration of a tick in milliseconds.*/
+    public static final long TICK_DURATION = 1000;
+
+
     /*** Default delay before the water starts flowing.*/
     private static int defaultDelay = 10;
 
@@ -25,13 +27,38 @@ public class FlowTimer {
     private static int defaultFlowDuration = 5;
 
 
-    /*** Backing timer.*/
+    /*** Scheduler running the ticks, which may be shared with other timers.*/
+    @NotNull
+    private final TickScheduler scheduler;
+
+
+    /*** Handle of the scheduled ticks, or {@code null} if the timer has not been started.*/
+    @Nullable
+    private volatile ScheduledTask tickTask;
+
+
+    /*** Executor which runs each tick. Ticks run on the thread of the scheduler unless another executor is set.*/
     @NotNull
-    private final Timer flowTimer = new Timer(true);
+    private volatile Executor tickExecutor = Runnable::run;
+
+
+    /**
+     * Whether the timer is running. Ticks which are still waiting in {@link FlowTimer#tickExecutor} after
+     * {@link FlowTimer#stop()} are dropped.
+     */
+    private volatile boolean running = false;
+
+
+    /*** Number of ticks before the water starts flowing.*/
+    private final int delay;
+
 
+    /*** Number of ticks between each water flow.*/
+    private final int flowDuration;
 
-    /*** Current value of the flow timer.*/
-    private final IntegerProperty currentValue = new SimpleIntegerProperty();
+
+    /*** Current value of the flow timer. Written by the timer thread, and read by the game.*/
+    private volatile int currentValue;
 
 
     /** List of callbacks to execute when a tick has passed.*/
@@ -42,6 +69,10 @@ public class FlowTimer {
     private final List<Runnable> onFlowCallbacks = new ArrayList<>();
 
 
+    /*** List of callbacks to execute after all other callbacks of a tick.*/
+    private final List<Runnable> afterTickCallbacks = new ArrayList<>();
+
+
     private int ticksElapsed;
 
 
@@ -101,18 +132,31 @@ public class FlowTimer {
      * @param initialValue Initial delay value.
      */
     FlowTimer(int initialValue) {
+        this(initialValue, HashedWheelTimer.shared());
+    }
+
+
+
+
+    /**
+     * Creates an instance with custom delay, which is driven by the given scheduler.
+     * @param initialValue Initial delay value.
+     * @param scheduler    Scheduler to run the ticks on.
+     */
+    FlowTimer(int initialValue, @NotNull TickScheduler scheduler) {
         // TODO wip -- FlowCallBack Or TickCallBack?
         ticksElapsed = 0;
         //time.setValue(ticksElapsed);
 
 
-        setDefaultDelay(initialValue);
+        this.scheduler = scheduler;
+        this.delay = initialValue;
+        this.flowDuration = defaultFlowDuration;
         this.onTickCallbacks.add(new Runnable() {
             @Override
             public void run() {
                 ticksElapsed++;
                 //currentValue.set(currentValue.intValue() + 1);
-                System.out.println("Hello! Right now the time is " + ticksElapsed );
             }
         });
 
@@ -144,12 +188,38 @@ public class FlowTimer {
 
 
 
+    /**
+     * Registers a callback to be run after the tick and flow callbacks of each tick, once the flow distance has been
+     * updated.
+     *
+     * @param cb Callback to run.
+     */
+    void registerAfterTickCallback(@NotNull final Runnable cb) {
+        afterTickCallbacks.add(cb);
+    }
+
+
+
+    /**
+     * Sets the executor which runs each tick, together with all callbacks of the tick.
+     *
+     * @param executor Executor to run ticks on.
+     */
+    void setTickExecutor(@NotNull Executor executor) {
+        tickExecutor = executor;
+    }
+
+
+
     /**
      * Starts the timer.
      *
      * <p>
      * The timer should tick down every one second, with a delay of one second. The water should flow an additional tile
-     * every {@link FlowTimer#defaultFlowDuration} seconds.
+     * every {@link FlowTimer#flowDuration} seconds.
+     * </p>
+     * <p>
+     * All callbacks are run by the tick executor, which is the thread of the {@link TickScheduler} by default.
      * </p>
      */
     void start() {
@@ -160,24 +230,33 @@ public class FlowTimer {
         this.onFlowCallbacks.add( new Runnable() {
             @Override
             public void run() {
-                currentValue.set(currentValue.intValue() + 1);
+                ++currentValue;
             }
         });
 
-        flowTimer.schedule(new TimerTask() {
+        running = true;
+        final Runnable tick = new Runnable() {
             @Override
             public void run() {
+                if (!running) {
+                    return;
+                }
+
                 /** missing something */
                 for(Runnable r: onTickCallbacks ){
                     r.run();
                 }
-                if (ticksElapsed >= defaultDelay && ticksElapsed % defaultFlowDuration == 0 ) {
+                if (ticksElapsed >= delay && ticksElapsed % flowDuration == 0 ) {
                     for (Runnable r : onFlowCallbacks) {
                         r.run();
                     }
                 }
+                for (Runnable r : afterTickCallbacks) {
+                    r.run();
+                }
             }
-        }, 1000, 1000);
+        };
+        tickTask = scheduler.scheduleAtFixedRate(() -> tickExecutor.execute(tick), TICK_DURATION, TICK_DURATION);
     }
 
 
@@ -186,8 +265,26 @@ public class FlowTimer {
      * Stops the timer.
      */
     void stop() {
-        // TODO wip -- cancel?
-        flowTimer.cancel();
+        running = false;
+        if (tickTask != null) {
+            tickTask.cancel();
+        }
+    }
+
+
+    /**
+     * @return Number of ticks before the water starts flowing.
+     */
+    int getDelay() {
+        return delay;
+    }
+
+
+    /**
+     * @return Number of ticks between each water flow.
+     */
+    int getFlowDuration() {
+        return flowDuration;
     }
 
 
@@ -195,6 +292,6 @@ public class FlowTimer {
      * @return Current distance of the water flow. If this value is negative, no pipe should be filled yet.
      */
     int distance() {
-        return currentValue.get();
+        return currentValue;
     }
 }
@@ -0,0 +1,449 @@
+package models;
+
+import models.map.ChangeTracker;
+import models.map.Map;
+import models.map.GridSnapshot;
+import models.map.MapHistory;
+import models.map.PackedGrid;
+import models.map.cells.Cell;
+import models.map.cells.FillableCell;
+import models.pipes.Pipe;
+import models.timing.HashedWheelTimer;
+import models.timing.TickScheduler;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import util.Coordinate;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Executor;
+
+/**
+ * Real-time version of {@link textgame.game.Game}, where the water flows according to a {@link FlowTimer}.
+ *
+ * <p>
+ * This class does not depend on JavaFX, so it can be run headless. {@link FXGame} adapts it to the GUI.
+ * </p>
+ *
+ * <p>
+ * All randomness of a game comes from its seed. The map layout and the pipe stream each get their own
+ * {@link SplittableRandom} split from the seed, so the same seed always creates the same game, and the pipes do not
+ * depend on how many numbers the map layout has drawn.
+ * </p>
+ */
+public class GameEngine {
+
+    @NotNull
+    private final Map map;
+    @NotNull
+    private final PipeQueue pipeQueue;
+    @NotNull
+    private final FlowTimer flowTimer;
+    @NotNull
+    private final CellStack cellStack = new CellStack();
+
+    private int numOfSteps = 0;
+
+    private final long seed;
+
+    /*** Pipes which the queue started with, or {@code null} if every pipe is generated from the seed.*/
+    @Nullable
+    private final List<Pipe> initialPipes;
+
+    /*** Listener of every command which changes the game, if any.*/
+    @Nullable
+    private volatile GameEventListener eventListener;
+
+    /**
+     * Constructs an instance with given number of rows and columns.
+     *
+     * @param rows Number of rows (excluding side walls)
+     * @param cols Number of columns (excluding side walls)
+     */
+    public GameEngine(int rows, int cols) {
+        this(rows, cols, HashedWheelTimer.shared());
+    }
+
+    /**
+     * Constructs an instance with given number of rows and columns, which is generated from a seed.
+     *
+     * @param rows Number of rows (excluding side walls)
+     * @param cols Number of columns (excluding side walls)
+     * @param seed Seed of the map layout and the pipe stream.
+     */
+    public GameEngine(int rows, int cols, long seed) {
+        this(rows, cols, seed, HashedWheelTimer.shared());
+    }
+
+    /**
+     * Constructs an instance with given number of rows and columns, whose water flow is driven by the given scheduler.
+     *
+     * @param rows      Number of rows (excluding side walls)
+     * @param cols      Number of columns (excluding side walls)
+     * @param scheduler Scheduler to run the flow timer on.
+     */
+    public GameEngine(int rows, int cols, @NotNull TickScheduler scheduler) {
+        this(rows, cols, randomSeed(), scheduler);
+    }
+
+    /**
+     * Constructs an instance with given number of rows and columns, which is generated from a seed, and whose water
+     * flow is driven by the given scheduler.
+     *
+     * @param rows      Number of rows (excluding side walls)
+     * @param cols      Number of columns (excluding side walls)
+     * @param seed      Seed of the map layout and the pipe stream.
+     * @param scheduler Scheduler to run the flow timer on.
+     */
+    public GameEngine(int rows, int cols, long seed, @NotNull TickScheduler scheduler) {
+        final var rng = new SplittableRandom(seed);
+        this.seed = seed;
+        map = new Map(rows + 2, cols + 2, rng.split());
+        pipeQueue = new PipeQueue(null, rng.split());
+        flowTimer = new FlowTimer(FlowTimer.getDefaultDelay(), scheduler);
+        initialPipes = null;
+        registerTickListener();
+    }
+
+    /**
+     * Constructs an instance with all given parameters.
+     *
+     * @param rows  Number of rows including side walls
+     * @param cols  Number of columns including side walls
+     * @param delay Delay in seconds before water starts flowing.
+     * @param cells Initial map.
+     * @param pipes Initial pipes, if provided.
+     */
+    public GameEngine(int rows, int cols, int delay, @NotNull Cell[][] cells, @Nullable List<Pipe> pipes) {
+        this(rows, cols, delay, cells, pipes, HashedWheelTimer.shared());
+    }
+
+    /**
+     * Constructs an instance with all given parameters, whose water flow is driven by the given scheduler.
+     *
+     * @param rows      Number of rows including side walls
+     * @param cols      Number of columns including side walls
+     * @param delay     Delay in seconds before water starts flowing.
+     * @param cells     Initial map.
+     * @param pipes     Initial pipes, if provided.
+     * @param scheduler Scheduler to run the flow timer on.
+     */
+    public GameEngine(int rows, int cols, int delay, @NotNull Cell[][] cells, @Nullable List<Pipe> pipes,
+                      @NotNull TickScheduler scheduler) {
+        this(delay, PackedGrid.fromCells(rows, cols, cells), pipes, scheduler);
+    }
+
+    /**
+     * Constructs an instance with a packed map.
+     *
+     * @param delay Delay in seconds before water starts flowing.
+     * @param grid  Initial map. The game takes ownership of the grid.
+     * @param pipes Initial pipes, if provided.
+     */
+    public GameEngine(int delay, @NotNull PackedGrid grid, @Nullable List<Pipe> pipes) {
+        this(delay, grid, pipes, HashedWheelTimer.shared());
+    }
+
+    /**
+     * Constructs an instance with a packed map, whose water flow is driven by the given scheduler.
+     *
+     * @param delay     Delay in seconds before water starts flowing.
+     * @param grid      Initial map. The game takes ownership of the grid.
+     * @param pipes     Initial pipes, if provided.
+     * @param scheduler Scheduler to run the flow timer on.
+     */
+    public GameEngine(int delay, @NotNull PackedGrid grid, @Nullable List<Pipe> pipes,
+                      @NotNull TickScheduler scheduler) {
+        this(delay, grid, pipes, randomSeed(), scheduler);
+    }
+
+    /**
+     * Constructs an instance with a packed map, whose further pipes are generated from a seed, and whose water flow is
+     * driven by the given scheduler.
+     *
+     * @param delay     Delay in seconds before water starts flowing.
+     * @param grid      Initial map. The game takes ownership of the grid.
+     * @param pipes     Initial pipes, if provided.
+     * @param seed      Seed of the pipe stream.
+     * @param scheduler Scheduler to run the flow timer on.
+     */
+    public GameEngine(int delay, @NotNull PackedGrid grid, @Nullable List<Pipe> pipes, long seed,
+                      @NotNull TickScheduler scheduler) {
+        final var rng = new SplittableRandom(seed);
+        this.seed = seed;
+        map = new Map(grid);
+        // skip the map layout stream, so that the pipes match those of a generated game with the same seed
+        rng.split();
+        initialPipes = pipes != null ? List.copyOf(pipes) : null;
+        pipeQueue = new PipeQueue(pipes, rng.split());
+        flowTimer = new FlowTimer(delay, scheduler);
+        registerTickListener();
+    }
+
+    /**
+     * Reports each tick to the event listener once it has fully elapsed. Commands run by the tick and flow handlers
+     * see the flow distance from before the tick, so they are reported before the tick itself.
+     */
+    private void registerTickListener() {
+        flowTimer.registerAfterTickCallback(() -> {
+            final var listener = eventListener;
+            if (listener != null) {
+                listener.onTick();
+            }
+        });
+    }
+
+    /**
+     * @return A new seed for a game which is not given one.
+     */
+    public static long randomSeed() {
+        return new SplittableRandom().nextLong();
+    }
+
+    /**
+     * @return Seed which this game was created from.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @return Delay in ticks before water starts flowing.
+     */
+    public int getDelay() {
+        return flowTimer.getDelay();
+    }
+
+    /**
+     * @return Number of ticks between each water flow.
+     */
+    public int getFlowDuration() {
+        return flowTimer.getFlowDuration();
+    }
+
+    /**
+     * @return Pipes which the queue started with, or {@code null} if every pipe is generated from the seed.
+     */
+    @Nullable
+    public List<Pipe> getInitialPipes() {
+        return initialPipes;
+    }
+
+    /**
+     * Sets the listener which is told of every command which changes the game. It must be set on the thread which runs
+     * the game.
+     *
+     * @param listener Listener to set, or {@code null} to remove the current one.
+     */
+    public void setEventListener(@Nullable GameEventListener listener) {
+        eventListener = listener;
+    }
+
+    /**
+     * Adds a handler to be run when the water flows into an additional tile.
+     *
+     * @param handler {@link Runnable} to execute.
+     */
+    public void addOnFlowHandler(@NotNull Runnable handler) {
+        flowTimer.registerFlowCallback(handler);
+    }
+
+    /**
+     * Adds a handler to be run when a tick elapses.
+     *
+     * @param handler {@link Runnable} to execute.
+     */
+    public void addOnTickHandler(@NotNull Runnable handler) {
+        flowTimer.registerTickCallback(handler);
+    }
+
+    /**
+     * Sets the executor which runs the ticks of the flow timer, together with the tick and flow handlers.
+     *
+     * @param executor Executor to run ticks on.
+     */
+    public void setTickExecutor(@NotNull Executor executor) {
+        flowTimer.setTickExecutor(executor);
+    }
+
+    /**
+     * Starts the flow of water.
+     */
+    public void startCountdown() {
+        flowTimer.start();
+    }
+
+    /**
+     * Stops the flow of water.
+     */
+    public void stopCountdown() {
+        flowTimer.stop();
+    }
+
+    /**
+     * @param row Row index to place pipe
+     * @param col Column index to place pipe
+     * @return {@code true} if the pipe is placed.
+     * @see textgame.game.Game#placePipe(int, char)
+     */
+    public boolean placePipe(int row, int col) {
+        Pipe p = pipeQueue.peek();
+
+        var coord = new Coordinate(row, col);
+        var result = map.tryPlacePipe(coord, p);
+        if (result) {
+            pipeQueue.consume();
+            cellStack.push(new FillableCell(coord, p));
+            ++numOfSteps;
+
+            final var listener = eventListener;
+            if (listener != null) {
+                listener.onPlace(row, col, p.getShape());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @see textgame.game.Game#skipPipe()
+     */
+    public void skipPipe() {
+        pipeQueue.consume();
+        ++numOfSteps;
+
+        final var listener = eventListener;
+        if (listener != null) {
+            listener.onSkip();
+        }
+    }
+
+    /**
+     * @return {@code false} if there are no steps to undo, otherwise {@code true}.
+     * @see textgame.game.Game#undoStep()
+     */
+    public boolean undoStep() {
+        var undoCell = cellStack.pop();
+        if (undoCell != null) {
+            // an undo which is refused still counts towards the undo count, so it is reported as well
+            final var listener = eventListener;
+            if (listener != null) {
+                listener.onUndo();
+            }
+
+            if (map.isFilled(undoCell.coord)) {
+                cellStack.push(undoCell);
+                return false;
+            }
+            pipeQueue.undo(undoCell.getPipe().orElseThrow());
+            map.undo(undoCell.coord);
+
+            ++numOfSteps;
+
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * @see textgame.game.Game#updateState()
+     */
+    public void updateState() {
+        if (flowTimer.distance() == 0) {
+            map.fillBeginTile();
+            map.fillTiles(flowTimer.distance());
+        } else if (flowTimer.distance() > 0) {
+            map.fillTiles(flowTimer.distance());
+        }
+
+        final var listener = eventListener;
+        if (listener != null) {
+            listener.onUpdateState();
+        }
+    }
+
+    /**
+     * @see textgame.game.Game#hasWon()
+     */
+    public boolean hasWon() {
+        return map.checkPath();
+    }
+
+    /**
+     * @see textgame.game.Game#hasLost()
+     */
+    public boolean hasLost() {
+        if (flowTimer.distance() <= 0) {
+            return false;
+        } else {
+            return map.hasLost();
+        }
+    }
+
+    /**
+     * Fills all reachable pipes in the map.
+     */
+    public void fillAllPipes() {
+        map.fillAll();
+
+        final var listener = eventListener;
+        if (listener != null) {
+            listener.onFillAll();
+        }
+    }
+
+    /**
+     * @return Live cells of the map. The grid must not be modified, and must only be read by the thread which runs the
+     * game.
+     */
+    @NotNull
+    public PackedGrid getGrid() {
+        return map.getGrid();
+    }
+
+    /**
+     * @return The latest published snapshot of the cells of the map, which may be read from any thread.
+     */
+    @NotNull
+    public GridSnapshot getSnapshot() {
+        return map.getSnapshot();
+    }
+
+    /**
+     * @return The recently published snapshots of the cells of the map, which may be read from any thread.
+     */
+    @NotNull
+    public MapHistory getHistory() {
+        return map.getHistory();
+    }
+
+    /**
+     * @return Cells of the map which have changed since they were last drawn.
+     */
+    @NotNull
+    public ChangeTracker getChanges() {
+        return map.getChanges();
+    }
+
+    /**
+     * @return Read-only view of the pipe queue, for rendering.
+     */
+    @NotNull
+    public List<Pipe> getQueuedPipes() {
+        return pipeQueue.getPipes();
+    }
+
+    /**
+     * @return Number of steps the player has taken.
+     */
+    public int getNumOfSteps() {
+        return numOfSteps;
+    }
+
+    /**
+     * @return Number of steps the player has undone.
+     */
+    public int getNumOfUndo() {
+        return cellStack.getUndoCount();
+    }
+}
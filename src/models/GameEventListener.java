@@ -0,0 +1,50 @@
+package models;
+
+import models.pipes.Pipe;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Listener of every command which changes a {@link GameEngine}, e.g. for recording a game so that it can be replayed.
+ *
+ * <p>
+ * Methods are called on the thread which runs the game, after the command has been applied. Commands which do not
+ * change the game, such as placing a pipe on an occupied cell, are not reported.
+ * </p>
+ */
+public interface GameEventListener {
+
+    /**
+     * Called when a pipe is placed.
+     *
+     * @param row   Row of the pipe.
+     * @param col   Column of the pipe.
+     * @param shape Shape of the pipe.
+     */
+    void onPlace(int row, int col, @NotNull Pipe.Shape shape);
+
+    /**
+     * Called when the next pipe is skipped.
+     */
+    void onSkip();
+
+    /**
+     * Called when a step is undone.
+     */
+    void onUndo();
+
+    /**
+     * Called when a tick of the flow timer has elapsed, after the tick and flow handlers of the game have run. Commands
+     * run by those handlers are therefore reported before the tick in which they ran.
+     */
+    void onTick();
+
+    /**
+     * Called when the water is flowed into the pipes according to the flow timer.
+     */
+    void onUpdateState();
+
+    /**
+     * Called when all reachable pipes are filled.
+     */
+    void onFillAll();
+}
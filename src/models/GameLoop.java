@@ -0,0 +1,95 @@
+package models;
+
+import org.jetbrains.annotations.NotNull;
+import util.MpscQueue;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Thread which runs every command of a game, one at a time.
+ *
+ * <p>
+ * Commands are submitted from any thread through a lock-free {@link MpscQueue}, and run in the order they were
+ * submitted. Since a single thread runs all of them, commands never race with each other and need no locks. A command
+ * submitted from the loop thread itself is run immediately, so commands may submit further commands.
+ * </p>
+ *
+ * <p>
+ * The thread parks while the queue is empty, and is woken up by the next submitted command.
+ * </p>
+ */
+public class GameLoop implements Executor {
+
+    @NotNull
+    private final MpscQueue<Runnable> commands = new MpscQueue<>();
+    @NotNull
+    private final Thread thread;
+
+    /*** Whether the loop thread is parked or about to park, and must be woken up by the next command.*/
+    private volatile boolean parked = false;
+    /*** Only written by the loop thread.*/
+    private volatile boolean running = true;
+
+    /**
+     * Creates and starts the loop thread.
+     */
+    public GameLoop() {
+        thread = new Thread(this::run, "game-loop");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Submits a command to run on the loop thread. Commands submitted after {@link GameLoop#shutdown()} are ignored.
+     *
+     * @param command Command to run.
+     */
+    @Override
+    public void execute(@NotNull Runnable command) {
+        if (Thread.currentThread() == thread) {
+            command.run();
+            return;
+        }
+
+        commands.offer(command);
+        if (parked) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * @return Whether the calling thread is the loop thread.
+     */
+    public boolean isLoopThread() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * Stops the loop thread after the commands which have already been submitted.
+     */
+    public void shutdown() {
+        execute(() -> running = false);
+    }
+
+    private void run() {
+        while (running) {
+            final var command = commands.poll();
+            if (command != null) {
+                try {
+                    command.run();
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+                continue;
+            }
+
+            // re-check after announcing the park, so that a command offered in between is not missed
+            parked = true;
+            if (commands.isEmpty()) {
+                LockSupport.park(this);
+            }
+            parked = false;
+        }
+    }
+}
@@ -1,6 +1,5 @@
 package models;
 
-import controllers.Renderer;
 import org.jetbrains.annotations.NotNull;
 
 /**
@@ -13,12 +12,6 @@ public interface MapElement {
      */
     char toSingleChar();
 
-    /**
-     * @return An {@link Renderer.CellImage} instance representing the image representation of the element.
-     */
-    @NotNull
-    Renderer.CellImage getImageRep();
-
     /**
      * @return Serialized {@link String} representation of the element.
      */
@@ -1,14 +1,13 @@
 package models;
 
-import controllers.Renderer;
-import javafx.scene.canvas.Canvas;
 import models.pipes.Pipe;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
 
 /**
  * Class encapsulating the pipe queue.
@@ -20,8 +19,15 @@ public class PipeQueue {
      */
     private static final int MAX_GEN_LENGTH = 5;
 
+    /**
+     * Shapes which new pipes are picked from.
+     */
+    private static final Pipe.Shape[] SHAPES = Pipe.Shape.values();
+
     @NotNull
     private final LinkedList<Pipe> pipeQueue;
+    @NotNull
+    private final SplittableRandom rng;
 
     /**
      * Creates an empty pipe queue.
@@ -31,11 +37,7 @@ public class PipeQueue {
      * </p>
      */
     public PipeQueue() {
-        pipeQueue = new LinkedList<>();
-
-        while (pipeQueue.size() < MAX_GEN_LENGTH) {
-            pipeQueue.add(generateNewPipe());
-        }
+        this(null);
     }
 
     /**
@@ -48,6 +50,18 @@ public class PipeQueue {
      * @param pipes List of pipes to display before generated pipes.
      */
     public PipeQueue(@Nullable List<Pipe> pipes) {
+        this(pipes, new SplittableRandom());
+    }
+
+    /**
+     * Creates a pipe queue with pipes already filled in the queue, whose further pipes are generated by the given
+     * random number generator.
+     *
+     * @param pipes List of pipes to display before generated pipes.
+     * @param rng   Random number generator to generate pipes with. The queue takes ownership of it.
+     */
+    public PipeQueue(@Nullable List<Pipe> pipes, @NotNull SplittableRandom rng) {
+        this.rng = rng;
         pipeQueue = new LinkedList<>();
         if (pipes != null) {
             pipeQueue.addAll(pipes);
@@ -113,12 +127,11 @@ public class PipeQueue {
 
 
     /**
-     * Renders this queue to a canvas.
-     * @param canvas Canvas to render to.
+     * @return Read-only view of the pipes in the queue, for rendering.
      */
-    public void render(@NotNull Canvas canvas) {
-        // TODO
-        Renderer.renderQueue(canvas, pipeQueue);
+    @NotNull
+    public List<Pipe> getPipes() {
+        return Collections.unmodifiableList(pipeQueue);
     }
 
 
@@ -127,17 +140,13 @@ public class PipeQueue {
      * Generates a new pipe.
      *
      * <p>
-     * Hint: Use {@link Random#nextInt(int)} to generate random numbers.
+     * Hint: Use {@link SplittableRandom#nextInt(int)} to generate random numbers.
      * </p>
      *
      * @return A new pipe.
      */
     @NotNull
-    private static Pipe generateNewPipe() {
-        var rand = new Random();
-        var availablePipes = Pipe.Shape.values();
-        int index = rand.nextInt(availablePipes.length);
-
-        return new Pipe(availablePipes[index]);
+    private Pipe generateNewPipe() {
+        return new Pipe(SHAPES[rng.nextInt(SHAPES.length)]);
     }
 }
@@ -0,0 +1,148 @@
+package models.map;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.function.IntConsumer;
+
+/**
+ * Set of cells of a {@link Map} which have changed since they were last drawn.
+ *
+ * <p>
+ * Cells are marked by the game, which may run on a timer thread, and drained by a single renderer. Each cell is only
+ * kept once until it is drained, no matter how many times it changes.
+ * </p>
+ *
+ * <p>
+ * Marked cells are staged until the map has published a {@link GridSnapshot} containing them, and only then become
+ * visible to {@link ChangeTracker#drain(IntConsumer)}. A snapshot read after draining a cell therefore always contains
+ * the change to that cell.
+ * </p>
+ */
+public class ChangeTracker {
+
+    /**
+     * Whether each cell is in {@link ChangeTracker#changed}.
+     */
+    @NotNull
+    private final PagedBitSet isChanged;
+
+    @NotNull
+    private int[] changed = new int[16];
+    private int numChanged = 0;
+
+    /**
+     * Buffer handed to the renderer while the other one is being filled.
+     */
+    @NotNull
+    private int[] draining = new int[16];
+
+    /**
+     * Cells which have been marked since the last {@link ChangeTracker#publish()}, which may repeat. Only accessed by the
+     * thread which changes the map.
+     */
+    @NotNull
+    private int[] staged = new int[16];
+    private int numStaged = 0;
+
+    /**
+     * @param numCells Number of cells of the map.
+     */
+    ChangeTracker(int numCells) {
+        isChanged = new PagedBitSet(numCells);
+    }
+
+    /**
+     * Marks a cell as changed. The cell is staged until the next {@link ChangeTracker#publish()}.
+     *
+     * @param index Index of the cell.
+     */
+    void mark(int index) {
+        if (numStaged == staged.length) {
+            var grown = new int[staged.length * 2];
+            System.arraycopy(staged, 0, grown, 0, numStaged);
+            staged = grown;
+        }
+        staged[numStaged++] = index;
+    }
+
+    /**
+     * @return Indices of the staged cells, in the first {@link ChangeTracker#getNumStaged()} elements.
+     */
+    @NotNull
+    int[] getStaged() {
+        return staged;
+    }
+
+    /**
+     * @return Number of staged cells.
+     */
+    int getNumStaged() {
+        return numStaged;
+    }
+
+    /**
+     * Makes the staged cells visible to the renderer. Must be called after the snapshot containing them is published.
+     */
+    synchronized void publish() {
+        for (int i = 0; i < numStaged; ++i) {
+            add(staged[i]);
+        }
+        numStaged = 0;
+    }
+
+    private void add(int index) {
+        if (isChanged.get(index)) {
+            return;
+        }
+
+        isChanged.set(index);
+        if (numChanged == changed.length) {
+            var grown = new int[changed.length * 2];
+            System.arraycopy(changed, 0, grown, 0, numChanged);
+            changed = grown;
+        }
+        changed[numChanged++] = index;
+    }
+
+    /**
+     * Passes every changed cell to {@code action}, and clears the set.
+     *
+     * <p>
+     * Cells which change while {@code action} runs are kept for the next call. This method must not be called by more
+     * than one thread at a time.
+     * </p>
+     *
+     * @param action Action to run with the index of each changed cell.
+     * @return Number of changed cells.
+     */
+    public int drain(@NotNull IntConsumer action) {
+        final int[] indices;
+        final int count;
+        synchronized (this) {
+            indices = changed;
+            count = numChanged;
+            for (int i = 0; i < count; ++i) {
+                isChanged.clear(indices[i]);
+            }
+
+            changed = draining.length >= indices.length ? draining : new int[indices.length];
+            numChanged = 0;
+            draining = indices;
+        }
+
+        for (int i = 0; i < count; ++i) {
+            action.accept(indices[i]);
+        }
+        return count;
+    }
+
+    /**
+     * Clears the set without visiting the cells, e.g. when the whole map is about to be drawn.
+     */
+    public synchronized void clear() {
+        for (int i = 0; i < numChanged; ++i) {
+            isChanged.clear(changed[i]);
+        }
+        numChanged = 0;
+    }
+}
@@ -0,0 +1,290 @@
+package models.map;
+
+import org.jetbrains.annotations.NotNull;
+import util.Direction;
+
+import java.util.Arrays;
+
+/**
+ * Incrementally maintained connectivity between the cells of a {@link Map}.
+ *
+ * <p>
+ * Neighbouring cells are joined in a union-find structure whenever they are linked (see
+ * {@link ConnectivityIndex#isLinked(byte, Direction, byte)}). Whether the source and the sink are connected is
+ * recomputed after every change, so querying it is constant-time.
+ * </p>
+ *
+ * <p>
+ * Each placed pipe opens a checkpoint. Undoing the most recently placed pipe rolls the structure back to that
+ * checkpoint. For this reason, paths are never compressed, and union by rank keeps each lookup logarithmic instead.
+ * Undoing any other pipe rebuilds the structure from the grid.
+ * </p>
+ *
+ * <p>
+ * Only pipe and termination cells are ever joined, so the parents and ranks are stored in pages which are allocated on
+ * first write, and rebuilding only visits those cells. A huge map with few pipes therefore needs little memory.
+ * </p>
+ */
+class ConnectivityIndex {
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    @NotNull
+    private final PackedGrid grid;
+    private final int sourceIndex;
+    private final int sinkIndex;
+
+    private static final int PAGE_BITS = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    /**
+     * Pages of the parent of each cell plus one, or {@code 0} if the cell is a root. This way, a new page is a valid
+     * forest, and a page which has not been allocated holds only roots.
+     */
+    @NotNull
+    private final int[][] parentPages;
+    /**
+     * Pages of the rank of each root, allocated together with the page of parents.
+     */
+    @NotNull
+    private final byte[][] rankPages;
+
+    /**
+     * Cells which were attached to another root, in the order of the unions. The value is negated (using {@code ~}) if
+     * the union also incremented the rank of the new root.
+     */
+    @NotNull
+    private int[] unionLog = new int[16];
+    private int unionLogSize = 0;
+
+    /**
+     * Size of {@link ConnectivityIndex#unionLog} before each placement.
+     */
+    @NotNull
+    private int[] checkpointLogSizes = new int[16];
+    /**
+     * Cell placed at each checkpoint.
+     */
+    @NotNull
+    private int[] checkpointCells = new int[16];
+    /**
+     * Whether the source and sink were connected before each placement.
+     */
+    @NotNull
+    private boolean[] checkpointConnected = new boolean[16];
+    private int numCheckpoints = 0;
+
+    private boolean connected;
+
+    /**
+     * @param grid        Cells of the map.
+     * @param sourceIndex Index of the source cell.
+     * @param sinkIndex   Index of the sink cell.
+     */
+    ConnectivityIndex(@NotNull PackedGrid grid, int sourceIndex, int sinkIndex) {
+        this.grid = grid;
+        this.sourceIndex = sourceIndex;
+        this.sinkIndex = sinkIndex;
+        final int numPages = (int) (((long) grid.getRows() * grid.getCols() + PAGE_MASK) >>> PAGE_BITS);
+        this.parentPages = new int[numPages][];
+        this.rankPages = new byte[numPages][];
+
+        rebuild();
+    }
+
+    /**
+     * @return Whether the source is connected to the sink.
+     */
+    boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * Updates the structure after a pipe has been placed.
+     *
+     * @param index Index of the cell which the pipe is placed in.
+     */
+    void onPlace(int index) {
+        pushCheckpoint(index);
+
+        final int row = index / grid.getCols();
+        final int col = index % grid.getCols();
+        final byte code = grid.get(index);
+
+        for (Direction d : DIRECTIONS) {
+            final int newRow = row + d.getRowOffset();
+            final int newCol = col + d.getColOffset();
+            if (grid.inBounds(newRow, newCol) && isLinked(code, d, grid.get(newRow, newCol))) {
+                union(index, grid.index(newRow, newCol));
+            }
+        }
+
+        connected = find(sourceIndex) == find(sinkIndex);
+    }
+
+    /**
+     * Updates the structure after a pipe has been removed.
+     *
+     * @param index Index of the cell which the pipe is removed from.
+     */
+    void onUndo(int index) {
+        if (numCheckpoints == 0 || checkpointCells[numCheckpoints - 1] != index) {
+            rebuild();
+            return;
+        }
+
+        --numCheckpoints;
+        final int targetLogSize = checkpointLogSizes[numCheckpoints];
+        while (unionLogSize > targetLogSize) {
+            final int entry = unionLog[--unionLogSize];
+            final int child = entry < 0 ? ~entry : entry;
+            final int root = parent(child) - 1;
+
+            setParent(child, 0);
+            if (entry < 0) {
+                setRank(root, (byte) (rank(root) - 1));
+            }
+        }
+        connected = checkpointConnected[numCheckpoints];
+    }
+
+    /**
+     * Rebuilds the structure from the current state of the grid, discarding all checkpoints.
+     */
+    private void rebuild() {
+        Arrays.fill(parentPages, null);
+        Arrays.fill(rankPages, null);
+        unionLogSize = 0;
+        numCheckpoints = 0;
+
+        // only pipe and termination cells can be linked
+        grid.forEachPipeOrTermination(index -> {
+            final int r = index / grid.getCols();
+            final int c = index % grid.getCols();
+            final byte code = grid.get(index);
+            if (c + 1 < grid.getCols() && isLinked(code, Direction.RIGHT, grid.get(r, c + 1))) {
+                union(index, grid.index(r, c + 1));
+            }
+            if (r + 1 < grid.getRows() && isLinked(code, Direction.DOWN, grid.get(r + 1, c))) {
+                union(index, grid.index(r + 1, c));
+            }
+        });
+
+        connected = find(sourceIndex) == find(sinkIndex);
+    }
+
+    /**
+     * Checks whether water can pass between two neighbouring cells.
+     *
+     * <p>
+     * Two pipes are linked if their openings face each other. A source is linked to the pipe it points into if the
+     * pipe opens towards the source. A sink is linked to any pipe which opens towards it.
+     * </p>
+     *
+     * @param from Code of the first cell.
+     * @param d    Direction from the first cell to the second cell.
+     * @param to   Code of the second cell.
+     * @return Whether the two cells are linked. The result is the same when the cells are swapped.
+     */
+    static boolean isLinked(byte from, @NotNull Direction d, byte to) {
+        if (PackedGrid.kind(from) == PackedGrid.KIND_PIPE) {
+            if (!PackedGrid.connectsTo(from, d)) {
+                return false;
+            }
+
+            if (PackedGrid.kind(to) == PackedGrid.KIND_PIPE) {
+                return PackedGrid.connectsTo(to, d.getOpposite());
+            } else if (PackedGrid.isSource(to)) {
+                return PackedGrid.direction(to) == d.getOpposite();
+            } else {
+                return PackedGrid.isSink(to);
+            }
+        } else if (PackedGrid.isSource(from)) {
+            if (PackedGrid.direction(from) != d) {
+                return false;
+            }
+            return PackedGrid.connectsTo(to, d.getOpposite()) || PackedGrid.isSink(to);
+        } else if (PackedGrid.isSink(from)) {
+            return isLinked(to, d.getOpposite(), from);
+        }
+
+        return false;
+    }
+
+    private int find(int index) {
+        int p;
+        while ((p = parent(index)) != 0) {
+            index = p - 1;
+        }
+        return index;
+    }
+
+    private void union(int a, int b) {
+        int rootA = find(a);
+        int rootB = find(b);
+        if (rootA == rootB) {
+            return;
+        }
+
+        if (rank(rootA) < rank(rootB)) {
+            final int tmp = rootA;
+            rootA = rootB;
+            rootB = tmp;
+        }
+
+        setParent(rootB, rootA + 1);
+        if (rank(rootA) == rank(rootB)) {
+            setRank(rootA, (byte) (rank(rootA) + 1));
+            logUnion(~rootB);
+        } else {
+            logUnion(rootB);
+        }
+    }
+
+    private int parent(int index) {
+        final var page = parentPages[index >>> PAGE_BITS];
+        return page == null ? 0 : page[index & PAGE_MASK];
+    }
+
+    private byte rank(int index) {
+        final var page = rankPages[index >>> PAGE_BITS];
+        return page == null ? 0 : page[index & PAGE_MASK];
+    }
+
+    private void setParent(int index, int value) {
+        allocatePage(index >>> PAGE_BITS);
+        parentPages[index >>> PAGE_BITS][index & PAGE_MASK] = value;
+    }
+
+    private void setRank(int index, byte value) {
+        allocatePage(index >>> PAGE_BITS);
+        rankPages[index >>> PAGE_BITS][index & PAGE_MASK] = value;
+    }
+
+    private void allocatePage(int page) {
+        if (parentPages[page] == null) {
+            parentPages[page] = new int[PAGE_SIZE];
+            rankPages[page] = new byte[PAGE_SIZE];
+        }
+    }
+
+    private void logUnion(int entry) {
+        if (unionLogSize == unionLog.length) {
+            unionLog = Arrays.copyOf(unionLog, unionLog.length * 2);
+        }
+        unionLog[unionLogSize++] = entry;
+    }
+
+    private void pushCheckpoint(int index) {
+        if (numCheckpoints == checkpointCells.length) {
+            checkpointLogSizes = Arrays.copyOf(checkpointLogSizes, numCheckpoints * 2);
+            checkpointCells = Arrays.copyOf(checkpointCells, numCheckpoints * 2);
+            checkpointConnected = Arrays.copyOf(checkpointConnected, numCheckpoints * 2);
+        }
+        checkpointLogSizes[numCheckpoints] = unionLogSize;
+        checkpointCells[numCheckpoints] = index;
+        checkpointConnected[numCheckpoints] = connected;
+        ++numCheckpoints;
+    }
+}
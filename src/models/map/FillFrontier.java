@@ -0,0 +1,143 @@
+package models.map;
+
+import org.jetbrains.annotations.NotNull;
+import util.Direction;
+
+/**
+ * Wavefront of the water flow in a {@link Map}.
+ *
+ * <p>
+ * Instead of re-scanning every filled tile on each step, only the tiles at the edge of the water are kept. A filled
+ * tile stays on the frontier while one of its connections still leads to an empty cell or an unfilled pipe, since a
+ * matching pipe may be placed there later. Whether a tile is filled is read from the filled bit of the
+ * {@link PackedGrid}.
+ * </p>
+ */
+class FillFrontier {
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    @NotNull
+    private final PackedGrid grid;
+    @NotNull
+    private final ChangeTracker changes;
+
+    /**
+     * Tiles which may still spread water to their neighbours.
+     */
+    @NotNull
+    private int[] frontier = new int[16];
+    private int frontierSize = 0;
+
+    /**
+     * Scratch buffer for building the next frontier.
+     */
+    @NotNull
+    private int[] next = new int[16];
+    private int nextSize = 0;
+
+    /**
+     * @param grid    Cells of the map. The grid is read on every step, so later modifications are picked up.
+     * @param changes Tracker to record newly filled tiles in.
+     */
+    FillFrontier(@NotNull PackedGrid grid, @NotNull ChangeTracker changes) {
+        this.grid = grid;
+        this.changes = changes;
+    }
+
+    /**
+     * Fills the pipe at {@code index} and makes it the only tile of the frontier.
+     *
+     * @param index Index of the first tile.
+     */
+    void seed(int index) {
+        frontierSize = 0;
+        nextSize = 0;
+        fill(index);
+        swapBuffers();
+    }
+
+    /**
+     * Spreads the water by one tile from every tile on the frontier.
+     *
+     * <p>
+     * Tiles filled during this step are not expanded until the next step.
+     * </p>
+     *
+     * @return Number of newly filled tiles.
+     */
+    int step() {
+        nextSize = 0;
+        int newlyFilled = 0;
+
+        for (int i = 0; i < frontierSize; ++i) {
+            final int index = frontier[i];
+            final int row = index / grid.getCols();
+            final int col = index % grid.getCols();
+
+            final byte code = grid.get(index);
+            if (PackedGrid.kind(code) != PackedGrid.KIND_PIPE) {
+                throw new IllegalStateException();
+            }
+            final var shape = PackedGrid.shape(code);
+            boolean pending = false;
+
+            for (Direction d : DIRECTIONS) {
+                if (!shape.connectsTo(d)) {
+                    continue;
+                }
+
+                final int newRow = row + d.getRowOffset();
+                final int newCol = col + d.getColOffset();
+                if (!grid.inBounds(newRow, newCol)) {
+                    continue;
+                }
+
+                final int newIndex = grid.index(newRow, newCol);
+                final byte newCode = grid.get(newIndex);
+                final int kind = PackedGrid.kind(newCode);
+
+                if (kind == PackedGrid.KIND_EMPTY) {
+                    pending = true;
+                } else if (kind == PackedGrid.KIND_PIPE && !PackedGrid.isFilled(newCode)) {
+                    if (PackedGrid.connectsTo(newCode, d.getOpposite())) {
+                        fill(newIndex);
+                        ++newlyFilled;
+                    } else {
+                        pending = true;
+                    }
+                }
+            }
+
+            if (pending) {
+                append(index);
+            }
+        }
+
+        swapBuffers();
+        return newlyFilled;
+    }
+
+    private void fill(int index) {
+        grid.setFilled(index);
+        changes.mark(index);
+        append(index);
+    }
+
+    private void append(int index) {
+        if (nextSize == next.length) {
+            var grown = new int[next.length * 2];
+            System.arraycopy(next, 0, grown, 0, nextSize);
+            next = grown;
+        }
+        next[nextSize++] = index;
+    }
+
+    private void swapBuffers() {
+        final var tmp = frontier;
+        frontier = next;
+        frontierSize = nextSize;
+        next = tmp;
+        nextSize = 0;
+    }
+}
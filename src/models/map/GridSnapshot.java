@@ -0,0 +1,286 @@
+package models.map;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Immutable version of the cells of a {@link Map}.
+ *
+ * <p>
+ * The cells are stored in a persistent trie. Leaves hold {@link GridSnapshot#LEAF_SIZE} consecutive cells, and each
+ * inner node has up to 32 children. A new version copies only the leaves containing changed cells and the inner nodes
+ * on their paths to the root, and shares every other node with the version it was made from. Changing one cell
+ * therefore takes memory proportional to the depth of the trie, which is at most 5 for any map.
+ * </p>
+ *
+ * <p>
+ * Leaves and subtries whose cells all hold their default code are shared. For dense grids the default code is
+ * {@link PackedGrid#EMPTY}. For sparse grids it is the initial code of {@link PackedGrid#sparse(int, int)}, i.e. walls
+ * on the border, which {@link GridSnapshot#get(int)} derives from the position of the cell. The first snapshot of a
+ * sparse grid therefore only copies the leaves of the chunks which have been written to, and skips every other subtrie
+ * without looking at its cells, so its size grows with the number of written cells rather than with the map.
+ * </p>
+ *
+ * <p>
+ * Versions never change once created, so any thread may read them without locks while the map keeps changing, and
+ * older versions stay readable for as long as they are referenced. {@link GridSnapshot#with(int, byte)} creates
+ * versions which are not part of the map, e.g. to explore moves without changing the game.
+ * </p>
+ */
+public final class GridSnapshot implements GridView {
+
+    private static final int LEAF_BITS = 8;
+    /**
+     * Number of cells in each leaf of the trie.
+     */
+    public static final int LEAF_SIZE = 1 << LEAF_BITS;
+    private static final int LEAF_MASK = LEAF_SIZE - 1;
+
+    private static final int BRANCH_BITS = 5;
+    private static final int BRANCH_SIZE = 1 << BRANCH_BITS;
+    private static final int BRANCH_MASK = BRANCH_SIZE - 1;
+
+    /**
+     * Shared leaf and subtries of every height whose cells are all {@link PackedGrid#EMPTY}. They are never modified,
+     * since versions only ever copy nodes.
+     */
+    private static final Object[] EMPTY_NODES = new Object[5];
+    /**
+     * Shared leaf whose cells all hold their default code.
+     */
+    private static final byte[] EMPTY_LEAF = new byte[LEAF_SIZE];
+
+    static {
+        Object child = EMPTY_LEAF;
+        for (int i = 0; i < EMPTY_NODES.length; ++i) {
+            final var node = new Object[BRANCH_SIZE];
+            Arrays.fill(node, child);
+            EMPTY_NODES[i] = node;
+            child = node;
+        }
+    }
+
+    private final int rows;
+    private final int cols;
+    private final long version;
+    /**
+     * Whether the cells of {@link GridSnapshot#EMPTY_LEAF} are the defaults of a sparse grid rather than
+     * {@link PackedGrid#EMPTY}.
+     */
+    private final boolean wallBorder;
+    /**
+     * Shift of the leaf number which selects a child of the root. Inner nodes hold {@code Object[]} children, and the
+     * nodes at shift 0 hold {@code byte[]} leaves.
+     */
+    private final int rootShift;
+    @NotNull
+    private final Object[] root;
+
+    private GridSnapshot(int rows, int cols, long version, boolean wallBorder, int rootShift, @NotNull Object[] root) {
+        this.rows = rows;
+        this.cols = cols;
+        this.version = version;
+        this.wallBorder = wallBorder;
+        this.rootShift = rootShift;
+        this.root = root;
+    }
+
+    /**
+     * Copies every cell of a grid into a new snapshot.
+     *
+     * @param grid Grid to copy.
+     * @return The first version of {@code grid}.
+     */
+    @NotNull
+    static GridSnapshot of(@NotNull PackedGrid grid) {
+        final int numLeaves = (grid.getRows() * grid.getCols() + LEAF_MASK) >>> LEAF_BITS;
+        int rootShift = 0;
+        while ((long) numLeaves > 1L << (rootShift + BRANCH_BITS)) {
+            rootShift += BRANCH_BITS;
+        }
+
+        if (grid.isSparse()) {
+            return new GridSnapshot(grid.getRows(), grid.getCols(), 0, true, rootShift, buildSparse(grid, rootShift));
+        }
+        return new GridSnapshot(grid.getRows(), grid.getCols(), 0, false, rootShift,
+                build(grid, rootShift, 0, numLeaves));
+    }
+
+    /**
+     * Builds the trie of a sparse grid, starting from the shared default subtrie and only copying the leaves which
+     * overlap the chunks that have been written to.
+     */
+    @NotNull
+    private static Object[] buildSparse(@NotNull PackedGrid grid, int rootShift) {
+        final var root = ((Object[]) EMPTY_NODES[rootShift / BRANCH_BITS]).clone();
+        grid.forEachWrittenRange((fromIndex, length) -> {
+            final int lastLeaf = (fromIndex + length - 1) >>> LEAF_BITS;
+            for (int leaf = fromIndex >>> LEAF_BITS; leaf <= lastLeaf; ++leaf) {
+                var node = root;
+                for (int shift = rootShift; shift > 0; shift -= BRANCH_BITS) {
+                    final int slot = (leaf >>> shift) & BRANCH_MASK;
+                    // a child which is still the shared default subtrie has not been copied yet
+                    if (node[slot] == EMPTY_NODES[shift / BRANCH_BITS - 1]) {
+                        node[slot] = ((Object[]) node[slot]).clone();
+                    }
+                    node = (Object[]) node[slot];
+                }
+
+                final int slot = leaf & BRANCH_MASK;
+                if (node[slot] == EMPTY_LEAF) {
+                    node[slot] = copyLeaf(grid, leaf);
+                }
+            }
+        });
+        return root;
+    }
+
+    /**
+     * Builds the subtrie covering the leaves from {@code firstLeaf}, sharing the parts which are empty.
+     */
+    @NotNull
+    private static Object[] build(@NotNull PackedGrid grid, int shift, int firstLeaf, int numLeaves) {
+        final var emptyNode = (Object[]) EMPTY_NODES[shift / BRANCH_BITS];
+        final var emptyChild = emptyNode[0];
+
+        final var node = new Object[BRANCH_SIZE];
+        boolean empty = true;
+        for (int i = 0; i < BRANCH_SIZE; ++i) {
+            final int leaf = firstLeaf + (i << shift);
+            if (leaf >= numLeaves) {
+                empty = false;
+                break;
+            }
+
+            if (shift != 0) {
+                node[i] = build(grid, shift - BRANCH_BITS, leaf, numLeaves);
+            } else if (leaf < numLeaves - 1 && grid.isEmpty(leaf << LEAF_BITS, LEAF_SIZE)) {
+                node[i] = emptyChild;
+            } else {
+                node[i] = copyLeaf(grid, leaf);
+            }
+            empty &= node[i] == emptyChild;
+        }
+        return empty ? emptyNode : node;
+    }
+
+    /**
+     * Creates the next version of the grid this snapshot was taken from.
+     *
+     * @param grid    Grid which this snapshot was taken from, after it has been changed.
+     * @param changed Indices of the cells which have changed since this snapshot was taken. Indices may repeat.
+     * @param count   Number of indices in {@code changed}.
+     * @return A snapshot of the current cells of {@code grid}, sharing the unchanged nodes with this snapshot.
+     */
+    @NotNull
+    GridSnapshot next(@NotNull PackedGrid grid, @NotNull int[] changed, int count) {
+        final var newRoot = root.clone();
+        for (int i = 0; i < count; ++i) {
+            final int leaf = changed[i] >>> LEAF_BITS;
+
+            // a child which is still shared with this version has not been copied yet
+            Object[] oldNode = root;
+            Object[] newNode = newRoot;
+            for (int shift = rootShift; shift > 0; shift -= BRANCH_BITS) {
+                final int slot = (leaf >>> shift) & BRANCH_MASK;
+                final var oldChild = (Object[]) oldNode[slot];
+                if (newNode[slot] == oldChild) {
+                    newNode[slot] = oldChild.clone();
+                }
+                oldNode = oldChild;
+                newNode = (Object[]) newNode[slot];
+            }
+
+            final int slot = leaf & BRANCH_MASK;
+            if (newNode[slot] == oldNode[slot]) {
+                newNode[slot] = copyLeaf(grid, leaf);
+            }
+        }
+        return new GridSnapshot(rows, cols, version + 1, wallBorder, rootShift, newRoot);
+    }
+
+    /**
+     * Creates a version of this snapshot with one cell changed. The new version is not published by the map.
+     *
+     * @param index Index of the cell.
+     * @param code  New code of the cell.
+     * @return A snapshot whose version is one greater than this one, sharing all other leaves with this snapshot.
+     */
+    @NotNull
+    public GridSnapshot with(int index, byte code) {
+        final int leaf = index >>> LEAF_BITS;
+        final var newRoot = root.clone();
+
+        var node = newRoot;
+        for (int shift = rootShift; shift > 0; shift -= BRANCH_BITS) {
+            final int slot = (leaf >>> shift) & BRANCH_MASK;
+            final var child = ((Object[]) node[slot]).clone();
+            node[slot] = child;
+            node = child;
+        }
+
+        final var leafCodes = (byte[]) node[leaf & BRANCH_MASK];
+        final var codes = leafCodes == EMPTY_LEAF && wallBorder ? defaultLeaf(leaf) : leafCodes.clone();
+        codes[index & LEAF_MASK] = code;
+        node[leaf & BRANCH_MASK] = codes;
+        return new GridSnapshot(rows, cols, version + 1, wallBorder, rootShift, newRoot);
+    }
+
+    /**
+     * @return A new leaf holding the default codes of a sparse grid.
+     */
+    @NotNull
+    private byte[] defaultLeaf(int leaf) {
+        final int from = leaf << LEAF_BITS;
+        final var codes = new byte[Math.min(LEAF_SIZE, rows * cols - from)];
+        for (int i = 0; i < codes.length; ++i) {
+            codes[i] = SparseCells.defaultCode(rows, cols, (from + i) / cols, (from + i) % cols);
+        }
+        return codes;
+    }
+
+    @NotNull
+    private static byte[] copyLeaf(@NotNull PackedGrid grid, int leaf) {
+        final int from = leaf << LEAF_BITS;
+        final var codes = new byte[Math.min(LEAF_SIZE, grid.getRows() * grid.getCols() - from)];
+        grid.copyTo(from, codes, codes.length);
+        return codes;
+    }
+
+    /**
+     * @return Number of versions published by the map before this one.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public int getRows() {
+        return rows;
+    }
+
+    @Override
+    public int getCols() {
+        return cols;
+    }
+
+    @Override
+    public byte get(int row, int col) {
+        return get(row * cols + col);
+    }
+
+    @Override
+    public byte get(int index) {
+        final int leaf = index >>> LEAF_BITS;
+        var node = root;
+        for (int shift = rootShift; shift > 0; shift -= BRANCH_BITS) {
+            node = (Object[]) node[(leaf >>> shift) & BRANCH_MASK];
+        }
+        final var codes = (byte[]) node[leaf & BRANCH_MASK];
+        if (codes == EMPTY_LEAF && wallBorder) {
+            return SparseCells.defaultCode(rows, cols, index / cols, index % cols);
+        }
+        return codes[index & LEAF_MASK];
+    }
+}
@@ -0,0 +1,34 @@
+package models.map;
+
+/**
+ * Read-only access to the cells of a map, encoded as in {@link PackedGrid}.
+ *
+ * <p>
+ * Cells are addressed either by (row, col) or by their index {@code row * cols + col}.
+ * </p>
+ */
+public interface GridView {
+
+    /**
+     * @return Number of rows.
+     */
+    int getRows();
+
+    /**
+     * @return Number of columns.
+     */
+    int getCols();
+
+    /**
+     * @param row Row of the cell.
+     * @param col Column of the cell.
+     * @return Code of the cell at (row, col).
+     */
+    byte get(int row, int col);
+
+    /**
+     * @param index Index of the cell.
+     * @return Code of the cell at {@code index}.
+     */
+    byte get(int index);
+}
@@ -1,36 +1,61 @@
 package models.map;
 
-import controllers.Renderer;
 import io.Deserializer;
-import javafx.application.Platform;
-import javafx.scene.canvas.Canvas;
 import models.map.cells.Cell;
 import models.map.cells.FillableCell;
 import models.map.cells.TerminationCell;
-import models.map.cells.Wall;
 import models.pipes.Pipe;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import util.Coordinate;
 import util.Direction;
 import util.StringUtils;
 
-import java.util.*;
+import java.util.SplittableRandom;
 
 /**
  * Map of the game.
+ *
+ * <p>
+ * The cells are stored in a {@link PackedGrid}. {@link Cell} objects are only created when requested through
+ * {@link Map#getCell(Coordinate)}. Huge generated maps use a sparse grid, which only stores the parts of the map that
+ * have been written to.
+ * </p>
+ *
+ * <p>
+ * Every cell which is placed, undone or filled is recorded in a {@link ChangeTracker}, so that only those cells need to
+ * be drawn again.
+ * </p>
+ *
+ * <p>
+ * At the end of each public method which changes the map, the map publishes a new {@link GridSnapshot}. Renderers and
+ * other observers read the latest snapshot from any thread without locks, and never see a change half-applied, while
+ * the map itself is only changed by one thread. The snapshots keep a second copy of the cells, whose unchanged parts
+ * are shared between versions. The most recent versions are kept in a {@link MapHistory}.
+ * </p>
  */
 public class Map {
 
     private final int rows;
     private final int cols;
     @NotNull
-    private final Cell[][] cells;
+    private final PackedGrid grid;
 
-    private TerminationCell sourceCell;
-    private TerminationCell sinkCell;
+    private int sourceIndex = -1;
+    private int sinkIndex = -1;
 
     @NotNull
-    private final Set<Coordinate> filledTiles = new HashSet<>();
+    private final FillFrontier fillFrontier;
+    @NotNull
+    private final ConnectivityIndex connectivity;
+    @NotNull
+    private final ChangeTracker changes;
+    @NotNull
+    private volatile GridSnapshot snapshot;
+    @NotNull
+    private final MapHistory history = new MapHistory(MapHistory.DEFAULT_CAPACITY);
+    @Nullable
+    private PathFinder pathFinder;
     private int prevFilledTiles = 0;
     private Integer prevFilledDistance;
 
@@ -45,32 +70,35 @@ public class Map {
      * @param cols Number of columns.
      */
     public Map(int rows, int cols) {
-        cells = new Cell[rows][cols];
-
-        for (int r = 0; r < rows; ++r) {
-            for (int c = 0; c < cols; ++c) {
-                var coord = new Coordinate(r, c);
+        this(rows, cols, new SplittableRandom());
+    }
 
-                if (r == 0 || c == 0) {
-                    cells[r][c] = new Wall(coord);
-                } else if (r == rows - 1 || c == cols - 1) {
-                    cells[r][c] = new Wall(coord);
-                } else {
-                    cells[r][c] = new FillableCell(coord);
-                }
-            }
-        }
+    /**
+     * Creates a map with size of rows x cols, whose source and sink are placed by the given random number generator.
+     *
+     * @param rows Number of rows.
+     * @param cols Number of columns.
+     * @param rng  Random number generator to place the source and sink with.
+     */
+    public Map(int rows, int cols, @NotNull SplittableRandom rng) {
+        grid = PackedGrid.withWallBorder(rows, cols);
 
         this.rows = rows;
         this.cols = cols;
 
-        TerminationCell.CreateInfo startCellInfo = generateStartCellInfo();
-        sourceCell = new TerminationCell(startCellInfo.coord, startCellInfo.dir, TerminationCell.Type.SOURCE);
-        cells[startCellInfo.coord.row][startCellInfo.coord.col] = sourceCell;
+        TerminationCell.CreateInfo startCellInfo = generateStartCellInfo(rng);
+        sourceIndex = grid.index(startCellInfo.coord.row, startCellInfo.coord.col);
+        grid.set(sourceIndex, PackedGrid.termination(startCellInfo.dir, TerminationCell.Type.SOURCE));
+
+        TerminationCell.CreateInfo sinkCellInfo = generateEndCellInfo(rng);
+        sinkIndex = grid.index(sinkCellInfo.coord.row, sinkCellInfo.coord.col);
+        grid.set(sinkIndex, PackedGrid.termination(sinkCellInfo.dir, TerminationCell.Type.SINK));
 
-        TerminationCell.CreateInfo sinkCellInfo = generateEndCellInfo();
-        sinkCell = new TerminationCell(sinkCellInfo.coord, sinkCellInfo.dir, TerminationCell.Type.SINK);
-        cells[sinkCellInfo.coord.row][sinkCellInfo.coord.col] = sinkCell;
+        changes = new ChangeTracker(rows * cols);
+        fillFrontier = new FillFrontier(grid, changes);
+        connectivity = new ConnectivityIndex(grid, sourceIndex, sinkIndex);
+        snapshot = GridSnapshot.of(grid);
+        history.add(snapshot);
     }
 
     /**
@@ -85,37 +113,48 @@ public class Map {
      * @param cells Cells to fill the map.
      */
     public Map(int rows, int cols, @NotNull Cell[][] cells) {
-        this.cells = cells;
+        this(PackedGrid.fromCells(rows, cols, cells));
+    }
 
-        this.rows = rows;
-        this.cols = cols;
+    /**
+     * Creates a map backed by the given grid.
+     *
+     * @param grid Cells of the map. The map takes ownership of the grid.
+     * @throws IllegalArgumentException If the grid does not have exactly one source and one sink.
+     */
+    public Map(@NotNull PackedGrid grid) {
+        this.grid = grid;
 
-        for (int r = 0; r < rows; ++r) {
-            for (int c = 0; c < cols; ++c) {
-                var cell = cells[r][c];
-
-                if (cell instanceof TerminationCell) {
-                    var tCell = (TerminationCell) cell;
-                    if (tCell.type == TerminationCell.Type.SOURCE) {
-                        if (sourceCell != null) {
-                            throw new IllegalArgumentException();
-                        } else {
-                            sourceCell = tCell;
-                        }
-                    } else if (tCell.type == TerminationCell.Type.SINK) {
-                        if (sinkCell != null) {
-                            throw new IllegalArgumentException();
-                        } else {
-                            sinkCell = tCell;
-                        }
-                    }
+        this.rows = grid.getRows();
+        this.cols = grid.getCols();
+
+        grid.forEachPipeOrTermination(i -> {
+            final byte code = grid.get(i);
+
+            if (PackedGrid.isSource(code)) {
+                if (sourceIndex != -1) {
+                    throw new IllegalArgumentException();
+                } else {
+                    sourceIndex = i;
+                }
+            } else if (PackedGrid.isSink(code)) {
+                if (sinkIndex != -1) {
+                    throw new IllegalArgumentException();
+                } else {
+                    sinkIndex = i;
                 }
             }
-        }
+        });
 
-        if (sourceCell == null || sinkCell == null) {
+        if (sourceIndex == -1 || sinkIndex == -1) {
             throw new IllegalArgumentException();
         }
+
+        changes = new ChangeTracker(rows * cols);
+        fillFrontier = new FillFrontier(grid, changes);
+        connectivity = new ConnectivityIndex(grid, sourceIndex, sinkIndex);
+        snapshot = GridSnapshot.of(grid);
+        history.add(snapshot);
     }
 
     /**
@@ -172,23 +211,37 @@ public class Map {
             return false;
         }
 
-        if (!(cells[row][col] instanceof FillableCell)) {
+        if (PackedGrid.kind(grid.get(row, col)) != PackedGrid.KIND_EMPTY) {
             return false;
         }
 
-        var cell = (FillableCell) (cells[row][col]);
-        if (cell.getPipe().isPresent()) {
-            return false;
-        }
-
-        cells[row][col] = new FillableCell(new Coordinate(row, col), p);
+        grid.set(row, col, PackedGrid.pipe(p.getShape()));
+        connectivity.onPlace(grid.index(row, col));
+        changes.mark(grid.index(row, col));
+        publish();
         return true;
     }
 
+    /**
+     * @param coord Coordinate of the cell.
+     * @return A {@link Cell} representing the current state of the cell at {@code coord}. Modifying the returned cell
+     * does not modify the map.
+     */
     @NotNull
-    private TerminationCell.CreateInfo generateStartCellInfo() {
-        Random rng = new Random();
+    public Cell getCell(@NotNull final Coordinate coord) {
+        return grid.getCell(coord.row, coord.col);
+    }
+
+    /**
+     * @param coord Coordinate of the cell.
+     * @return Whether the pipe or termination cell at {@code coord} is filled with water.
+     */
+    public boolean isFilled(@NotNull final Coordinate coord) {
+        return PackedGrid.isFilled(grid.get(coord.row, coord.col));
+    }
 
+    @NotNull
+    private TerminationCell.CreateInfo generateStartCellInfo(@NotNull SplittableRandom rng) {
         Coordinate coord;
         Direction direction;
 
@@ -236,9 +289,7 @@ public class Map {
     }
 
     @NotNull
-    private TerminationCell.CreateInfo generateEndCellInfo() {
-        Random rng = new Random();
-
+    private TerminationCell.CreateInfo generateEndCellInfo(@NotNull SplittableRandom rng) {
         Coordinate coord;
         Direction direction;
 
@@ -269,7 +320,7 @@ public class Map {
             }
 
             var adjacentCell = coord.add(direction.getOpposite().getOffset());
-            if (adjacentCell.equals(sourceCell.coord)) {
+            if (grid.index(adjacentCell.row, adjacentCell.col) == sourceIndex) {
                 continue;
             }
 
@@ -303,7 +354,9 @@ public class Map {
                 System.out.print(StringUtils.createPadding(padLength, ' '));
             }
 
-            Arrays.stream(cells[i]).forEachOrdered(elem -> System.out.print(elem.toSingleChar()));
+            for (int j = 0; j < cols; ++j) {
+                System.out.print(PackedGrid.toSingleChar(grid.get(i, j)));
+            }
 
             if (i != 0 && i != rows - 1) {
                 System.out.print(i);
@@ -316,12 +369,51 @@ public class Map {
     }
 
     /**
-     * Renders the map onto a {@link Canvas}.
-     *
-     * @param canvas Canvas to render to.
+     * @return Live cells of the map. The grid must not be modified, and must only be read by the thread which changes
+     * the map. Other threads should read {@link Map#getSnapshot()} instead.
      */
-    public void render(@NotNull Canvas canvas) {
-        Platform.runLater(() -> Renderer.renderMap(canvas, cells));
+    @NotNull
+    public PackedGrid getGrid() {
+        return grid;
+    }
+
+    /**
+     * @return The latest published snapshot of the cells. May be called from any thread.
+     */
+    @NotNull
+    public GridSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * @return The recently published snapshots of the cells. May be called from any thread.
+     */
+    @NotNull
+    public MapHistory getHistory() {
+        return history;
+    }
+
+    /**
+     * Publishes a snapshot of the cells changed since the last snapshot, then hands the changed cells to the
+     * {@link ChangeTracker}.
+     */
+    private void publish() {
+        final int numStaged = changes.getNumStaged();
+        if (numStaged == 0) {
+            return;
+        }
+
+        snapshot = snapshot.next(grid, changes.getStaged(), numStaged);
+        history.add(snapshot);
+        changes.publish();
+    }
+
+    /**
+     * @return Cells which have changed since they were last drawn.
+     */
+    @NotNull
+    public ChangeTracker getChanges() {
+        return changes;
     }
 
     /**
@@ -330,33 +422,39 @@ public class Map {
      * <p>
      * Effectively replaces the cell with an empty cell in the coordinate specified.
      * </p>
+     * <p>
+     * Undoing the most recently placed pipe is cheap. Undoing any other pipe rebuilds the connectivity of the map.
+     * </p>
      *
      * @param coord Coordinate to reset.
      * @throws IllegalArgumentException if the cell is not an instance of {@link FillableCell}.
      */
     public void undo(@NotNull final Coordinate coord) {
-        if (!(cells[coord.row][coord.col] instanceof FillableCell)) {
+        final int kind = PackedGrid.kind(grid.get(coord.row, coord.col));
+        if (kind != PackedGrid.KIND_EMPTY && kind != PackedGrid.KIND_PIPE) {
             throw new IllegalArgumentException("Cannot undo on non-FillableCell types!");
         }
-        cells[coord.row][coord.col] = new FillableCell(coord);
-    }
+        grid.set(coord.row, coord.col, PackedGrid.EMPTY);
+        changes.mark(grid.index(coord.row, coord.col));
 
-    public void fillBeginTile() {
-        sourceCell.setFilled();
+        if (kind == PackedGrid.KIND_PIPE) {
+            connectivity.onUndo(grid.index(coord.row, coord.col));
+        }
+        publish();
     }
 
-    @NotNull
-    private List<Coordinate> getTraversedCoords() {
-        return new ArrayList<>(filledTiles);
+    public void fillBeginTile() {
+        grid.setFilled(sourceIndex);
+        changes.mark(sourceIndex);
+        publish();
     }
 
     /**
      * Fills all pipes that are within {@code distance} units from the {@code sourceCell}.
      *
      * <p>
-     * Hint: There are two ways to approach this. You can either iteratively fill the tiles by distance (i.e. filling
-     * distance=0, distance=1, etc), or you can save the tiles you have already filled, and fill all adjacent cells of
-     * the already-filled tiles. Whichever method you choose is up to you, as long as the result is the same.
+     * The water is spread one distance unit at a time by {@link FillFrontier}, so each step only looks at the tiles on
+     * the edge of the water instead of every tile which has been filled so far.
      * </p>
      *
      * @param distance Distance to fill pipes.
@@ -370,121 +468,71 @@ public class Map {
             var currentDistance = prevFilledDistance + 1;
             prevFilledTiles = 0;
 
-            if (currentDistance == 0) {
-                filledTiles.add(sourceCell.coord);
-                prevFilledTiles = 1;
-            } else if (currentDistance == 1) {
-                var coord = sourceCell.coord;
-                var newCoord = coord.add(sourceCell.pointingTo.getOffset());
+            if (currentDistance == 1) {
+                final var pointingTo = PackedGrid.direction(grid.get(sourceIndex));
+                final int newRow = sourceIndex / cols + pointingTo.getRowOffset();
+                final int newCol = sourceIndex % cols + pointingTo.getColOffset();
 
-                if (!(cells[newCoord.row][newCoord.col] instanceof FillableCell)) {
-                    return;
-                }
-                var cell = (FillableCell) cells[newCoord.row][newCoord.col];
-                if (cell.getPipe().isEmpty()) {
-                    return;
-                }
-                if (Arrays.stream(cell.getPipe().get().getConnections()).noneMatch(it -> sourceCell.pointingTo == it.getOpposite())) {
-                    return;
+                if (!PackedGrid.connectsTo(grid.get(newRow, newCol), pointingTo.getOpposite())) {
+                    break;
                 }
 
-                cell.getPipe().get().setFilled();
-                filledTiles.add(newCoord);
+                fillFrontier.seed(grid.index(newRow, newCol));
                 prevFilledTiles = 1;
             } else {
-                final var traversedTiles = getTraversedCoords();
-
-                for (Coordinate c : traversedTiles) {
-                    if (!(cells[c.row][c.col] instanceof FillableCell)) {
-                        continue;
-                    }
-
-                    var tile = (FillableCell) cells[c.row][c.col];
-                    if (tile.getPipe().isEmpty()) {
-                        throw new IllegalStateException();
-                    }
-
-                    for (Direction d : tile.getPipe().get().getConnections()) {
-                        var newCoord = c.add(d.getOffset());
-
-                        if (!(cells[newCoord.row][newCoord.col] instanceof FillableCell)) {
-                            continue;
-                        }
-                        if (traversedTiles.stream().anyMatch(it -> it.equals(newCoord))) {
-                            continue;
-                        }
-                        var cell = (FillableCell) cells[newCoord.row][newCoord.col];
-                        if (cell.getPipe().isEmpty()) {
-                            continue;
-                        }
-                        if (Arrays.stream(cell.getPipe().get().getConnections()).noneMatch(it -> d == it.getOpposite())) {
-                            continue;
-                        }
-
-                        cell.getPipe().get().setFilled();
-                        filledTiles.add(newCoord);
-                    }
-                }
-
-                prevFilledTiles = filledTiles.size() - traversedTiles.size();
+                prevFilledTiles = fillFrontier.step();
             }
 
             prevFilledDistance = currentDistance;
         }
+        publish();
     }
 
     /**
      * Fills the source and sink tiles, as well as any tiles which can be reached from the source tile.
      */
     public void fillAll() {
-        // TODO
+        grid.setFilled(sourceIndex);
+        grid.setFilled(sinkIndex);
+        changes.mark(sourceIndex);
+        changes.mark(sinkIndex);
+
+        final var finder = getPathFinder();
+        finder.search(grid, sourceIndex, PathFinder.Mode.PIPES, false);
+        for (int i = 0; i < finder.getVisitedCount(); ++i) {
+            grid.setFilled(finder.getVisited(i));
+            changes.mark(finder.getVisited(i));
+        }
+        publish();
     }
 
     /**
      * Checks whether there exists a path from {@code sourceCell} to {@code sinkCell}.
      *
      * <p>
-     * Hint: This problem is similar to finding a specific node in a graph. As stated in the README, one of the ways you
-     * could approach this is to use Breadth-First Search.
+     * Two pipes are only connected if their openings face each other, which is the same rule used when filling the
+     * pipes with water.
+     * </p>
+     * <p>
+     * The connectivity is kept up to date by {@link ConnectivityIndex} whenever a pipe is placed or undone, so this
+     * check does not search the map.
      * </p>
      *
      * @return {@code true} if a path exists, else {@code false}.
      */
     public boolean checkPath() {
-        // BFS woohoo!
-        var coordsTraversed = new ArrayList<Coordinate>();
-
-        Queue<Coordinate> coordsToCheck = new LinkedList<>();
-        coordsToCheck.add(sourceCell.coord);
-
-        while (!coordsToCheck.isEmpty()) {
-            var thisCoord = coordsToCheck.remove();
-            if (coordsTraversed.stream().anyMatch(it -> it.equals(thisCoord))) {
-                continue;
-            }
-
-            var thisCell = cells[thisCoord.row][thisCoord.col];
-            if (thisCell instanceof TerminationCell) {
-                var thisTermCell = (TerminationCell) thisCell;
-                if (thisTermCell.type == TerminationCell.Type.SINK) {
-                    return true;
-                } else {
-                    coordsToCheck.add(thisTermCell.coord.add(thisTermCell.pointingTo.getOffset()));
-                }
-            }
-
-            if (thisCell instanceof FillableCell) {
-                ((FillableCell) thisCell).getPipe().ifPresent(pipe -> {
-                    for (Direction dir : pipe.getConnections()) {
-                        coordsToCheck.add(thisCoord.add(dir.getOffset()));
-                    }
-                });
-            }
+        return connectivity.isConnected();
+    }
 
-            coordsTraversed.add(thisCoord);
+    /**
+     * @return The {@link PathFinder} of this map, which is created on first use.
+     */
+    @NotNull
+    private PathFinder getPathFinder() {
+        if (pathFinder == null) {
+            pathFinder = new PathFinder(rows, cols);
         }
-
-        return false;
+        return pathFinder;
     }
 
     /**
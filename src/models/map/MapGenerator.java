@@ -0,0 +1,297 @@
+package models.map;
+
+import models.map.cells.TerminationCell;
+import org.jetbrains.annotations.NotNull;
+import util.Direction;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Generates maps which always have a path from the source to the sink.
+ *
+ * <p>
+ * The route is carved through a random spanning tree of a lattice of every other interior cell, which is built by a
+ * depth-first search. Lattice nodes are two cells apart, and the cell between two nodes which are joined in the tree is
+ * part of the route, so the route never touches itself. The source is placed at the root of the tree, and the sink is
+ * placed on the outer wall next to a node which is picked at random among those far enough away from the source, so
+ * the route is the unique tree path between them.
+ * </p>
+ *
+ * <p>
+ * Every other interior cell becomes a wall with the probability given by {@link MapGenerator#setWallDensity(double)}.
+ * If a minimum path length is set, the cells beside the route are also walled in, so that no shortcut through the
+ * open cells can make the shortest path shorter than the route.
+ * </p>
+ *
+ * <p>
+ * Generation takes time linear in the number of cells. Apart from the grid itself, it needs one byte for every
+ * lattice node, which is a quarter of a byte per cell. A map of 10000 x 10000 cells takes about five seconds.
+ * </p>
+ */
+public class MapGenerator {
+
+    /**
+     * Default probability of a cell which is not on the route to be a wall.
+     */
+    public static final double DEFAULT_WALL_DENSITY = 0.25;
+
+    /**
+     * Smallest number of rows and columns of a generated map, including the walls around it.
+     */
+    public static final int MIN_SIZE = 5;
+
+    /**
+     * Number of spanning trees to try before giving up on the path length and turn requirements.
+     */
+    private static final int MAX_ATTEMPTS = 8;
+
+    /**
+     * Value of a lattice node which has not been visited. Visited nodes hold {@code 1 +} the ordinal of the direction
+     * they were entered from their parent in, and the root holds {@link MapGenerator#ROOT}.
+     */
+    private static final byte UNVISITED = 0;
+    private static final byte ROOT = 5;
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    @NotNull
+    private final SplittableRandom rng;
+
+    private double wallDensity = DEFAULT_WALL_DENSITY;
+    private int minPathLength = 0;
+    private int minTurns = 0;
+
+    /**
+     * @param seed Seed of the generated maps. A generator creates the same sequence of maps for the same seed and
+     *             settings.
+     */
+    public MapGenerator(long seed) {
+        this.rng = new SplittableRandom(seed);
+    }
+
+    /**
+     * @param wallDensity Probability of a cell which is not on the route to be a wall, between 0 and 1.
+     * @throws IllegalArgumentException if {@code wallDensity} is out of range.
+     */
+    public void setWallDensity(double wallDensity) {
+        if (!(wallDensity >= 0 && wallDensity <= 1)) {
+            throw new IllegalArgumentException("Wall density must be between 0 and 1");
+        }
+        this.wallDensity = wallDensity;
+    }
+
+    /**
+     * @param minPathLength Smallest number of cells between the source and the sink on the shortest path.
+     * @throws IllegalArgumentException if {@code minPathLength} is negative.
+     */
+    public void setMinPathLength(int minPathLength) {
+        if (minPathLength < 0) {
+            throw new IllegalArgumentException("Minimum path length must not be negative");
+        }
+        this.minPathLength = minPathLength;
+    }
+
+    /**
+     * @param minTurns Smallest number of turns along the route, counting the turn into the sink.
+     * @throws IllegalArgumentException if {@code minTurns} is negative.
+     */
+    public void setMinTurns(int minTurns) {
+        if (minTurns < 0) {
+            throw new IllegalArgumentException("Minimum number of turns must not be negative");
+        }
+        this.minTurns = minTurns;
+    }
+
+    /**
+     * Generates a map.
+     *
+     * @param rows Number of rows, including the walls around the map.
+     * @param cols Number of columns, including the walls around the map.
+     * @return A new map with one source and one sink.
+     * @throws IllegalArgumentException if the map is smaller than {@link MapGenerator#MIN_SIZE} along either side.
+     * @throws IllegalStateException    if no route meets the minimum path length and number of turns.
+     */
+    @NotNull
+    public PackedGrid generate(int rows, int cols) {
+        if (rows < MIN_SIZE || cols < MIN_SIZE) {
+            throw new IllegalArgumentException("Generated maps must be at least " + MIN_SIZE + "x" + MIN_SIZE);
+        }
+
+        final int latticeRows = (rows - 1) / 2;
+        final int latticeCols = (cols - 1) / 2;
+        final var lattice = new byte[latticeRows * latticeCols];
+
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; ++attempt) {
+            if (attempt != 0) {
+                Arrays.fill(lattice, UNVISITED);
+            }
+
+            final int root = rng.nextInt(lattice.length);
+            final int sink = buildTree(lattice, latticeRows, latticeCols, rows, cols, root);
+            if (sink != -1) {
+                return carve(lattice, latticeCols, rows, cols, root, sink / 4, DIRECTIONS[sink % 4]);
+            }
+        }
+
+        throw new IllegalStateException("Cannot generate a " + rows + "x" + cols + " map with a path of at least "
+                + minPathLength + " cells and " + minTurns + " turns");
+    }
+
+    /**
+     * Builds a random spanning tree of the lattice by an iterative depth-first search from {@code root}, and picks the
+     * sink at random among the nodes next to the outer wall which meet the path length and turn requirements.
+     *
+     * <p>
+     * The search does not keep a stack. The path back to the root is followed through the direction each node was
+     * entered in, and the depth and number of turns of the current node are updated as the search moves.
+     * </p>
+     *
+     * @return {@code 4 * node + direction} of the node next to the sink and the direction of the sink from it, or
+     * {@code -1} if no node meets the requirements.
+     */
+    private int buildTree(@NotNull byte[] lattice, int latticeRows, int latticeCols, int rows, int cols, int root) {
+        final int minDepth = Math.max(1, (minPathLength + 1) / 2);
+
+        lattice[root] = ROOT;
+        int node = root;
+        int depth = 0;
+        int turns = 0;
+
+        int numCandidates = 0;
+        int chosen = -1;
+
+        while (true) {
+            final int row = node / latticeCols;
+            final int col = node % latticeCols;
+
+            Direction next = null;
+            int numNext = 0;
+            for (var d : DIRECTIONS) {
+                final int newRow = row + d.getRowOffset();
+                final int newCol = col + d.getColOffset();
+                if (newRow >= 0 && newRow < latticeRows && newCol >= 0 && newCol < latticeCols
+                        && lattice[newRow * latticeCols + newCol] == UNVISITED && rng.nextInt(++numNext) == 0) {
+                    next = d;
+                }
+            }
+
+            if (next != null) {
+                if (node != root && enteredIn(lattice[node]) != next) {
+                    ++turns;
+                }
+                ++depth;
+                node += next.getRowOffset() * latticeCols + next.getColOffset();
+                lattice[node] = (byte) (1 + next.ordinal());
+
+                if (depth < minDepth) {
+                    continue;
+                }
+
+                // the node may be next to the outer wall on up to two sides
+                final int cellRow = 1 + 2 * (node / latticeCols);
+                final int cellCol = 1 + 2 * (node % latticeCols);
+                for (var d : DIRECTIONS) {
+                    if (cellRow + d.getRowOffset() <= 0 || cellRow + d.getRowOffset() >= rows - 1
+                            || cellCol + d.getColOffset() <= 0 || cellCol + d.getColOffset() >= cols - 1) {
+                        final int totalTurns = turns + (d != next ? 1 : 0);
+                        if (totalTurns >= minTurns && rng.nextInt(++numCandidates) == 0) {
+                            chosen = 4 * node + d.ordinal();
+                        }
+                    }
+                }
+            } else {
+                if (node == root) {
+                    break;
+                }
+
+                final var in = enteredIn(lattice[node]);
+                node -= in.getRowOffset() * latticeCols + in.getColOffset();
+                if (node != root && enteredIn(lattice[node]) != in) {
+                    --turns;
+                }
+                --depth;
+            }
+        }
+
+        return chosen;
+    }
+
+    /**
+     * Creates the map: scatters walls, then carves the route from the sink back to the source along the tree.
+     */
+    @NotNull
+    private PackedGrid carve(@NotNull byte[] lattice, int latticeCols, int rows, int cols, int root, int sinkNode,
+                             @NotNull Direction sinkDirection) {
+        final var grid = new PackedGrid(rows, cols);
+        for (int r = 0; r < rows; ++r) {
+            if (r == 0 || r == rows - 1) {
+                grid.fill(grid.index(r, 0), grid.index(r, cols), PackedGrid.WALL);
+                continue;
+            }
+
+            grid.set(r, 0, PackedGrid.WALL);
+            grid.set(r, cols - 1, PackedGrid.WALL);
+            if (wallDensity > 0) {
+                for (int c = 1; c < cols - 1; ++c) {
+                    if (rng.nextDouble() < wallDensity) {
+                        grid.set(r, c, PackedGrid.WALL);
+                    }
+                }
+            }
+        }
+
+        final boolean walledIn = minPathLength > 0;
+
+        int node = sinkNode;
+        var out = sinkDirection;
+        int cellRow = 1 + 2 * (node / latticeCols);
+        int cellCol = 1 + 2 * (node % latticeCols);
+        grid.set(cellRow + out.getRowOffset(), cellCol + out.getColOffset(),
+                PackedGrid.termination(out, TerminationCell.Type.SINK));
+
+        while (node != root) {
+            final var in = enteredIn(lattice[node]);
+            grid.set(cellRow, cellCol, PackedGrid.EMPTY);
+            if (walledIn) {
+                wallAround(grid, cellRow, cellCol, in.getOpposite(), out);
+            }
+
+            cellRow -= in.getRowOffset();
+            cellCol -= in.getColOffset();
+            grid.set(cellRow, cellCol, PackedGrid.EMPTY);
+            if (walledIn) {
+                wallAround(grid, cellRow, cellCol, in.getOpposite(), in);
+            }
+
+            cellRow -= in.getRowOffset();
+            cellCol -= in.getColOffset();
+            node -= in.getRowOffset() * latticeCols + in.getColOffset();
+            out = in;
+        }
+
+        grid.set(cellRow, cellCol, PackedGrid.termination(out, TerminationCell.Type.SOURCE));
+        return grid;
+    }
+
+    /**
+     * Turns the neighbors of a route cell into walls, except the previous and next cells of the route.
+     */
+    private static void wallAround(@NotNull PackedGrid grid, int row, int col, @NotNull Direction keep1,
+                                   @NotNull Direction keep2) {
+        for (var d : DIRECTIONS) {
+            if (d != keep1 && d != keep2) {
+                grid.set(row + d.getRowOffset(), col + d.getColOffset(), PackedGrid.WALL);
+            }
+        }
+    }
+
+    /**
+     * @param value Value of a visited lattice node other than the root.
+     * @return Direction which the node was entered in from its parent.
+     */
+    @NotNull
+    private static Direction enteredIn(byte value) {
+        return DIRECTIONS[value - 1];
+    }
+}
@@ -0,0 +1,89 @@
+package models.map;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The most recent versions of the cells of a {@link Map}, e.g. for replaying a game.
+ *
+ * <p>
+ * Versions are kept in a ring, so once {@link MapHistory#getCapacity()} newer versions have been published, the oldest
+ * one is evicted. Since consecutive versions share most of their nodes, each version only costs the leaves it changed.
+ * </p>
+ *
+ * <p>
+ * Versions are added by the thread which changes the map, and may be read from any thread without locks.
+ * </p>
+ */
+public class MapHistory {
+
+    /**
+     * Number of versions kept by the history of a map.
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    @NotNull
+    private final AtomicReferenceArray<GridSnapshot> versions;
+
+    /*** Version of the latest snapshot which has been added.*/
+    private volatile long latest = -1;
+
+    /**
+     * @param capacity Number of versions to keep.
+     * @throws IllegalArgumentException if {@code capacity} is not positive.
+     */
+    public MapHistory(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        versions = new AtomicReferenceArray<>(capacity);
+    }
+
+    /**
+     * Adds the next version, evicting the oldest one if the history is full.
+     *
+     * @param snapshot Snapshot whose version is one greater than the latest one.
+     */
+    void add(@NotNull GridSnapshot snapshot) {
+        versions.set((int) (snapshot.getVersion() % versions.length()), snapshot);
+        latest = snapshot.getVersion();
+    }
+
+    /**
+     * @param version Version to get.
+     * @return The snapshot of the given version, or {@code null} if it has been evicted or has not been published yet.
+     */
+    @Nullable
+    public GridSnapshot get(long version) {
+        if (version < 0 || version > latest) {
+            return null;
+        }
+
+        // the slot may already hold a newer version, which means the requested one is evicted
+        final var snapshot = versions.get((int) (version % versions.length()));
+        return snapshot != null && snapshot.getVersion() == version ? snapshot : null;
+    }
+
+    /**
+     * @return The oldest version which is still kept.
+     */
+    public long getOldestVersion() {
+        return Math.max(0, latest - versions.length() + 1);
+    }
+
+    /**
+     * @return The latest version.
+     */
+    public long getLatestVersion() {
+        return latest;
+    }
+
+    /**
+     * @return Number of versions kept.
+     */
+    public int getCapacity() {
+        return versions.length();
+    }
+}
@@ -0,0 +1,562 @@
+package models.map;
+
+import models.map.cells.Cell;
+import models.map.cells.FillableCell;
+import models.map.cells.TerminationCell;
+import models.map.cells.Wall;
+import models.pipes.Pipe;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import util.Coordinate;
+import util.Direction;
+import util.PipePatterns;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Packed storage of the cells of a {@link Map}, using one byte per cell.
+ *
+ * <p>
+ * Each cell is encoded as follows:
+ * </p>
+ * <ul>
+ * <li>Bits 0-1: Kind of cell, one of {@link PackedGrid#KIND_EMPTY}, {@link PackedGrid#KIND_WALL},
+ * {@link PackedGrid#KIND_PIPE} or {@link PackedGrid#KIND_TERMINATION}.</li>
+ * <li>Bits 2-4: For pipes, the ordinal of the {@link Pipe.Shape}.</li>
+ * <li>Bits 2-3: For termination cells, the ordinal of the {@link Direction} it is pointing to.</li>
+ * <li>Bit 4: For termination cells, whether it is a sink.</li>
+ * <li>Bit 5: Whether the pipe or termination cell is filled.</li>
+ * </ul>
+ *
+ * <p>
+ * Cells are addressed either by (row, col) or by their index {@code row * cols + col}. {@link Cell} objects are only
+ * created on demand by {@link PackedGrid#getCell(int, int)}.
+ * </p>
+ *
+ * <p>
+ * Cells are stored densely in a single array, unless the grid is created by {@link PackedGrid#sparse(int, int)}. Sparse
+ * grids use {@link SparseCells}, which only allocates the parts of huge maps that are not empty, at the cost of a hash
+ * lookup on every access. Either way, a grid has fewer than 2^31 cells, so that every cell has an {@code int} index.
+ * </p>
+ */
+public class PackedGrid implements GridView {
+
+    public static final int KIND_EMPTY = 0;
+    public static final int KIND_WALL = 1;
+    public static final int KIND_PIPE = 2;
+    public static final int KIND_TERMINATION = 3;
+
+    /**
+     * Number of distinct cell codes, for building lookup tables indexed by code.
+     */
+    public static final int NUM_CODES = 1 << 6;
+
+    /**
+     * Smallest number of cells for which {@link PackedGrid#withWallBorder(int, int)} creates a sparse grid.
+     */
+    public static final int SPARSE_THRESHOLD = 1 << 24;
+
+    /**
+     * Code of a {@link FillableCell} without a pipe.
+     */
+    public static final byte EMPTY = KIND_EMPTY;
+    /**
+     * Code of a {@link Wall}.
+     */
+    public static final byte WALL = KIND_WALL;
+
+    private static final int KIND_MASK = 0b11;
+    private static final int SHAPE_SHIFT = 2;
+    private static final int SHAPE_MASK = 0b111;
+    private static final int DIRECTION_SHIFT = 2;
+    private static final int DIRECTION_MASK = 0b11;
+    private static final int SINK_FLAG = 1 << 4;
+    private static final int FILLED_FLAG = 1 << 5;
+
+    private static final Pipe.Shape[] SHAPES = Pipe.Shape.values();
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final int rows;
+    private final int cols;
+    /*** Cells of a dense grid, or {@code null} if the grid is sparse.*/
+    @Nullable
+    private final byte[] cells;
+    /*** Cells of a sparse grid, or {@code null} if the grid is dense.*/
+    @Nullable
+    private final SparseCells sparseCells;
+
+    /**
+     * Creates a grid of size rows x cols, where all cells are {@link PackedGrid#EMPTY}.
+     *
+     * @param rows Number of rows.
+     * @param cols Number of columns.
+     * @throws IllegalArgumentException if the grid would have 2^31 cells or more.
+     */
+    public PackedGrid(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+        this.cells = new byte[numCells(rows, cols)];
+        this.sparseCells = null;
+    }
+
+    private PackedGrid(int rows, int cols, @NotNull SparseCells sparseCells) {
+        this.rows = rows;
+        this.cols = cols;
+        this.cells = null;
+        this.sparseCells = sparseCells;
+    }
+
+    /**
+     * Creates a sparse grid of size rows x cols, whose outer border is made of walls and all other cells are
+     * {@link PackedGrid#EMPTY}.
+     *
+     * @param rows Number of rows.
+     * @param cols Number of columns.
+     * @return A grid which takes no memory for cells holding their initial codes.
+     * @throws IllegalArgumentException if the grid would have 2^31 cells or more.
+     */
+    @NotNull
+    public static PackedGrid sparse(int rows, int cols) {
+        numCells(rows, cols);
+        return new PackedGrid(rows, cols, new SparseCells(rows, cols));
+    }
+
+    /**
+     * Creates a grid of size rows x cols, whose outer border is made of walls and all other cells are
+     * {@link PackedGrid#EMPTY}. The grid is sparse if it has at least {@link PackedGrid#SPARSE_THRESHOLD} cells.
+     *
+     * @param rows Number of rows.
+     * @param cols Number of columns.
+     * @return A new grid.
+     * @throws IllegalArgumentException if the grid would have 2^31 cells or more.
+     */
+    @NotNull
+    public static PackedGrid withWallBorder(int rows, int cols) {
+        if (numCells(rows, cols) >= SPARSE_THRESHOLD) {
+            return sparse(rows, cols);
+        }
+
+        final var grid = new PackedGrid(rows, cols);
+        grid.fill(0, cols, WALL);
+        grid.fill(grid.index(rows - 1, 0), grid.index(rows - 1, cols), WALL);
+        for (int r = 1; r < rows - 1; ++r) {
+            grid.set(r, 0, WALL);
+            grid.set(r, cols - 1, WALL);
+        }
+        return grid;
+    }
+
+    private static int numCells(int rows, int cols) {
+        try {
+            return Math.multiplyExact(rows, cols);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("A map of " + rows + "x" + cols + " has too many cells");
+        }
+    }
+
+    /**
+     * Packs an array of cells into a grid.
+     *
+     * @param rows  Number of rows.
+     * @param cols  Number of columns.
+     * @param cells Cells to pack.
+     * @return A grid containing the same cells as {@code cells}.
+     */
+    @NotNull
+    public static PackedGrid fromCells(int rows, int cols, @NotNull Cell[][] cells) {
+        final var grid = new PackedGrid(rows, cols);
+        for (int r = 0; r < rows; ++r) {
+            for (int c = 0; c < cols; ++c) {
+                grid.set(r, c, encode(cells[r][c]));
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * @return Whether the grid uses sparse storage.
+     */
+    public boolean isSparse() {
+        return cells == null;
+    }
+
+    /**
+     * @return Number of rows.
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * @return Number of columns.
+     */
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * @param row Row of the cell.
+     * @param col Column of the cell.
+     * @return Index of the cell at (row, col).
+     */
+    public int index(int row, int col) {
+        return row * cols + col;
+    }
+
+    /**
+     * @param row Row to check.
+     * @param col Column to check.
+     * @return Whether (row, col) lies within the grid.
+     */
+    public boolean inBounds(int row, int col) {
+        return row >= 0 && row < rows && col >= 0 && col < cols;
+    }
+
+    /**
+     * @param row Row of the cell.
+     * @param col Column of the cell.
+     * @return Code of the cell at (row, col).
+     */
+    public byte get(int row, int col) {
+        return cells != null ? cells[row * cols + col] : sparseCells.get(row, col);
+    }
+
+    /**
+     * @param index Index of the cell.
+     * @return Code of the cell at {@code index}.
+     */
+    public byte get(int index) {
+        return cells != null ? cells[index] : sparseCells.get(index / cols, index % cols);
+    }
+
+    /**
+     * @param row  Row of the cell.
+     * @param col  Column of the cell.
+     * @param code New code of the cell.
+     */
+    public void set(int row, int col, byte code) {
+        if (cells != null) {
+            cells[row * cols + col] = code;
+        } else {
+            sparseCells.set(row, col, code);
+        }
+    }
+
+    /**
+     * @param index Index of the cell.
+     * @param code  New code of the cell.
+     */
+    public void set(int index, byte code) {
+        if (cells != null) {
+            cells[index] = code;
+        } else {
+            sparseCells.set(index / cols, index % cols, code);
+        }
+    }
+
+    /**
+     * Sets a range of cells to the given codes.
+     *
+     * @param fromIndex Index of the first cell.
+     * @param codes     New codes of the cells.
+     * @param length    Number of cells to set.
+     */
+    public void copyFrom(int fromIndex, @NotNull byte[] codes, int length) {
+        if (cells != null) {
+            System.arraycopy(codes, 0, cells, fromIndex, length);
+        } else {
+            for (int i = 0; i < length; ++i) {
+                set(fromIndex + i, codes[i]);
+            }
+        }
+    }
+
+    /**
+     * Copies a range of cells into an array.
+     *
+     * @param fromIndex Index of the first cell.
+     * @param codes     Array to copy the codes of the cells to.
+     * @param length    Number of cells to copy.
+     */
+    public void copyTo(int fromIndex, @NotNull byte[] codes, int length) {
+        if (cells != null) {
+            System.arraycopy(cells, fromIndex, codes, 0, length);
+        } else {
+            for (int i = 0; i < length; ++i) {
+                codes[i] = get(fromIndex + i);
+            }
+        }
+    }
+
+    /**
+     * @param fromIndex Index of the first cell.
+     * @param length    Number of cells to check.
+     * @return Whether every cell in the range is {@link PackedGrid#EMPTY}.
+     */
+    public boolean isEmpty(int fromIndex, int length) {
+        if (cells != null) {
+            for (int i = fromIndex; i < fromIndex + length; ++i) {
+                if (cells[i] != EMPTY) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        int row = fromIndex / cols;
+        int col = fromIndex % cols;
+        int remaining = length;
+        while (remaining > 0) {
+            final int run = Math.min(remaining, cols - col);
+            if (!sparseCells.isEmpty(row, col, run)) {
+                return false;
+            }
+            remaining -= run;
+            ++row;
+            col = 0;
+        }
+        return true;
+    }
+
+    /**
+     * Passes the ranges of cells which may differ from the initial cells of {@link PackedGrid#sparse(int, int)} to
+     * {@code action}. Must only be called on sparse grids.
+     *
+     * @param action Action to run with the index of the first cell and the number of cells of each range.
+     */
+    void forEachWrittenRange(@NotNull SparseCells.RangeConsumer action) {
+        if (sparseCells == null) {
+            throw new IllegalStateException("Grid is not sparse");
+        }
+        sparseCells.forEachAllocatedRange(action);
+    }
+
+    /**
+     * Passes the index of every pipe and termination cell to {@code action}, in increasing order for dense grids.
+     * Sparse grids skip the chunks which have none.
+     *
+     * @param action Action to run with the index of each cell.
+     */
+    public void forEachPipeOrTermination(@NotNull IntConsumer action) {
+        if (cells == null) {
+            sparseCells.forEachPipeOrTermination(action);
+            return;
+        }
+
+        for (int i = 0; i < cells.length; ++i) {
+            if (kind(cells[i]) >= KIND_PIPE) {
+                action.accept(i);
+            }
+        }
+    }
+
+    /**
+     * Sets a range of cells to the same code.
+     *
+     * @param fromIndex Index of the first cell, inclusive.
+     * @param toIndex   Index of the last cell, exclusive.
+     * @param code      New code of the cells.
+     */
+    public void fill(int fromIndex, int toIndex, byte code) {
+        if (cells != null) {
+            Arrays.fill(cells, fromIndex, toIndex, code);
+        } else {
+            for (int i = fromIndex; i < toIndex; ++i) {
+                set(i, code);
+            }
+        }
+    }
+
+    /**
+     * Marks the cell at {@code index} as filled.
+     *
+     * @param index Index of the cell.
+     */
+    public void setFilled(int index) {
+        if (cells != null) {
+            cells[index] |= FILLED_FLAG;
+        } else {
+            set(index, (byte) (get(index) | FILLED_FLAG));
+        }
+    }
+
+    /**
+     * Creates a {@link Cell} representing the cell at (row, col).
+     *
+     * <p>
+     * The returned cell is a copy; Modifying it does not modify the grid.
+     * </p>
+     *
+     * @param row Row of the cell.
+     * @param col Column of the cell.
+     * @return A new {@link Cell} object.
+     */
+    @NotNull
+    public Cell getCell(int row, int col) {
+        return decode(get(row, col), new Coordinate(row, col));
+    }
+
+    /**
+     * @param shape Shape of the pipe.
+     * @return Code of an unfilled pipe.
+     */
+    public static byte pipe(@NotNull Pipe.Shape shape) {
+        return (byte) (KIND_PIPE | shape.ordinal() << SHAPE_SHIFT);
+    }
+
+    /**
+     * @param pointingTo Direction which the termination cell is pointing to.
+     * @param type       Type of the termination cell.
+     * @return Code of an unfilled termination cell.
+     */
+    public static byte termination(@NotNull Direction pointingTo, @NotNull TerminationCell.Type type) {
+        final int sink = type == TerminationCell.Type.SINK ? SINK_FLAG : 0;
+        return (byte) (KIND_TERMINATION | pointingTo.ordinal() << DIRECTION_SHIFT | sink);
+    }
+
+    /**
+     * @param code Code of a pipe or termination cell.
+     * @return Code of the same cell when it is filled.
+     */
+    public static byte filled(byte code) {
+        return (byte) (code | FILLED_FLAG);
+    }
+
+    /**
+     * @param code Code of a cell.
+     * @return Kind of the cell.
+     */
+    public static int kind(byte code) {
+        return code & KIND_MASK;
+    }
+
+    /**
+     * @param code Code of a pipe.
+     * @return Shape of the pipe.
+     */
+    @NotNull
+    public static Pipe.Shape shape(byte code) {
+        return SHAPES[(code >> SHAPE_SHIFT) & SHAPE_MASK];
+    }
+
+    /**
+     * @param code Code of a termination cell.
+     * @return Direction which the termination cell is pointing to.
+     */
+    @NotNull
+    public static Direction direction(byte code) {
+        return DIRECTIONS[(code >> DIRECTION_SHIFT) & DIRECTION_MASK];
+    }
+
+    /**
+     * @param code Code of a cell.
+     * @return Whether the cell is a sink.
+     */
+    public static boolean isSink(byte code) {
+        return kind(code) == KIND_TERMINATION && (code & SINK_FLAG) != 0;
+    }
+
+    /**
+     * @param code Code of a cell.
+     * @return Whether the cell is a source.
+     */
+    public static boolean isSource(byte code) {
+        return kind(code) == KIND_TERMINATION && (code & SINK_FLAG) == 0;
+    }
+
+    /**
+     * @param code Code of a cell.
+     * @return Whether the cell is filled.
+     */
+    public static boolean isFilled(byte code) {
+        return (code & FILLED_FLAG) != 0;
+    }
+
+    /**
+     * @param code Code of a cell.
+     * @param dir  Direction to check.
+     * @return Whether the cell holds a pipe with an opening towards {@code dir}.
+     */
+    public static boolean connectsTo(byte code, @NotNull Direction dir) {
+        return kind(code) == KIND_PIPE && shape(code).connectsTo(dir);
+    }
+
+    /**
+     * @param code Code of a cell.
+     * @return The character representation of the cell.
+     * @see Cell#toSingleChar()
+     */
+    public static char toSingleChar(byte code) {
+        switch (kind(code)) {
+            case KIND_EMPTY:
+                return '.';
+            case KIND_WALL:
+                return PipePatterns.WALL;
+            case KIND_PIPE:
+                return shape(code).getCharByState(isFilled(code));
+            case KIND_TERMINATION:
+                return TerminationCell.toSingleChar(direction(code), isFilled(code));
+            default:
+                throw new IllegalStateException("Unknown cell kind");
+        }
+    }
+
+    /**
+     * @param cell Cell to encode.
+     * @return Code representing {@code cell}.
+     * @throws IllegalArgumentException if the cell cannot be identified.
+     */
+    public static byte encode(@NotNull Cell cell) {
+        if (cell instanceof Wall) {
+            return WALL;
+        } else if (cell instanceof FillableCell) {
+            final var pipe = ((FillableCell) cell).getPipe();
+            if (pipe.isEmpty()) {
+                return EMPTY;
+            }
+
+            final byte code = pipe(pipe.get().getShape());
+            return pipe.get().getFilled() ? filled(code) : code;
+        } else if (cell instanceof TerminationCell) {
+            final var tCell = (TerminationCell) cell;
+
+            final byte code = termination(tCell.pointingTo, tCell.type);
+            return tCell.isFilled() ? filled(code) : code;
+        }
+
+        throw new IllegalArgumentException("Unknown cell type");
+    }
+
+    /**
+     * @param code  Code of the cell.
+     * @param coord Coordinate of the cell.
+     * @return A new {@link Cell} represented by {@code code}.
+     */
+    @NotNull
+    public static Cell decode(byte code, @NotNull Coordinate coord) {
+        switch (kind(code)) {
+            case KIND_EMPTY:
+                return new FillableCell(coord);
+            case KIND_WALL:
+                return new Wall(coord);
+            case KIND_PIPE: {
+                final var pipe = new Pipe(shape(code));
+                if (isFilled(code)) {
+                    pipe.setFilled();
+                }
+                return new FillableCell(coord, pipe);
+            }
+            case KIND_TERMINATION: {
+                final var type = isSink(code) ? TerminationCell.Type.SINK : TerminationCell.Type.SOURCE;
+                final var cell = new TerminationCell(coord, direction(code), type);
+                if (isFilled(code)) {
+                    cell.setFilled();
+                }
+                return cell;
+            }
+            default:
+                throw new IllegalStateException("Unknown cell kind");
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package models.map;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Set of cell indices, stored as a bitset whose pages are only allocated when a bit in them is first set.
+ *
+ * <p>
+ * Each page covers {@link PagedBitSet#PAGE_SIZE} cells. For sparse maps, memory is proportional to the number of pages
+ * touched rather than to the size of the map. Pages are kept when cleared, so a reused set does not allocate again.
+ * </p>
+ */
+class PagedBitSet {
+
+    private static final int PAGE_BITS = 15;
+    /**
+     * Number of cells covered by each page.
+     */
+    static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+    /*** Pages of 64-bit words, each of which is {@code null} until a bit in it is set.*/
+    @NotNull
+    private final long[][] pages;
+
+    /**
+     * @param numCells Number of cells of the map.
+     */
+    PagedBitSet(int numCells) {
+        pages = new long[(int) (((long) numCells + PAGE_SIZE - 1) >>> PAGE_BITS)][];
+    }
+
+    boolean get(int index) {
+        final var page = pages[index >>> PAGE_BITS];
+        return page != null && (page[(index & (PAGE_SIZE - 1)) >>> 6] & (1L << index)) != 0;
+    }
+
+    void set(int index) {
+        var page = pages[index >>> PAGE_BITS];
+        if (page == null) {
+            page = new long[PAGE_SIZE / 64];
+            pages[index >>> PAGE_BITS] = page;
+        }
+        page[(index & (PAGE_SIZE - 1)) >>> 6] |= 1L << index;
+    }
+
+    void clear(int index) {
+        final var page = pages[index >>> PAGE_BITS];
+        if (page != null) {
+            page[(index & (PAGE_SIZE - 1)) >>> 6] &= ~(1L << index);
+        }
+    }
+
+    /**
+     * Clears every bit.
+     */
+    void clear() {
+        for (var page : pages) {
+            if (page != null) {
+                Arrays.fill(page, 0L);
+            }
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package models.map;
+
+import models.map.cells.FillableCell;
+import org.jetbrains.annotations.NotNull;
+import util.Direction;
+
+import java.util.Arrays;
+
+/**
+ * Breadth-first reachability search over the cells of a map.
+ *
+ * <p>
+ * Cells are addressed by their index {@code row * cols + col}. The queue and the visited bitset grow with the number
+ * of cells visited, and are reused by every search, so a search on a huge sparse map only takes memory for the part it
+ * visits. An instance is bound to a map size and is not thread-safe.
+ * </p>
+ */
+public class PathFinder {
+
+    /**
+     * Which cells the search may step into.
+     */
+    public enum Mode {
+        /**
+         * Follow pipes whose openings face each other, the same way water flows.
+         */
+        PIPES,
+        /**
+         * Treat every {@link FillableCell} as passable, as if it held a cross pipe.
+         */
+        OPEN
+    }
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final int cols;
+
+    /**
+     * Cell indices in the order they are visited. Doubles as the BFS queue.
+     */
+    @NotNull
+    private int[] queue = new int[16];
+    private int queueSize = 0;
+
+    @NotNull
+    private final PagedBitSet visited;
+
+    /**
+     * @param rows Number of rows of the maps to search.
+     * @param cols Number of columns of the maps to search.
+     */
+    public PathFinder(int rows, int cols) {
+        this.cols = cols;
+        this.visited = new PagedBitSet(rows * cols);
+    }
+
+    /**
+     * Searches for the cells reachable from a source cell.
+     *
+     * <p>
+     * A sink is entered by any reachable cell which points into it. The visited cells can be retrieved afterwards
+     * using {@link PathFinder#getVisitedCount()} and {@link PathFinder#getVisited(int)}.
+     * </p>
+     *
+     * @param grid        Cells to search.
+     * @param sourceIndex Index of the source cell to start from.
+     * @param mode        Which cells are passable.
+     * @param stopAtSink  Whether to stop as soon as a sink is reached.
+     * @return {@code true} if a sink is reachable from the source.
+     */
+    public boolean search(@NotNull PackedGrid grid, int sourceIndex, @NotNull Mode mode, boolean stopAtSink) {
+        visited.clear();
+        queueSize = 0;
+
+        boolean reachedSink = false;
+
+        final Direction out = PackedGrid.direction(grid.get(sourceIndex));
+        final int firstRow = sourceIndex / cols + out.getRowOffset();
+        final int firstCol = sourceIndex % cols + out.getColOffset();
+        if (isSink(grid, firstRow, firstCol)) {
+            return true;
+        }
+        if (canEnter(grid, firstRow, firstCol, out, mode)) {
+            visit(grid.index(firstRow, firstCol));
+        }
+
+        for (int head = 0; head < queueSize; ++head) {
+            final int index = queue[head];
+            final int row = index / cols;
+            final int col = index % cols;
+            final byte code = grid.get(index);
+
+            for (Direction d : DIRECTIONS) {
+                if (mode == Mode.PIPES && !PackedGrid.connectsTo(code, d)) {
+                    continue;
+                }
+
+                final int newRow = row + d.getRowOffset();
+                final int newCol = col + d.getColOffset();
+
+                if (isSink(grid, newRow, newCol)) {
+                    reachedSink = true;
+                    if (stopAtSink) {
+                        return true;
+                    }
+                    continue;
+                }
+                if (canEnter(grid, newRow, newCol, d, mode) && !isVisited(grid.index(newRow, newCol))) {
+                    visit(grid.index(newRow, newCol));
+                }
+            }
+        }
+
+        return reachedSink;
+    }
+
+    /**
+     * Finds the length of the shortest path from a source cell to a sink.
+     *
+     * <p>
+     * Cells are visited in the same way as {@link PathFinder#search(PackedGrid, int, Mode, boolean)}, one distance
+     * unit at a time.
+     * </p>
+     *
+     * @param grid        Cells to search.
+     * @param sourceIndex Index of the source cell to start from.
+     * @param mode        Which cells are passable.
+     * @return Number of cells between the source and the nearest sink, or {@code -1} if no sink is reachable.
+     */
+    public int shortestPathLength(@NotNull PackedGrid grid, int sourceIndex, @NotNull Mode mode) {
+        visited.clear();
+        queueSize = 0;
+
+        final Direction out = PackedGrid.direction(grid.get(sourceIndex));
+        final int firstRow = sourceIndex / cols + out.getRowOffset();
+        final int firstCol = sourceIndex % cols + out.getColOffset();
+        if (isSink(grid, firstRow, firstCol)) {
+            return 0;
+        }
+        if (!canEnter(grid, firstRow, firstCol, out, mode)) {
+            return -1;
+        }
+        visit(grid.index(firstRow, firstCol));
+
+        int distance = 1;
+        int layerEnd = queueSize;
+        for (int head = 0; head < queueSize; ++head) {
+            if (head == layerEnd) {
+                ++distance;
+                layerEnd = queueSize;
+            }
+
+            final int index = queue[head];
+            final int row = index / cols;
+            final int col = index % cols;
+            final byte code = grid.get(index);
+
+            for (Direction d : DIRECTIONS) {
+                if (mode == Mode.PIPES && !PackedGrid.connectsTo(code, d)) {
+                    continue;
+                }
+
+                final int newRow = row + d.getRowOffset();
+                final int newCol = col + d.getColOffset();
+
+                if (isSink(grid, newRow, newCol)) {
+                    return distance;
+                }
+                if (canEnter(grid, newRow, newCol, d, mode) && !isVisited(grid.index(newRow, newCol))) {
+                    visit(grid.index(newRow, newCol));
+                }
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * @return Number of cells visited by the last search.
+     */
+    public int getVisitedCount() {
+        return queueSize;
+    }
+
+    /**
+     * @param i Order of the visited cell, between 0 and {@link PathFinder#getVisitedCount()} (exclusive).
+     * @return Index of the {@code i}-th visited cell of the last search.
+     */
+    public int getVisited(int i) {
+        return queue[i];
+    }
+
+    /**
+     * @param index Index of the cell.
+     * @return Whether the cell was visited by the last search.
+     */
+    public boolean isVisited(int index) {
+        return visited.get(index);
+    }
+
+    private void visit(int index) {
+        visited.set(index);
+        if (queueSize == queue.length) {
+            queue = Arrays.copyOf(queue, queue.length * 2);
+        }
+        queue[queueSize++] = index;
+    }
+
+    private static boolean isSink(@NotNull PackedGrid grid, int row, int col) {
+        return grid.inBounds(row, col) && PackedGrid.isSink(grid.get(row, col));
+    }
+
+    /**
+     * @param from Direction of travel when entering the cell.
+     */
+    private static boolean canEnter(@NotNull PackedGrid grid, int row, int col, @NotNull Direction from, @NotNull Mode mode) {
+        if (!grid.inBounds(row, col)) {
+            return false;
+        }
+
+        final byte code = grid.get(row, col);
+        if (mode == Mode.OPEN) {
+            final int kind = PackedGrid.kind(code);
+            return kind == PackedGrid.KIND_EMPTY || kind == PackedGrid.KIND_PIPE;
+        }
+        return PackedGrid.connectsTo(code, from.getOpposite());
+    }
+}
@@ -0,0 +1,266 @@
+package models.map;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.function.IntConsumer;
+
+/**
+ * Sparse storage of the cells of a {@link PackedGrid}, for huge maps which are mostly empty.
+ *
+ * <p>
+ * Cells are grouped into chunks of {@link SparseCells#CHUNK_SIZE} x {@link SparseCells#CHUNK_SIZE}, which are only
+ * allocated when one of their cells is first set to something other than its default code. The default code is
+ * {@link PackedGrid#WALL} on the outer border of the map, and {@link PackedGrid#EMPTY} everywhere else, so a new map
+ * with walls around it takes no chunks at all. Chunks are looked up in an open-addressing hash table, so memory is
+ * proportional to the number of chunks which have been written to.
+ * </p>
+ *
+ * <p>
+ * Each chunk counts its walls and its pipe and termination cells, so that searches for those cells skip every other
+ * chunk.
+ * </p>
+ */
+final class SparseCells {
+
+    private static final int CHUNK_BITS = 6;
+    /**
+     * Number of rows and columns of each chunk.
+     */
+    static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    /**
+     * Receives a range of consecutive cell indices.
+     */
+    interface RangeConsumer {
+
+        void accept(int fromIndex, int length);
+    }
+
+    private static final class Chunk {
+
+        private final int number;
+        @NotNull
+        private final byte[] codes;
+        private int numWalls = 0;
+        private int numPipes = 0;
+
+        Chunk(int number, @NotNull byte[] codes) {
+            this.number = number;
+            this.codes = codes;
+        }
+    }
+
+    private final int rows;
+    private final int cols;
+    private final int chunkCols;
+
+    /**
+     * Chunks by their number, using linear probing. The table is never more than half full.
+     */
+    @NotNull
+    private Chunk[] table = new Chunk[16];
+    private int numChunks = 0;
+
+    /**
+     * @param rows Number of rows of the map.
+     * @param cols Number of columns of the map.
+     */
+    SparseCells(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+        this.chunkCols = (cols + CHUNK_MASK) >>> CHUNK_BITS;
+    }
+
+    /**
+     * @return Number of chunks which have been allocated.
+     */
+    int getNumChunks() {
+        return numChunks;
+    }
+
+    byte get(int row, int col) {
+        final var chunk = find(chunkNumber(row, col));
+        return chunk == null ? defaultCode(row, col) : chunk.codes[offset(row, col)];
+    }
+
+    void set(int row, int col, byte code) {
+        final int number = chunkNumber(row, col);
+        var chunk = find(number);
+        if (chunk == null) {
+            if (code == defaultCode(row, col)) {
+                return;
+            }
+            chunk = allocate(number);
+        }
+
+        final int offset = offset(row, col);
+        count(chunk, chunk.codes[offset], -1);
+        count(chunk, code, 1);
+        chunk.codes[offset] = code;
+    }
+
+    /**
+     * @param row    Row of the cells.
+     * @param col    Column of the first cell.
+     * @param length Number of cells, which must not go past the end of the row.
+     * @return Whether every cell in the range is {@link PackedGrid#EMPTY}.
+     */
+    boolean isEmpty(int row, int col, int length) {
+        if (row == 0 || row == rows - 1 || col == 0 || col + length == cols) {
+            // the range includes walls of the border, unless they have been overwritten
+            for (int c = col; c < col + length; ++c) {
+                if (get(row, c) != PackedGrid.EMPTY) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        int c = col;
+        while (c < col + length) {
+            final int end = Math.min(col + length, (c | CHUNK_MASK) + 1);
+            // a chunk without walls, pipes or termination cells is empty
+            final var chunk = find(chunkNumber(row, c));
+            if (chunk != null && (chunk.numWalls != 0 || chunk.numPipes != 0)) {
+                for (int i = offset(row, c), last = offset(row, end - 1); i <= last; ++i) {
+                    if (chunk.codes[i] != PackedGrid.EMPTY) {
+                        return false;
+                    }
+                }
+            }
+            c = end;
+        }
+        return true;
+    }
+
+    /**
+     * Passes the index of every pipe and termination cell to {@code action}, skipping chunks without any.
+     *
+     * @param action Action to run with the index {@code row * cols + col} of each cell.
+     */
+    void forEachPipeOrTermination(@NotNull IntConsumer action) {
+        final var chunks = Arrays.stream(table)
+                .filter(chunk -> chunk != null && chunk.numPipes != 0)
+                .sorted(Comparator.comparingInt(chunk -> chunk.number))
+                .toArray(Chunk[]::new);
+
+        for (var chunk : chunks) {
+            final int firstRow = (chunk.number / chunkCols) << CHUNK_BITS;
+            final int firstCol = (chunk.number % chunkCols) << CHUNK_BITS;
+            for (int i = 0; i < chunk.codes.length; ++i) {
+                if (PackedGrid.kind(chunk.codes[i]) >= PackedGrid.KIND_PIPE) {
+                    action.accept((firstRow + (i >>> CHUNK_BITS)) * cols + firstCol + (i & CHUNK_MASK));
+                }
+            }
+        }
+    }
+
+    /**
+     * Passes the cells of every allocated chunk to {@code action}, one row of the chunk at a time. Every cell outside
+     * of these ranges holds its default code.
+     *
+     * @param action Action to run with the index of the first cell and the number of cells of each range.
+     */
+    void forEachAllocatedRange(@NotNull RangeConsumer action) {
+        for (var chunk : table) {
+            if (chunk == null) {
+                continue;
+            }
+
+            final int firstRow = (chunk.number / chunkCols) << CHUNK_BITS;
+            final int firstCol = (chunk.number % chunkCols) << CHUNK_BITS;
+            final int length = Math.min(cols, firstCol + CHUNK_SIZE) - firstCol;
+            for (int r = firstRow; r < Math.min(rows, firstRow + CHUNK_SIZE); ++r) {
+                action.accept(r * cols + firstCol, length);
+            }
+        }
+    }
+
+    /**
+     * @param rows Number of rows of the map.
+     * @param cols Number of columns of the map.
+     * @param row  Row of the cell.
+     * @param col  Column of the cell.
+     * @return Code of the cell before it is first written to.
+     */
+    static byte defaultCode(int rows, int cols, int row, int col) {
+        return row == 0 || row == rows - 1 || col == 0 || col == cols - 1 ? PackedGrid.WALL : PackedGrid.EMPTY;
+    }
+
+    private byte defaultCode(int row, int col) {
+        return defaultCode(rows, cols, row, col);
+    }
+
+    private int chunkNumber(int row, int col) {
+        return (row >>> CHUNK_BITS) * chunkCols + (col >>> CHUNK_BITS);
+    }
+
+    private static int offset(int row, int col) {
+        return (row & CHUNK_MASK) << CHUNK_BITS | (col & CHUNK_MASK);
+    }
+
+    private static void count(@NotNull Chunk chunk, byte code, int delta) {
+        final int kind = PackedGrid.kind(code);
+        if (kind == PackedGrid.KIND_WALL) {
+            chunk.numWalls += delta;
+        } else if (kind != PackedGrid.KIND_EMPTY) {
+            chunk.numPipes += delta;
+        }
+    }
+
+    private int slot(int number) {
+        return (number * 0x9E3779B9) >>> (32 - Integer.numberOfTrailingZeros(table.length));
+    }
+
+    @Nullable
+    private Chunk find(int number) {
+        for (int i = slot(number); ; i = (i + 1) & (table.length - 1)) {
+            final var chunk = table[i];
+            if (chunk == null || chunk.number == number) {
+                return chunk;
+            }
+        }
+    }
+
+    /**
+     * Allocates a chunk whose cells hold their default codes.
+     */
+    @NotNull
+    private Chunk allocate(int number) {
+        final var chunk = new Chunk(number, new byte[CHUNK_SIZE * CHUNK_SIZE]);
+        final int firstRow = (number / chunkCols) << CHUNK_BITS;
+        final int firstCol = (number % chunkCols) << CHUNK_BITS;
+        for (int r = firstRow; r < Math.min(rows, firstRow + CHUNK_SIZE); ++r) {
+            for (int c = firstCol; c < Math.min(cols, firstCol + CHUNK_SIZE); ++c) {
+                final byte code = defaultCode(r, c);
+                chunk.codes[offset(r, c)] = code;
+                count(chunk, code, 1);
+            }
+        }
+
+        if (2 * (numChunks + 1) > table.length) {
+            final var old = table;
+            table = new Chunk[old.length * 2];
+            for (var c : old) {
+                if (c != null) {
+                    insert(c);
+                }
+            }
+        }
+        insert(chunk);
+        ++numChunks;
+        return chunk;
+    }
+
+    private void insert(@NotNull Chunk chunk) {
+        int i = slot(chunk.number);
+        while (table[i] != null) {
+            i = (i + 1) & (table.length - 1);
+        }
+        table[i] = chunk;
+    }
+}
@@ -1,8 +1,5 @@
 package models.map.cells;
 
-import controllers.Renderer;
-import controllers.ResourceLoader;
-import javafx.scene.image.Image;
 import models.MapElement;
 import models.pipes.Pipe;
 import org.jetbrains.annotations.NotNull;
@@ -16,11 +13,6 @@ import java.util.Optional;
  */
 public class FillableCell extends Cell implements MapElement {
 
-    /**
-     * Image representing a cell.
-     */
-    private static final Image IMAGE = new Image(ResourceLoader.getResource("assets/images/empty-cell.png"));
-
     @Nullable
     private final Pipe pipe;
 
@@ -61,21 +53,6 @@ public class FillableCell extends Cell implements MapElement {
         return pipe != null ? pipe.toSingleChar() : '.';
     }
 
-    /**
-     * {@inheritDoc}
-     *
-     * @return The image representation of the pipe, or the empty cell image if the cell is empty.
-     */
-    @NotNull
-    @Override
-    public Renderer.CellImage getImageRep() {
-        // TODO wip-- rotation as well
-        if ( pipe == null )
-            return new Renderer.CellImage(IMAGE, 0);
-        else
-            return pipe.getImageRep();
-    }
-
     @NotNull
     @Override
     public String toSerializedRep() {
@@ -1,8 +1,5 @@
 package models.map.cells;
 
-import controllers.Renderer;
-import controllers.ResourceLoader;
-import javafx.scene.image.Image;
 import org.jetbrains.annotations.NotNull;
 import util.Coordinate;
 import util.Direction;
@@ -13,15 +10,6 @@ import util.PipePatterns;
  */
 public class TerminationCell extends Cell {
 
-    /**
-     * Image representing an unfilled termination cell.
-     */
-    private static final Image UNFILLED_IMG = new Image(ResourceLoader.getResource("assets/images/dest-unfilled.png"));
-    /**
-     * Image representing a filled termination cell.
-     */
-    private static final Image FILLED_IMG = new Image(ResourceLoader.getResource("assets/images/dest-filled.png"));
-
     private boolean isFilled = false;
     @NotNull
     public final Direction pointingTo;
@@ -47,6 +35,15 @@ public class TerminationCell extends Cell {
 
     @Override
     public char toSingleChar() {
+        return toSingleChar(pointingTo, isFilled);
+    }
+
+    /**
+     * @param pointingTo Direction which the termination cell is pointing to.
+     * @param isFilled   Whether the termination cell is filled.
+     * @return The character representation of a termination cell.
+     */
+    public static char toSingleChar(@NotNull Direction pointingTo, boolean isFilled) {
         if (isFilled) {
             switch (pointingTo) {
                 case UP:
@@ -74,24 +71,6 @@ public class TerminationCell extends Cell {
         throw new IllegalStateException("Invalid pointingTo value!");
     }
 
-    @NotNull
-    @Override
-    public Renderer.CellImage getImageRep() {
-        // TODO wip -- rotation as well, and filled
-        float rotation = 0f;
-        if ( pointingTo == Direction.UP )
-            rotation = 0f;
-        else if (pointingTo == Direction.RIGHT)
-            rotation = 90f;
-        else if (pointingTo == Direction.DOWN )
-            rotation = 180f;
-        else if (pointingTo == Direction.LEFT )
-            rotation = 270f;
-
-        Image image = (isFilled)? FILLED_IMG : UNFILLED_IMG;
-        return new Renderer.CellImage( image, rotation);
-    }
-
     @NotNull
     @Override
     public String toSerializedRep() {
@@ -1,8 +1,5 @@
 package models.map.cells;
 
-import controllers.Renderer;
-import controllers.ResourceLoader;
-import javafx.scene.image.Image;
 import models.map.Map;
 import org.jetbrains.annotations.NotNull;
 import util.Coordinate;
@@ -13,11 +10,6 @@ import util.PipePatterns;
  */
 public class Wall extends Cell {
 
-    /**
-     * Image representing a wall.
-     */
-    private static final Image IMAGE = new Image(ResourceLoader.getResource("assets/images/wall.png"));
-
     public Wall(@NotNull Coordinate coord) {
         super(coord);
     }
@@ -27,13 +19,6 @@ public class Wall extends Cell {
         return PipePatterns.WALL;
     }
 
-    @NotNull
-    @Override
-    public Renderer.CellImage getImageRep() {
-        // TODO wip
-        return new Renderer.CellImage(IMAGE, 0);
-    }
-
     @NotNull
     @Override
     public String toSerializedRep() {
@@ -1,8 +1,5 @@
 package models.pipes;
 
-import controllers.Renderer;
-import controllers.ResourceLoader;
-import javafx.scene.image.Image;
 import models.MapElement;
 import org.jetbrains.annotations.NotNull;
 import util.Direction;
@@ -66,24 +63,34 @@ public class Pipe implements MapElement {
     }
 
     /**
-     * @return The character representation of this pipe. Note that the representation is different for filled and
-     * unfilled pipes.
+     * Checks whether this pipe has an opening towards a direction.
+     *
+     * <p>
+     * Unlike {@link Pipe#getConnections()}, this method does not allocate.
+     * </p>
+     *
+     * @param dir Direction to check.
+     * @return {@code true} if {@code dir} is one of {@link Pipe#getConnections()}.
      */
-    @Override
-    public char toSingleChar() {
-        return shape.getCharByState(filled);
+    public boolean connectsTo(@NotNull Direction dir) {
+        return shape.connectsTo(dir);
     }
 
     /**
-     * {@inheritDoc}
-     *
-     * @return The image representation of this pipe. Note that the representation is different for filled and unfilled
-     * pipes.
+     * @return Shape of this pipe.
      */
     @NotNull
+    public Shape getShape() {
+        return shape;
+    }
+
+    /**
+     * @return The character representation of this pipe. Note that the representation is different for filled and
+     * unfilled pipes.
+     */
     @Override
-    public Renderer.CellImage getImageRep() {
-        return shape.getCellImage(filled);
+    public char toSingleChar() {
+        return shape.getCharByState(filled);
     }
 
     /**
@@ -126,13 +133,6 @@ public class Pipe implements MapElement {
         BOTTOM_RIGHT("BR", PipePatterns.Filled.BOTTOM_RIGHT, PipePatterns.Unfilled.BOTTOM_RIGHT),
         CROSS("CR", PipePatterns.Filled.CROSS, PipePatterns.Unfilled.CROSS);
 
-        private static final Image CORNER_UNFILLED = new Image(ResourceLoader.getResource("assets/images/top-left-unfilled.png"));
-        private static final Image CORNER_FILLED = new Image(ResourceLoader.getResource("assets/images/top-left-filled.png"));
-        private static final Image CROSS_UNFILLED = new Image(ResourceLoader.getResource("assets/images/cross-unfilled.png"));
-        private static final Image CROSS_FILLED = new Image(ResourceLoader.getResource("assets/images/cross-filled.png"));
-        private static final Image STRAIGHT_UNFILLED = new Image(ResourceLoader.getResource("assets/images/vert-unfilled.png"));
-        private static final Image STRAIGHT_FILLED = new Image(ResourceLoader.getResource("assets/images/vert-filled.png"));
-
         @NotNull
         final String rep;
         final char filledChar;
@@ -144,54 +144,37 @@ public class Pipe implements MapElement {
             this.unfilledChar = unfilled;
         }
 
-        char getCharByState(boolean isFilled) {
+        /**
+         * @param isFilled Whether the pipe is filled.
+         * @return Character representation of the pipe.
+         */
+        public char getCharByState(boolean isFilled) {
             return isFilled ? filledChar : unfilledChar;
         }
 
         /**
-         * Retrieves the image representation of the pipe.
-         *
-         * @param isFilled Whether the pipe is filled.
-         * @return Image representation of the pipe.
+         * @param dir Direction to check.
+         * @return Whether a pipe of this shape has an opening towards {@code dir}.
          * @throws IllegalStateException When {@code this} is not a known pipe shape.
          */
-        @NotNull Renderer.CellImage getCellImage(boolean isFilled) {
-            // TODO
-            if (! isFilled){
-                if ( this == CROSS )
-                    return new Renderer.CellImage(CROSS_UNFILLED, 0);
-                else if (this == HORIZONTAL || this == VERTICAL ) {
-                    int rotation = (this == VERTICAL) ? 0 : 90;
-                    return new Renderer.CellImage(STRAIGHT_UNFILLED, rotation);
-                }
-                else
-                {
-                    int rotation = 0;
-                    if ( this == TOP_LEFT ) rotation = 0;
-                    else if ( this == TOP_RIGHT ) rotation = 90;
-                    else if ( this == BOTTOM_RIGHT ) rotation = 180;
-                    else if ( this == BOTTOM_LEFT ) rotation = 270;
-
-                    return new Renderer.CellImage(CORNER_UNFILLED, rotation);
-                }
-            }
-            else
-            {
-                if ( this == CROSS )
-                    return new Renderer.CellImage(CROSS_FILLED, 0);
-                else if (this == HORIZONTAL || this == VERTICAL ) {
-                    int rotation = (this == VERTICAL) ? 0 : 90;
-                    return new Renderer.CellImage(STRAIGHT_FILLED, rotation);
-                }
-                else
-                {
-                    int rotation = 0;
-                    if ( this == TOP_LEFT ) rotation = 0;
-                    else if ( this == TOP_RIGHT ) rotation = 90;
-                    else if ( this == BOTTOM_RIGHT ) rotation = 180;
-                    else if ( this == BOTTOM_LEFT ) rotation = 270;
-                    return new Renderer.CellImage(CORNER_FILLED, rotation);
-                }
+        public boolean connectsTo(@NotNull Direction dir) {
+            switch (this) {
+                case HORIZONTAL:
+                    return dir == Direction.LEFT || dir == Direction.RIGHT;
+                case VERTICAL:
+                    return dir == Direction.UP || dir == Direction.DOWN;
+                case TOP_LEFT:
+                    return dir == Direction.UP || dir == Direction.LEFT;
+                case TOP_RIGHT:
+                    return dir == Direction.UP || dir == Direction.RIGHT;
+                case BOTTOM_LEFT:
+                    return dir == Direction.DOWN || dir == Direction.LEFT;
+                case BOTTOM_RIGHT:
+                    return dir == Direction.DOWN || dir == Direction.RIGHT;
+                case CROSS:
+                    return true;
+                default:
+                    throw new IllegalStateException("Unknown shape");
             }
         }
     }
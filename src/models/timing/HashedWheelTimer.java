@@ -0,0 +1,306 @@
+package models.timing;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link TickScheduler} backed by a hashed timing wheel and a single worker thread.
+ *
+ * <p>
+ * Time is divided into ticks of a fixed duration. Each task is kept in the bucket of the tick it is due at, modulo the
+ * number of buckets. On every tick, the worker only looks at the tasks in the bucket of that tick, and runs those which
+ * are due. Tasks in a bucket form a doubly linked list, so scheduling and cancelling a task both take constant time.
+ * </p>
+ *
+ * <p>
+ * Tasks may run up to one tick later than requested. The worker thread is a daemon thread which is started by the
+ * first scheduled task, and sleeps without waking up while no tasks are scheduled.
+ * </p>
+ */
+public class HashedWheelTimer implements TickScheduler {
+
+    /**
+     * Default duration of a tick in milliseconds.
+     */
+    private static final long DEFAULT_TICK_DURATION = 10;
+    /**
+     * Default number of buckets. With the default tick duration, the wheel turns once about every 5 seconds.
+     */
+    private static final int DEFAULT_WHEEL_SIZE = 512;
+
+    @Nullable
+    private static HashedWheelTimer sharedInstance;
+
+    private final long tickNanos;
+    private final long startTime = System.nanoTime();
+
+    @NotNull
+    private final Entry[] wheel;
+    private final int mask;
+
+    /**
+     * Lock guarding the wheel and all entries in it.
+     */
+    @NotNull
+    private final Object lock = new Object();
+    /**
+     * Last tick which has been processed.
+     */
+    private long currentTick = 0;
+    private int numScheduled = 0;
+
+    @Nullable
+    private Thread worker;
+
+    /**
+     * @return The timer shared by all games.
+     */
+    @NotNull
+    public static synchronized HashedWheelTimer shared() {
+        if (sharedInstance == null) {
+            sharedInstance = new HashedWheelTimer(DEFAULT_TICK_DURATION, DEFAULT_WHEEL_SIZE);
+        }
+        return sharedInstance;
+    }
+
+    /**
+     * Creates a timer with the default tick duration and wheel size.
+     */
+    public HashedWheelTimer() {
+        this(DEFAULT_TICK_DURATION, DEFAULT_WHEEL_SIZE);
+    }
+
+    /**
+     * @param tickDuration Duration of a tick in milliseconds.
+     * @param wheelSize    Number of buckets. Rounded up to a power of two.
+     * @throws IllegalArgumentException if either argument is not positive.
+     */
+    public HashedWheelTimer(long tickDuration, int wheelSize) {
+        if (tickDuration <= 0 || wheelSize <= 0 || wheelSize > 1 << 30) {
+            throw new IllegalArgumentException();
+        }
+
+        final int size = Integer.highestOneBit(wheelSize) == wheelSize ? wheelSize : Integer.highestOneBit(wheelSize) << 1;
+
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickDuration);
+        this.wheel = new Entry[size];
+        this.mask = size - 1;
+    }
+
+    @NotNull
+    @Override
+    public ScheduledTask scheduleAtFixedRate(@NotNull Runnable task, long initialDelay, long period) {
+        if (initialDelay < 0 || period <= 0) {
+            throw new IllegalArgumentException();
+        }
+
+        final long delayNanos = TimeUnit.MILLISECONDS.toNanos(initialDelay);
+        final long deadline = ceilDiv(System.nanoTime() - startTime + delayNanos, tickNanos);
+        final long periodTicks = Math.max(1, ceilDiv(TimeUnit.MILLISECONDS.toNanos(period), tickNanos));
+        final var entry = new Entry(task, periodTicks);
+
+        synchronized (lock) {
+            if (worker == null) {
+                currentTick = Math.max(currentTick, elapsedTicks() - 1);
+            }
+
+            entry.deadline = Math.max(deadline, currentTick + 1);
+            insert(entry);
+
+            if (worker == null) {
+                worker = new Thread(this::run, "HashedWheelTimer");
+                worker.setDaemon(true);
+                worker.start();
+            } else if (numScheduled == 1) {
+                lock.notifyAll();
+            }
+        }
+
+        return entry;
+    }
+
+    /**
+     * @return Number of tasks which are currently scheduled.
+     */
+    public int getNumScheduled() {
+        synchronized (lock) {
+            return numScheduled;
+        }
+    }
+
+    /**
+     * Main loop of the worker thread.
+     */
+    private void run() {
+        final var expired = new ArrayList<Entry>();
+
+        try {
+            while (true) {
+                final long tick;
+                synchronized (lock) {
+                    while (numScheduled == 0) {
+                        lock.wait();
+
+                        // Skip the ticks spent idling, since there is nothing to run in them.
+                        currentTick = Math.max(currentTick, elapsedTicks() - 1);
+                    }
+                    tick = currentTick + 1;
+                }
+
+                final long sleepNanos = startTime + tick * tickNanos - System.nanoTime();
+                if (sleepNanos > 0) {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                }
+
+                synchronized (lock) {
+                    currentTick = tick;
+                    collectExpired(tick, expired);
+                }
+
+                for (var entry : expired) {
+                    runEntry(entry);
+                }
+
+                synchronized (lock) {
+                    for (var entry : expired) {
+                        if (!entry.cancelled) {
+                            // If the worker has fallen behind, runs which are already overdue are skipped.
+                            entry.deadline = Math.max(entry.deadline + entry.periodTicks, currentTick + 1);
+                            insert(entry);
+                        }
+                    }
+                }
+                expired.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Removes all entries which are due at {@code tick} from its bucket.
+     *
+     * @param tick    Current tick.
+     * @param expired List to add the due entries to.
+     */
+    private void collectExpired(long tick, @NotNull ArrayList<Entry> expired) {
+        var entry = wheel[(int) (tick & mask)];
+        while (entry != null) {
+            final var next = entry.next;
+            if (entry.deadline <= tick) {
+                remove(entry);
+                expired.add(entry);
+            }
+            entry = next;
+        }
+    }
+
+    private static void runEntry(@NotNull Entry entry) {
+        if (entry.cancelled) {
+            return;
+        }
+
+        try {
+            entry.task.run();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Must be called while holding {@link HashedWheelTimer#lock}.
+     */
+    private void insert(@NotNull Entry entry) {
+        final int bucket = (int) (entry.deadline & mask);
+
+        entry.bucket = bucket;
+        entry.prev = null;
+        entry.next = wheel[bucket];
+        if (wheel[bucket] != null) {
+            wheel[bucket].prev = entry;
+        }
+        wheel[bucket] = entry;
+
+        ++numScheduled;
+    }
+
+    /**
+     * Must be called while holding {@link HashedWheelTimer#lock}.
+     */
+    private void remove(@NotNull Entry entry) {
+        if (entry.prev != null) {
+            entry.prev.next = entry.next;
+        } else {
+            wheel[entry.bucket] = entry.next;
+        }
+        if (entry.next != null) {
+            entry.next.prev = entry.prev;
+        }
+
+        entry.bucket = -1;
+        entry.prev = null;
+        entry.next = null;
+
+        --numScheduled;
+    }
+
+    private long elapsedTicks() {
+        return (System.nanoTime() - startTime) / tickNanos;
+    }
+
+    private static long ceilDiv(long x, long y) {
+        return -Math.floorDiv(-x, y);
+    }
+
+    /**
+     * A scheduled task, which is also a node in the list of its bucket.
+     */
+    private final class Entry implements ScheduledTask {
+
+        @NotNull
+        final Runnable task;
+        final long periodTicks;
+
+        /**
+         * Tick at which the task is next due.
+         */
+        long deadline;
+        /**
+         * Index of the bucket containing this entry, or {@code -1} if the entry is not in the wheel.
+         */
+        int bucket = -1;
+        @Nullable
+        Entry prev;
+        @Nullable
+        Entry next;
+
+        volatile boolean cancelled = false;
+
+        Entry(@NotNull Runnable task, long periodTicks) {
+            this.task = task;
+            this.periodTicks = periodTicks;
+        }
+
+        @Override
+        public void cancel() {
+            synchronized (lock) {
+                if (cancelled) {
+                    return;
+                }
+
+                cancelled = true;
+                if (bucket != -1) {
+                    remove(this);
+                }
+            }
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package models.timing;
+
+/**
+ * Handle of a task scheduled by a {@link TickScheduler}.
+ */
+public interface ScheduledTask {
+
+    /**
+     * Cancels the task. The task will not run again, although a run which has already started is not interrupted.
+     *
+     * <p>
+     * Cancelling a task more than once has no effect.
+     * </p>
+     */
+    void cancel();
+
+    /**
+     * @return Whether {@link ScheduledTask#cancel()} has been called.
+     */
+    boolean isCancelled();
+}
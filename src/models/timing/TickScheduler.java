@@ -0,0 +1,30 @@
+package models.timing;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Backend which runs the periodic tasks of {@link models.FlowTimer}.
+ *
+ * <p>
+ * A single scheduler is meant to be shared by many games, so that the number of threads does not grow with the number
+ * of games.
+ * </p>
+ */
+public interface TickScheduler {
+
+    /**
+     * Schedules a task to run repeatedly at a fixed rate.
+     *
+     * <p>
+     * Tasks of the same scheduler may run on the same thread, so they should return quickly.
+     * </p>
+     *
+     * @param task         Task to run.
+     * @param initialDelay Delay in milliseconds before the first run.
+     * @param period       Time in milliseconds between the start of two consecutive runs.
+     * @return A handle for cancelling the task.
+     * @throws IllegalArgumentException if {@code initialDelay} is negative or {@code period} is not positive.
+     */
+    @NotNull
+    ScheduledTask scheduleAtFixedRate(@NotNull Runnable task, long initialDelay, long period);
+}
@@ -0,0 +1,158 @@
+package models.timing;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/**
+ * {@link TickScheduler} whose time only passes when {@link VirtualScheduler#advance(long)} is called.
+ *
+ * <p>
+ * Tasks are run on the calling thread, in the order of their due time. Tasks which are due at the same time are run in
+ * the order they were scheduled (or last run). This makes a simulation fully deterministic, and lets it run as fast as
+ * the tasks themselves.
+ * </p>
+ *
+ * <p>
+ * This class is not thread-safe. Tasks may schedule or cancel other tasks while they run.
+ * </p>
+ */
+public class VirtualScheduler implements TickScheduler {
+
+    /**
+     * Default duration of a tick in milliseconds, which is the tick duration of {@link models.FlowTimer}.
+     */
+    private static final long DEFAULT_TICK_DURATION = 1000;
+
+    @NotNull
+    private final PriorityQueue<Entry> queue = new PriorityQueue<>(
+            Comparator.comparingLong((Entry e) -> e.deadline).thenComparingLong(e -> e.sequence));
+
+    private final long tickDuration;
+    private long time = 0;
+    private long nextSequence = 0;
+
+    /**
+     * Creates a scheduler where a tick lasts as long as a tick of {@link models.FlowTimer}.
+     */
+    public VirtualScheduler() {
+        this(DEFAULT_TICK_DURATION);
+    }
+
+    /**
+     * @param tickDuration Duration of a tick in milliseconds, used by {@link VirtualScheduler#advance(long)}.
+     * @throws IllegalArgumentException if {@code tickDuration} is not positive.
+     */
+    public VirtualScheduler(long tickDuration) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException();
+        }
+
+        this.tickDuration = tickDuration;
+    }
+
+    @NotNull
+    @Override
+    public ScheduledTask scheduleAtFixedRate(@NotNull Runnable task, long initialDelay, long period) {
+        if (initialDelay < 0 || period <= 0) {
+            throw new IllegalArgumentException();
+        }
+
+        final var entry = new Entry(task, time + initialDelay, period);
+        enqueue(entry);
+        return entry;
+    }
+
+    /**
+     * Advances the time by a number of ticks, running every task which becomes due.
+     *
+     * @param ticks Number of ticks to advance by.
+     */
+    public void advance(long ticks) {
+        advanceMillis(ticks * tickDuration);
+    }
+
+    /**
+     * Advances the time by a duration, running every task which becomes due.
+     *
+     * <p>
+     * While a task runs, {@link VirtualScheduler#getTime()} returns the time the task is due at.
+     * </p>
+     *
+     * @param duration Duration to advance by, in milliseconds.
+     * @throws IllegalArgumentException if {@code duration} is negative.
+     */
+    public void advanceMillis(long duration) {
+        if (duration < 0) {
+            throw new IllegalArgumentException();
+        }
+
+        final long target = time + duration;
+        while (!queue.isEmpty() && queue.peek().deadline <= target) {
+            final var entry = queue.poll();
+            if (entry.cancelled) {
+                continue;
+            }
+
+            time = entry.deadline;
+            entry.task.run();
+
+            if (!entry.cancelled) {
+                entry.deadline += entry.period;
+                enqueue(entry);
+            }
+        }
+        time = target;
+    }
+
+    /**
+     * @return Time elapsed since the scheduler was created, in milliseconds.
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * @return Whether any task is still scheduled.
+     */
+    public boolean hasScheduledTasks() {
+        queue.removeIf(e -> e.cancelled);
+        return !queue.isEmpty();
+    }
+
+    private void enqueue(@NotNull Entry entry) {
+        entry.sequence = nextSequence++;
+        queue.add(entry);
+    }
+
+    /**
+     * A scheduled task. Cancelled entries are dropped from the queue when they become due.
+     */
+    private static final class Entry implements ScheduledTask {
+
+        @NotNull
+        final Runnable task;
+        final long period;
+
+        long deadline;
+        long sequence;
+        boolean cancelled = false;
+
+        Entry(@NotNull Runnable task, long deadline, long period) {
+            this.task = task;
+            this.deadline = deadline;
+            this.period = period;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+}
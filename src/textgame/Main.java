@@ -1,6 +1,7 @@
 package textgame;
 
 import io.Deserializer;
+import models.GameEngine;
 import textgame.game.Game;
 
 import java.io.BufferedReader;
@@ -22,27 +23,38 @@ public class Main {
             "undo"
     };
 
+    /**
+     * Option which sets the seed of the game, followed by the seed.
+     */
+    public static final String SEED_OPTION = "--seed";
+
     public static void main(String[] args) {
 
         if (args.length == 1 && args[0].equals("--help")) {
-            System.out.println("Usage: java -jar PA1.jar");
-            System.out.println("Usage: java -jar PA1.jar [file]");
-            System.out.println("Usage: java -jar PA1.jar [rows] [cols]");
+            System.out.println("Usage: java -jar PA1.jar [--seed <seed>]");
+            System.out.println("Usage: java -jar PA1.jar [--seed <seed>] [file]");
+            System.out.println("Usage: java -jar PA1.jar [--seed <seed>] [rows] [cols]");
             System.exit(0);
         }
 
         Game g = null;
 
         try {
+            long seed = GameEngine.randomSeed();
+            if (args.length >= 2 && args[0].equals(SEED_OPTION)) {
+                seed = Long.parseLong(args[1]);
+                args = Arrays.copyOfRange(args, 2, args.length);
+            }
+
             if (args.length == 0) {
                 int rows = 8;
                 int cols = 8;
 
-                g = new Game(rows, cols);
+                g = new Game(rows, cols, seed);
             } else if (args.length == 1) {
                 try {
-                    var deserializer = new Deserializer(args[0]);
-                    g = deserializer.parseGame();
+                    var prop = new Deserializer(args[0]).parseGameFile();
+                    g = new Game(prop.delay, prop.takeGrid(), prop.pipes, seed);
                 } catch (FileNotFoundException e) {
                     e.printStackTrace();
                     throw e;
@@ -51,7 +63,7 @@ public class Main {
                 int rows = Integer.parseInt(args[0]);
                 int cols = Integer.parseInt(args[1]);
 
-                g = new Game(rows, cols);
+                g = new Game(rows, cols, seed);
             }
         } catch (final Throwable tr) {
             tr.printStackTrace();
@@ -64,6 +76,7 @@ public class Main {
             System.exit(1);
         }
 
+        System.out.println("Seed: " + g.getSeed());
         System.out.println("Enter \":q\" to quit the game.");
         System.out.println("Enter \":u\" to undo the last step.");
         System.out.println();
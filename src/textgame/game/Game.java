@@ -2,8 +2,10 @@ package textgame.game;
 
 import io.Deserializer;
 import models.CellStack;
+import models.GameEngine;
 import models.PipeQueue;
 import models.map.Map;
+import models.map.PackedGrid;
 import models.map.cells.Cell;
 import models.map.cells.FillableCell;
 import models.pipes.Pipe;
@@ -12,6 +14,7 @@ import org.jetbrains.annotations.Nullable;
 import util.Coordinate;
 
 import java.util.List;
+import java.util.SplittableRandom;
 
 public class Game {
 
@@ -26,6 +29,8 @@ public class Game {
 
     private int numOfSteps = 0;
 
+    private final long seed;
+
     /**
      * Creates a game with a map of rows x cols.
      *
@@ -33,10 +38,24 @@ public class Game {
      * @param cols Number of columns to generate, not counting the surrounding walls.
      */
     public Game(int rows, int cols) {
+        this(rows, cols, GameEngine.randomSeed());
+    }
+
+    /**
+     * Creates a game with a map of rows x cols, which is generated from a seed.
+     *
+     * @param rows Number of rows to generate, not counting the surrounding walls.
+     * @param cols Number of columns to generate, not counting the surrounding walls.
+     * @param seed Seed of the map layout and the pipe stream, as in {@link GameEngine}.
+     */
+    public Game(int rows, int cols, long seed) {
+        final var rng = new SplittableRandom(seed);
+        this.seed = seed;
+
         // adjust for the wall
-        map = new Map(rows + 2, cols + 2);
+        map = new Map(rows + 2, cols + 2, rng.split());
 
-        pipeQueue = new PipeQueue();
+        pipeQueue = new PipeQueue(null, rng.split());
         delayBar = new DelayBar(5);
     }
 
@@ -50,9 +69,36 @@ public class Game {
      * @param pipes List of pre-generated pipes, if any.
      */
     public Game(int rows, int cols, int delay, @NotNull Cell[][] cells, @Nullable List<Pipe> pipes) {
-        map = new Map(rows, cols, cells);
+        this(delay, PackedGrid.fromCells(rows, cols, cells), pipes);
+    }
 
-        pipeQueue = new PipeQueue(pipes);
+    /**
+     * Creates a game with a given map and various properties.
+     *
+     * @param delay Delay in number of rounds before filling the pipes.
+     * @param grid  Cells of the map. The game takes ownership of the grid.
+     * @param pipes List of pre-generated pipes, if any.
+     */
+    public Game(int delay, @NotNull PackedGrid grid, @Nullable List<Pipe> pipes) {
+        this(delay, grid, pipes, GameEngine.randomSeed());
+    }
+
+    /**
+     * Creates a game with a given map and various properties, whose further pipes are generated from a seed.
+     *
+     * @param delay Delay in number of rounds before filling the pipes.
+     * @param grid  Cells of the map. The game takes ownership of the grid.
+     * @param pipes List of pre-generated pipes, if any.
+     * @param seed  Seed of the pipe stream, as in {@link GameEngine}.
+     */
+    public Game(int delay, @NotNull PackedGrid grid, @Nullable List<Pipe> pipes, long seed) {
+        final var rng = new SplittableRandom(seed);
+        this.seed = seed;
+        map = new Map(grid);
+
+        // skip the map layout stream, so that the pipes match those of a generated game with the same seed
+        rng.split();
+        pipeQueue = new PipeQueue(pipes, rng.split());
         delayBar = new DelayBar(delay);
     }
 
@@ -127,7 +173,7 @@ public class Game {
     public boolean undoStep() {
         var undoCell = cellStack.pop();
         if (undoCell != null) {
-            if (undoCell.getPipe().map(Pipe::getFilled).orElse(false)) {
+            if (map.isFilled(undoCell.coord)) {
                 cellStack.push(undoCell);
                 return false;
             }
@@ -198,4 +244,11 @@ public class Game {
     public int getNumOfSteps() {
         return numOfSteps;
     }
+
+    /**
+     * @return Seed which this game was created from.
+     */
+    public long getSeed() {
+        return seed;
+    }
 }
@@ -0,0 +1,94 @@
+package util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Unbounded lock-free queue for many producer threads and a single consumer thread.
+ *
+ * <p>
+ * The queue is a singly linked list of nodes. A producer swaps its node into the tail with a single atomic exchange,
+ * then links the previous tail to it, so producers never wait for each other or for the consumer. The consumer owns the
+ * head and is the only thread which moves it. Elements are taken in the order their exchanges took place.
+ * </p>
+ *
+ * <p>
+ * Between the exchange and the link, the new node is not yet reachable from the head. The consumer sees the queue as
+ * non-empty during that window, and {@link MpscQueue#poll()} waits for the link to appear.
+ * </p>
+ *
+ * @param <E> Type of the elements.
+ */
+public class MpscQueue<E> {
+
+    private static final class Node<E> {
+
+        @Nullable
+        private E value;
+        @Nullable
+        private volatile Node<E> next;
+
+        Node(@Nullable E value) {
+            this.value = value;
+        }
+    }
+
+    /**
+     * Last node which has been taken, whose value has been cleared. Only accessed by the consumer.
+     */
+    @NotNull
+    private Node<E> head;
+
+    @NotNull
+    private final AtomicReference<Node<E>> tail;
+
+    public MpscQueue() {
+        head = new Node<>(null);
+        tail = new AtomicReference<>(head);
+    }
+
+    /**
+     * Adds an element to the queue. May be called by any thread.
+     *
+     * @param e Element to add.
+     */
+    public void offer(@NotNull E e) {
+        final var node = new Node<>(e);
+        tail.getAndSet(node).next = node;
+    }
+
+    /**
+     * Takes the next element. Must only be called by the consumer thread.
+     *
+     * @return The next element, or {@code null} if the queue is empty.
+     */
+    @Nullable
+    public E poll() {
+        var next = head.next;
+        if (next == null) {
+            if (tail.get() == head) {
+                return null;
+            }
+            // a producer has swapped the tail but not linked it yet
+            while ((next = head.next) == null) {
+                Thread.onSpinWait();
+            }
+        }
+
+        final var value = next.value;
+        next.value = null;
+        head = next;
+        return value;
+    }
+
+    /**
+     * Must only be called by the consumer thread.
+     *
+     * @return Whether the queue is empty.
+     */
+    public boolean isEmpty() {
+        return head.next == null && tail.get() == head;
+    }
+}
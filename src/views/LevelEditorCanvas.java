@@ -1,6 +1,7 @@
 package views;
 
 import controllers.Renderer;
+import io.BinaryMapFormat;
 import io.Deserializer;
 import io.GameProperties;
 import io.Serializer;
@@ -97,7 +98,7 @@ public class LevelEditorCanvas extends Canvas {
      * Renders the canvas.
      */
     private void renderCanvas() {
-        Platform.runLater(() -> Renderer.renderMap(this, gameProp.cells));
+        Platform.runLater(() -> Renderer.renderMap(this, gameProp.getCells()));
     }
 
 
@@ -154,7 +155,7 @@ public class LevelEditorCanvas extends Canvas {
 
         if ( sel == CellSelection.CELL ){
             checkRemoveTerminationCell(xPos, yPos);
-            gameProp.cells[yPos][xPos] = new FillableCell(new Coordinate(xPos, yPos));
+            gameProp.getCells()[yPos][xPos] = new FillableCell(new Coordinate(xPos, yPos));
             renderCanvas();
         }
         else if ( sel == CellSelection.TERMINATION_CELL ){
@@ -174,20 +175,20 @@ public class LevelEditorCanvas extends Canvas {
                 else if (yPos == gameProp.rows -1 )
                     d = Direction.UP;
 
-                gameProp.cells[yPos][xPos] = new TerminationCell( new Coordinate(xPos, yPos), d, TerminationCell.Type.SINK );
-                sinkCell = (TerminationCell) gameProp.cells[yPos][xPos];
+                gameProp.getCells()[yPos][xPos] = new TerminationCell( new Coordinate(xPos, yPos), d, TerminationCell.Type.SINK );
+                sinkCell = (TerminationCell) gameProp.getCells()[yPos][xPos];
                 renderCanvas();
 
             }
             else { //is source
-                gameProp.cells[yPos][xPos] = new TerminationCell( new Coordinate(xPos, yPos), Direction.UP, TerminationCell.Type.SOURCE );
-                sourceCell = (TerminationCell) gameProp.cells[yPos][xPos];
+                gameProp.getCells()[yPos][xPos] = new TerminationCell( new Coordinate(xPos, yPos), Direction.UP, TerminationCell.Type.SOURCE );
+                sourceCell = (TerminationCell) gameProp.getCells()[yPos][xPos];
                 renderCanvas();
             }
         }
         else if ( sel == CellSelection.WALL ){
             checkRemoveTerminationCell(xPos, yPos);
-            gameProp.cells[yPos][xPos] = new Wall(new Coordinate(xPos, yPos));
+            gameProp.getCells()[yPos][xPos] = new Wall(new Coordinate(xPos, yPos));
             renderCanvas();
         }
 
@@ -212,15 +213,15 @@ public class LevelEditorCanvas extends Canvas {
                 isSink = true;
             if ( isSink && sinkCell == null) {
                 sinkCell = (TerminationCell) cell;
-                gameProp.cells[cell.coord.row][cell.coord.col] = cell;
+                gameProp.getCells()[cell.coord.row][cell.coord.col] = cell;
             }else if (!isSink && sourceCell == null ){
                 sourceCell = (TerminationCell) cell;
-                gameProp.cells[cell.coord.row][cell.coord.col] = cell;
+                gameProp.getCells()[cell.coord.row][cell.coord.col] = cell;
             }
         }
         else{
             checkRemoveTerminationCell(cell.coord.row, cell.coord.col);
-            gameProp.cells[cell.coord.row][cell.coord.col] = cell;
+            gameProp.getCells()[cell.coord.row][cell.coord.col] = cell;
         }
     }
 
@@ -233,11 +234,11 @@ public class LevelEditorCanvas extends Canvas {
         // TODO wip
         if ( sourceCell != null ){
             //sourceCell.pointingTo = sourceCell.pointingTo.rotateCW();
-            Cell[][] cellMap = gameProp.cells.clone();
+            Cell[][] cellMap = gameProp.getCells().clone();
             cellMap[sourceCell.coord.row][sourceCell.coord.col] = new TerminationCell( sourceCell.coord, sourceCell.pointingTo.rotateCW(), sourceCell.type );
 
             sourceCell = (TerminationCell) cellMap[sourceCell.coord.row][sourceCell.coord.col];
-            gameProp.cells = cellMap;
+            gameProp.setCells(cellMap);
             renderCanvas();
         }
     }
@@ -284,7 +285,7 @@ public class LevelEditorCanvas extends Canvas {
     private File getTargetLoadFile() {
         // TODO
         FileChooser fileChooser = new FileChooser();
-        fileChooser.getExtensionFilters().add( new FileChooser.ExtensionFilter("Map Files", "*.map"));
+        fileChooser.getExtensionFilters().add( new FileChooser.ExtensionFilter("Map Files", "*.map", "*" + BinaryMapFormat.EXTENSION));
         File selectedFile = fileChooser.showOpenDialog(this.getScene().getWindow());
         return selectedFile;
     }
@@ -314,14 +315,14 @@ public class LevelEditorCanvas extends Canvas {
             for ( int i = 0; i < getNumOfRows(); i++ ){
                 for ( int j = 0; j < getNumOfCols(); j++ ){
 
-                    System.out.print(gameProp.cells[i][j].toSingleChar());
+                    System.out.print(gameProp.getCells()[i][j].toSingleChar());
 
-                    if (gameProp.cells[i][j] instanceof TerminationCell ){
+                    if (gameProp.getCells()[i][j] instanceof TerminationCell ){
 
                         if ( i == 0 || j == 0 || i ==  gameProp.rows - 1 || j == gameProp.cols - 1 ){
-                            sinkCell = (TerminationCell) gameProp.cells[i][j];
+                            sinkCell = (TerminationCell) gameProp.getCells()[i][j];
                         }
-                        else { sourceCell = (TerminationCell) gameProp.cells[i][j];  }
+                        else { sourceCell = (TerminationCell) gameProp.getCells()[i][j];  }
                     }
                 }
             }
@@ -366,7 +367,7 @@ public class LevelEditorCanvas extends Canvas {
     private File getTargetSaveDirectory() {
         // TODO wip
         FileChooser fileChooser = new FileChooser();
-        fileChooser.getExtensionFilters().add( new FileChooser.ExtensionFilter("Map Files", "*.map"));
+        fileChooser.getExtensionFilters().add( new FileChooser.ExtensionFilter("Map Files", "*.map", "*" + BinaryMapFormat.EXTENSION));
         File selectedFile = fileChooser.showSaveDialog(this.getScene().getWindow());
         return selectedFile;
     }
@@ -2,7 +2,10 @@ package views.panes;
 
 import controllers.AudioManager;
 import controllers.LevelManager;
+import controllers.LevelPrefetcher;
+import controllers.RenderScheduler;
 import controllers.SceneManager;
+import controllers.Viewport;
 import io.Deserializer;
 import javafx.application.Platform;
 import javafx.beans.property.IntegerProperty;
@@ -16,12 +19,15 @@ import javafx.scene.control.ButtonBar;
 import javafx.scene.control.ButtonType;
 import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyEvent;
+import javafx.scene.input.MouseButton;
 import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
 import javafx.scene.layout.Border;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.Priority;
 import javafx.scene.layout.VBox;
 import models.FXGame;
+import models.GameEngine;
 import models.FlowTimer;
 import models.PipeQueue;
 import org.jetbrains.annotations.NotNull;
@@ -33,6 +39,8 @@ import java.io.FileNotFoundException;
 import java.nio.file.Paths;
 
 import static models.Config.TILE_SIZE;
+import static models.Config.VIEWPORT_HEIGHT;
+import static models.Config.VIEWPORT_WIDTH;
 
 /**
  * Pane for displaying the actual gameplay.
@@ -48,12 +56,35 @@ public class GameplayPane extends GamePane {
 
     private FXGame game;
 
+    /**
+     * Visible window of the map of the current game.
+     */
+    private Viewport viewport;
+
+    /**
+     * Position of the last mouse event while dragging the map.
+     */
+    private double dragX;
+    private double dragY;
+
+    /**
+     * Redraws the canvases of the current game at most once per frame.
+     */
+    private final RenderScheduler renderScheduler = new RenderScheduler(
+            () -> game.renderMap(gameplayCanvas, viewport),
+            () -> game.renderQueue(queueCanvas));
+
     private final IntegerProperty ticksElapsed = new SimpleIntegerProperty();
     private GameplayInfoPane infoPane = null;
 
     //Helper
     private boolean EnableInput = true;
 
+    /**
+     * Factor to zoom the map by in each step.
+     */
+    private static final double ZOOM_STEP = 1.25;
+
 
     public GameplayPane() {
         connectComponents();
@@ -98,10 +129,16 @@ public class GameplayPane extends GamePane {
             doQuitToMenuAction();
         });
         gameplayCanvas.setOnMouseClicked(MouseEvent ->{
-            if (EnableInput) {
+            if (EnableInput && MouseEvent.getButton() == MouseButton.PRIMARY && MouseEvent.isStillSincePress()) {
                 onCanvasClicked(MouseEvent);
             }
         });
+        gameplayCanvas.setOnMousePressed(mouseEvent -> {
+            dragX = mouseEvent.getX();
+            dragY = mouseEvent.getY();
+        });
+        gameplayCanvas.setOnMouseDragged(this::onCanvasDragged);
+        gameplayCanvas.setOnScroll(this::onCanvasScrolled);
         this.setOnKeyPressed(keyEvent -> {
             if (EnableInput)
                 onKeyPressed(keyEvent);
@@ -120,11 +157,41 @@ public class GameplayPane extends GamePane {
         // TODO
         AudioManager.getInstance().playSound(AudioManager.SoundRes.MOVE);
 
-        int xPos = (int) event.getX() /TILE_SIZE;
-        int yPos = (int) event.getY() /TILE_SIZE;
+        int xPos = viewport.colAt(event.getX());
+        int yPos = viewport.rowAt(event.getY());
         game.placePipe(yPos, xPos);
-        game.renderMap(gameplayCanvas);
-        game.renderQueue(queueCanvas);
+    }
+
+
+
+    /**
+     * Scrolls the map when it is dragged.
+     * @param event Event to handle.
+     */
+    private void onCanvasDragged(MouseEvent event) {
+        if (viewport == null) {
+            return;
+        }
+
+        viewport.pan(event.getX() - dragX, event.getY() - dragY);
+        dragX = event.getX();
+        dragY = event.getY();
+        renderScheduler.requestMapRender();
+    }
+
+
+
+    /**
+     * Zooms the map at the mouse cursor when the mouse wheel is scrolled.
+     * @param event Event to handle.
+     */
+    private void onCanvasScrolled(ScrollEvent event) {
+        if (viewport == null || event.getDeltaY() == 0) {
+            return;
+        }
+
+        viewport.zoom(event.getDeltaY() > 0 ? ZOOM_STEP : 1 / ZOOM_STEP, event.getX(), event.getY());
+        renderScheduler.requestMapRender();
     }
 
 
@@ -139,19 +206,27 @@ public class GameplayPane extends GamePane {
         if (event.getCode() == KeyCode.S ){
             //skip
             game.skipPipe();
-            game.renderMap(gameplayCanvas);
-            game.renderQueue(queueCanvas);
         }
         else if ( event.getCode() == KeyCode.U ){
             //undo
             game.undoStep();
-            game.renderMap(gameplayCanvas);
-            game.renderQueue(queueCanvas);
         }
         else if (event.getCode() == KeyCode.SPACE ){
             //quit
             doQuitToMenuAction();
         }
+        else if (event.getCode().isArrowKey()) {
+            final var dir = event.getCode();
+            final double dx = dir == KeyCode.LEFT ? TILE_SIZE : dir == KeyCode.RIGHT ? -TILE_SIZE : 0;
+            final double dy = dir == KeyCode.UP ? TILE_SIZE : dir == KeyCode.DOWN ? -TILE_SIZE : 0;
+            viewport.pan(dx, dy);
+            renderScheduler.requestMapRender();
+        }
+        else if (event.getCode() == KeyCode.EQUALS || event.getCode() == KeyCode.PLUS || event.getCode() == KeyCode.MINUS) {
+            final double factor = event.getCode() == KeyCode.MINUS ? 1 / ZOOM_STEP : ZOOM_STEP;
+            viewport.zoom(factor, viewport.getWidth() / 2, viewport.getHeight() / 2);
+            renderScheduler.requestMapRender();
+        }
     }
 
 
@@ -190,9 +265,13 @@ public class GameplayPane extends GamePane {
         }
         else {
             try{
-                var path = Paths.get( LevelManager.getInstance().getCurrentLevelPath().toString(), "\\", Level );
-                Deserializer ds = new Deserializer( path );
-                startGame(ds.parseFXGame());
+                var path = LevelManager.getInstance().getCurrentLevelPath().resolve(Level);
+
+                /** Usually loaded in the background while the last level was played **/
+                GameEngine engine = LevelPrefetcher.getInstance().take(path);
+                if ( engine == null )
+                    engine = new Deserializer( path ).parseGameEngine();
+                startGame(new FXGame(engine));
             }catch (FileNotFoundException e){ e.printStackTrace();}
         }
     }
@@ -243,6 +322,7 @@ public class GameplayPane extends GamePane {
     private void doQuitToMenu() {
         // TODO
         endGame();
+        LevelPrefetcher.getInstance().cancel();
         SceneManager.getInstance().showPane(LevelSelectPane.class);
     }
 
@@ -260,8 +340,10 @@ public class GameplayPane extends GamePane {
         EnableInput = true;
 
         this.game = game;
-        game.renderMap(gameplayCanvas);
-        game.renderQueue(queueCanvas);
+        viewport = Viewport.fitting(game.getRows(), game.getCols(), VIEWPORT_WIDTH, VIEWPORT_HEIGHT);
+        renderScheduler.start();
+        renderScheduler.requestMapRender();
+        renderScheduler.requestQueueRender();
 
         connectComponents();
 
@@ -275,6 +357,12 @@ public class GameplayPane extends GamePane {
         topBar.getChildren().add(0, infoPane);
         infoPane.setMaxHeight(50);
 
+        /**Redraw after every move, which is run on the game thread**/
+        game.addOnChangeHandler(() -> {
+            renderScheduler.requestMapRender();
+            renderScheduler.requestQueueRender();
+        });
+
         /**Timer**/
         game.addOnTickHandler(new Runnable() {
             @Override
@@ -292,7 +380,6 @@ public class GameplayPane extends GamePane {
                     game.stopCountdown();
                     Platform.runLater(() ->{
                         game.fillAllPipes();
-                        game.renderMap(gameplayCanvas);
                         createWinPopup();
                     });
                 }
@@ -302,7 +389,6 @@ public class GameplayPane extends GamePane {
             @Override
             public void run() {
                 game.updateState();
-                Platform.runLater(()->game.renderMap(gameplayCanvas));
 
                 if ( game.hasLost() ){
                     game.stopCountdown();
@@ -312,6 +398,21 @@ public class GameplayPane extends GamePane {
         });
 
         game.startCountdown();
+        prefetchNextLevel();
+    }
+
+
+
+    /**
+     * Starts loading the level after the current one in the background, so that {@link GameplayPane#loadNextMap()}
+     * does not have to parse it.
+     */
+    private void prefetchNextLevel() {
+        String next = LevelManager.getInstance().getNextLevel();
+        if ( next == null )
+            LevelPrefetcher.getInstance().cancel();
+        else
+            LevelPrefetcher.getInstance().prefetch(LevelManager.getInstance().getCurrentLevelPath().resolve(next));
     }
 
 
@@ -326,6 +427,7 @@ public class GameplayPane extends GamePane {
         canvasContainer.getChildren().clear();
 
         if ( game != null )
-            game.stopCountdown();
+            game.dispose();
+        renderScheduler.stop();
     }
 }
@@ -2,13 +2,25 @@ package views.panes;
 
 import controllers.LevelManager;
 import controllers.SceneManager;
+import controllers.ThumbnailCache;
 import io.Deserializer;
 import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
+import javafx.collections.FXCollections;
+import javafx.collections.transformation.FilteredList;
+import javafx.collections.transformation.SortedList;
 import javafx.scene.canvas.Canvas;
+import javafx.scene.control.Alert;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.ComboBox;
 import javafx.scene.control.ListView;
+import javafx.scene.image.Image;
+import javafx.scene.paint.Color;
+import javafx.scene.text.TextAlignment;
 import javafx.stage.DirectoryChooser;
 import models.FXGame;
+import models.exceptions.InvalidMapException;
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import textgame.game.Game;
 import views.BigButton;
@@ -18,16 +30,27 @@ import views.SideMenuVBox;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Comparator;
 
 public class LevelSelectPane extends GamePane {
 
+    private static final String SORT_BY_NAME = "Sort by name";
+    private static final String SORT_BY_SIZE = "Sort by size";
+    private static final String SORT_BY_PATH_LENGTH = "Sort by path length";
+
     private SideMenuVBox leftContainer = new SideMenuVBox();
     private BigButton returnButton = new BigButton("Return");
     private BigButton playButton = new BigButton("Play");
     private BigButton playRandom = new BigButton("Generate Map and Play");
     private BigButton chooseMapDirButton = new BigButton("Choose map directory");
-    private ListView<String> levelsListView = new ListView<>(LevelManager.getInstance().getLevelNames());
+    private ComboBox<String> sortComboBox = new ComboBox<>(FXCollections.observableArrayList(SORT_BY_NAME,
+            SORT_BY_SIZE, SORT_BY_PATH_LENGTH));
+    private CheckBox solvableOnlyCheckBox = new CheckBox("Solvable only");
+    private FilteredList<String> filteredLevels = new FilteredList<>(LevelManager.getInstance().getLevelNames());
+    private SortedList<String> sortedLevels = new SortedList<>(filteredLevels);
+    private ListView<String> levelsListView = new ListView<>(sortedLevels);
     private BigVBox centerContainer = new BigVBox();
     private Canvas levelPreview = new Canvas();
 
@@ -36,6 +59,14 @@ public class LevelSelectPane extends GamePane {
     @Nullable
     private FXGame selectedGame;
 
+    /*** Path of the selected map, which is loaded when the game starts.*/
+    @Nullable
+    private Path selectedPath;
+
+    /*** Thumbnail request of the selected map, cancelled when the selection moves on.*/
+    @Nullable
+    private ThumbnailCache.Request pendingPreview;
+
 
     public LevelSelectPane() {
         connectComponents();
@@ -51,6 +82,8 @@ public class LevelSelectPane extends GamePane {
         // TODO --wip
         leftContainer.getChildren().add(returnButton);
         leftContainer.getChildren().add(chooseMapDirButton);
+        leftContainer.getChildren().add(sortComboBox);
+        leftContainer.getChildren().add(solvableOnlyCheckBox);
         leftContainer.getChildren().add(levelsListView);
         leftContainer.getChildren().add(playButton);
         leftContainer.getChildren().add(playRandom);
@@ -69,6 +102,7 @@ public class LevelSelectPane extends GamePane {
     void styleComponents() {
         // TODO --wip
         playButton.setDisable(true);
+        sortComboBox.setValue(SORT_BY_NAME);
         leftContainer.setStyle("-fx-background-color: #B0B0B0;");
     }
 
@@ -86,6 +120,14 @@ public class LevelSelectPane extends GamePane {
             /** Choose Map **/
             promptUserForMapDirectory();
         });
+        sortComboBox.setOnAction( event -> {
+            /** Sort **/
+            sortedLevels.setComparator(levelComparator(sortComboBox.getValue()));
+        });
+        solvableOnlyCheckBox.setOnAction( event -> {
+            /** Filter **/
+            filteredLevels.setPredicate(solvableOnlyCheckBox.isSelected() ? this::isSolvable : null);
+        });
         levelsListView.getSelectionModel().selectedItemProperty().addListener(new ChangeListener<String>() {
             @Override
             public void changed(ObservableValue<? extends String> observableValue, String oldValue, String newValue) {
@@ -117,7 +159,7 @@ public class LevelSelectPane extends GamePane {
             /**Random Map Generated**/
             selectedGame = new FXGame();
 
-            System.out.println("Setup a new game!");
+            System.out.println("Setup a new game with seed " + selectedGame.getSeed() + "!");
 
             var pane = SceneManager.getInstance().getPane(GameplayPane.class);
             ((GameplayPane) pane).startGame(selectedGame);
@@ -127,9 +169,16 @@ public class LevelSelectPane extends GamePane {
         else
         {
             /** Selected Map from directory **/
-            if (selectedGame == null )
+            if (selectedPath == null )
                 return;
 
+            try {
+                selectedGame = new FXGame(new Deserializer(selectedPath).parseGameEngine());
+            } catch (FileNotFoundException | InvalidMapException e) {
+                new Alert(Alert.AlertType.ERROR, "Cannot load the map: " + e.getMessage()).showAndWait();
+                return;
+            }
+
             var pane = SceneManager.getInstance().getPane(GameplayPane.class);
             ((GameplayPane) pane).startGame(selectedGame);
             SceneManager.getInstance().showPane(GameplayPane.class);
@@ -138,8 +187,47 @@ public class LevelSelectPane extends GamePane {
 
 
 
+    /**
+     * Creates the ordering of the level list. Levels are compared by their indexed metadata, so sorting does not read
+     * the level files.
+     *
+     * @param sortBy Selected sort option.
+     * @return Comparator of level names, or {@code null} to keep the order of {@link LevelManager#getLevelNames()}.
+     */
+    @Nullable
+    private Comparator<String> levelComparator(@Nullable String sortBy) {
+        if (SORT_BY_SIZE.equals(sortBy)) {
+            return Comparator.comparingInt((String name) -> {
+                var level = LevelManager.getInstance().getLevelMetadata(name);
+                return level != null ? level.rows * level.cols : Integer.MAX_VALUE;
+            }).thenComparing(Comparator.naturalOrder());
+        }
+        if (SORT_BY_PATH_LENGTH.equals(sortBy)) {
+            return Comparator.comparingInt((String name) -> {
+                var level = LevelManager.getInstance().getLevelMetadata(name);
+                return level != null && level.isSolvable() ? level.minPathLength : Integer.MAX_VALUE;
+            }).thenComparing(Comparator.naturalOrder());
+        }
+        return null;
+    }
+
+
+
+    /**
+     * @param levelName Name of a level.
+     * @return Whether the indexed metadata says the level can be solved.
+     */
+    private boolean isSolvable(@NotNull String levelName) {
+        var level = LevelManager.getInstance().getLevelMetadata(levelName);
+        return level != null && level.isSolvable();
+    }
+
+
+
     /**
      * Listener method that executes when a map on the list is selected.
+     * <p>
+     * The preview is loaded in the background by {@link ThumbnailCache}. A placeholder is shown until it is ready.
      *
      * @param observable Observable value.
      * @param oldValue   Original value.
@@ -147,17 +235,57 @@ public class LevelSelectPane extends GamePane {
      */
     private void onMapSelected(ObservableValue<? extends String> observable, String oldValue, String newValue) {
         // TODO
-        try{
-            var path = Paths.get( LevelManager.getInstance().getCurrentLevelPath().toString(), "\\", newValue );
-            Deserializer ds = new Deserializer( path );
-            FXGame game = ds.parseFXGame();
-            game.renderMap(levelPreview);
+        if (pendingPreview != null) {
+            pendingPreview.cancel();
+            pendingPreview = null;
+        }
+
+        if (newValue == null) {
+            selectedPath = null;
+            playButton.setDisable(true);
+            drawPreviewMessage("");
+            return;
+        }
 
-            LevelManager.getInstance().setLevel(newValue);
-            selectedGame = game;
-            playButton.setDisable(false);
+        var path = LevelManager.getInstance().getCurrentLevelPath().resolve(newValue);
+        LevelManager.getInstance().setLevel(newValue);
+        selectedPath = path;
+        playButton.setDisable(false);
+
+        drawPreviewMessage("Loading preview...");
+        pendingPreview = ThumbnailCache.getInstance().request(path, this::drawPreview,
+                e -> drawPreviewMessage("Cannot load preview"));
+    }
 
-        }catch (FileNotFoundException e){ e.printStackTrace();}
+
+
+    /**
+     * Shows a thumbnail in the preview canvas.
+     * @param thumbnail Thumbnail to show.
+     */
+    private void drawPreview(@NotNull Image thumbnail) {
+        levelPreview.setWidth(thumbnail.getWidth());
+        levelPreview.setHeight(thumbnail.getHeight());
+        var gc = levelPreview.getGraphicsContext2D();
+        gc.clearRect(0, 0, levelPreview.getWidth(), levelPreview.getHeight());
+        gc.drawImage(thumbnail, 0, 0);
+    }
+
+
+
+    /**
+     * Shows a placeholder with a message in the preview canvas.
+     * @param message Message to show.
+     */
+    private void drawPreviewMessage(@NotNull String message) {
+        levelPreview.setWidth(ThumbnailCache.MAX_SIZE);
+        levelPreview.setHeight(ThumbnailCache.MAX_SIZE);
+        var gc = levelPreview.getGraphicsContext2D();
+        gc.setFill(Color.LIGHTGRAY);
+        gc.fillRect(0, 0, levelPreview.getWidth(), levelPreview.getHeight());
+        gc.setFill(Color.DIMGRAY);
+        gc.setTextAlign(TextAlignment.CENTER);
+        gc.fillText(message, levelPreview.getWidth() / 2, levelPreview.getHeight() / 2);
     }
 
 